@@ -0,0 +1,125 @@
+package notjippity;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures request throughput of the HTTP API. Every benchmark thread acts as its own client and
+ * cycles through adding a todo, searching for it, toggling the first task and deleting the first
+ * task, waiting for the response to every request before sending the next. The number of
+ * concurrent clients is the number of benchmark threads, e.g. -Pjmh.args='-t 16'. The bot starts
+ * with no tasks, from data/ in the current directory, which the jmh task points at the build
+ * directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpBenchmark {
+
+    private static final Path DATA_DIR = Path.of("data");
+
+    private NotJippity bot;
+    private URI tasks;
+    // Shared by all clients, as its connections are pooled
+    private HttpClient httpClient;
+
+    /**
+     * Represents a single client, held by one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final AtomicInteger clientCount = new AtomicInteger();
+
+        private final int clientNum = clientCount.getAndIncrement();
+        private int next;
+
+    }
+
+    /**
+     * Starts a bot with no tasks, serving the tasks on a free port
+     *
+     * @throws IOException If the previous data cannot be deleted
+     * @throws InterruptedException If interrupted while waiting for the tasks to load
+     */
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        ScratchFiles.deleteRecursively(DATA_DIR);
+        bot = new NotJippity();
+        bot.init(List.of("--http=0"));
+        tasks = URI.create("http://127.0.0.1:" + bot.getHttpPort() + "/tasks");
+        // Wait until the existing tasks are loaded, so no request is turned away
+        while (bot.isLoading()) {
+            Thread.sleep(10);
+        }
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    /**
+     * Stops the bot
+     */
+    @TearDown
+    public void tearDown() {
+        bot.shutdown();
+    }
+
+    @Benchmark
+    public int requestMix(Client client) throws IOException, InterruptedException {
+        // Toggles and deletes may find no task left when other clients got there first
+        HttpRequest request;
+        switch (client.next++ % 4) {
+        case 0:
+            request = HttpRequest.newBuilder(tasks)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header("X-Requested-With", "HttpBenchmark")
+                    .POST(HttpRequest.BodyPublishers.ofString("type=todo&name=bench+" + client.clientNum + "+"
+                            + client.next))
+                    .build();
+            break;
+        case 1:
+            request = HttpRequest.newBuilder(URI.create(tasks + "?find=bench+" + client.clientNum)).build();
+            break;
+        case 2:
+            request = HttpRequest.newBuilder(URI.create(tasks + "/1/toggle"))
+                    .header("X-Requested-With", "HttpBenchmark")
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            break;
+        default:
+            request = HttpRequest.newBuilder(URI.create(tasks + "/1"))
+                    .header("X-Requested-With", "HttpBenchmark")
+                    .DELETE()
+                    .build();
+            break;
+        }
+
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 500) {
+            throw new IllegalStateException("Request failed with status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+}
@@ -0,0 +1,193 @@
+package notjippity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.exceptions.StorageException;
+import notjippity.io.Journal;
+import notjippity.io.Ui;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.ToDo;
+
+/**
+ * Compares sustained mutation throughput of the command pipeline against threads taking turns on
+ * the task tracker under a shared lock, as sessions did before the pipeline. Every benchmark
+ * thread applies a mix of adds, toggles and removals, each recorded into a real journal; run with
+ * e.g. -Pjmh.args='-t 8' to compare them under contention. The pipeline is measured both with one
+ * command per submission, as from an interactive session, and with groups of commands per
+ * submission, as from a batch session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final int INITIAL_TASKS = 10_000;
+    private static final int SUBMIT_GROUP_SIZE = 64;
+
+    private final Object lock = new Object();
+    private File directory;
+    private Journal journal;
+    private CommandPipeline pipeline;
+    private TaskTracker taskTracker;
+
+    /**
+     * Represents a single mutation handed over to the pipeline
+     */
+    private static class Mutation extends CommandPipeline.Request {
+
+        private final PipelineBenchmark benchmark;
+        private int sequence;
+
+        private Mutation(PipelineBenchmark benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        @Override
+        void apply() {
+            mutate(benchmark.taskTracker, sequence);
+        }
+
+    }
+
+    /**
+     * Represents the mutations of a single benchmark thread, reused for every submission
+     */
+    @State(Scope.Thread)
+    public static class Mutations {
+
+        private final Mutation[] requests = new Mutation[SUBMIT_GROUP_SIZE];
+        private int sequence;
+
+        /**
+         * Creates the reused mutations
+         *
+         * @param benchmark The benchmark whose tasks are mutated
+         */
+        @Setup
+        public void setUp(PipelineBenchmark benchmark) {
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new Mutation(benchmark);
+            }
+        }
+
+    }
+
+    /**
+     * Opens a journal in a temporary directory and starts the pipeline
+     *
+     * @throws IOException If the directory cannot be created
+     * @throws StorageException If the journal cannot be opened
+     */
+    @Setup
+    public void setUp() throws IOException, StorageException {
+        directory = Files.createTempDirectory("pipeline-benchmark").toFile();
+        Ui ui = new Ui(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        journal = new Journal(new File(directory, "tasks.journal"), ui);
+        journal.open(0, 0);
+        pipeline = new CommandPipeline(journal);
+        pipeline.start();
+    }
+
+    /**
+     * Fills a new task tracker, which records its mutations into the journal
+     */
+    @Setup(Level.Iteration)
+    public void fillTasks() {
+        taskTracker = new TaskTracker();
+        for (int i = 0; i < INITIAL_TASKS; i++) {
+            taskTracker.addTask(new ToDo("task " + i));
+        }
+        taskTracker.setJournal(journal);
+    }
+
+    /**
+     * Empties the journal, so it does not grow across iterations
+     *
+     * @throws StorageException If the journal cannot be reset
+     */
+    @TearDown(Level.Iteration)
+    public void resetJournal() throws StorageException {
+        taskTracker.setJournal(null);
+        journal.reset(0, 0);
+    }
+
+    /**
+     * Stops the pipeline and deletes the journal
+     */
+    @TearDown
+    public void tearDown() {
+        pipeline.stop();
+        System.out.printf("Average pipeline group size: %.1f%n", pipeline.getAverageGroupSize());
+        journal.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public Task lock(Mutations mutations) {
+        synchronized (lock) {
+            return mutate(taskTracker, mutations.sequence++);
+        }
+    }
+
+    @Benchmark
+    public void pipeline(Mutations mutations) {
+        mutations.requests[0].sequence = mutations.sequence++;
+        pipeline.submit(mutations.requests, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SUBMIT_GROUP_SIZE)
+    public void pipelineGrouped(Mutations mutations) {
+        for (Mutation request : mutations.requests) {
+            request.sequence = mutations.sequence++;
+        }
+        pipeline.submit(mutations.requests, SUBMIT_GROUP_SIZE);
+    }
+
+    /**
+     * Applies one mutation of the mix, which keeps the number of tasks steady
+     *
+     * @param taskTracker The task tracker
+     * @param sequence The position of the mutation within its thread's mix
+     * @return The task added, toggled or removed
+     */
+    private static Task mutate(TaskTracker taskTracker, int sequence) {
+        switch (sequence % 3) {
+        case 0:
+            Task task = new ToDo("new " + sequence);
+            taskTracker.addTask(task);
+            return task;
+        case 1:
+            return taskTracker.toggleTask(taskTracker.getSize() - 1);
+        default:
+            return taskTracker.removeTask(0);
+        }
+    }
+
+}
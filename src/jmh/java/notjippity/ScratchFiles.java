@@ -0,0 +1,32 @@
+package notjippity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Contains helper functions for the benchmarks which run a whole bot, and so read and write
+ * data/ in the scratch directory they are run from
+ */
+class ScratchFiles {
+
+    /**
+     * Deletes the given file or directory and everything in it, if it exists
+     *
+     * @param path The file or directory
+     * @throws IOException If anything cannot be deleted
+     */
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path child : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(child);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package notjippity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures command throughput of the server mode. Every benchmark thread connects as its own
+ * client and cycles through adding a todo, searching for it, toggling the first task and deleting
+ * the first task, waiting for the response to every command before sending the next, as a user
+ * would. The number of concurrent clients is the number of benchmark threads, e.g.
+ * -Pjmh.args='-t 16'. The bot starts with no tasks, from data/ in the current directory, which
+ * the jmh task points at the build directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerBenchmark {
+
+    private static final byte[] PROMPT = "\n>> ".getBytes(StandardCharsets.UTF_8);
+    private static final Path DATA_DIR = Path.of("data");
+
+    private NotJippity bot;
+
+    /**
+     * Represents the connection of a single client, held by one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final AtomicInteger clientCount = new AtomicInteger();
+
+        private final int client = clientCount.getAndIncrement();
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private int next;
+
+        /**
+         * Connects to the server and skips its welcome message
+         *
+         * @param benchmark The benchmark running the server
+         * @throws IOException If the connection fails
+         */
+        @Setup
+        public void connect(ServerBenchmark benchmark) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), benchmark.bot.getServerPort());
+            socket.setTcpNoDelay(true);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+            awaitPrompt(in);
+        }
+
+        /**
+         * Leaves the server
+         *
+         * @throws IOException If the connection fails
+         */
+        @TearDown
+        public void leave() throws IOException {
+            try {
+                out.write("bye\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } finally {
+                socket.close();
+            }
+        }
+
+    }
+
+    /**
+     * Starts a bot with no tasks, accepting clients on a free port
+     *
+     * @throws IOException If the previous data cannot be deleted
+     */
+    @Setup
+    public void setUp() throws IOException {
+        ScratchFiles.deleteRecursively(DATA_DIR);
+        bot = new NotJippity();
+        bot.init(List.of("--server=0"));
+    }
+
+    /**
+     * Stops the bot
+     */
+    @TearDown
+    public void tearDown() {
+        bot.shutdown();
+    }
+
+    @Benchmark
+    public int commandMix(Client client) throws IOException {
+        String command;
+        switch (client.next++ % 4) {
+        case 0:
+            command = "todo bench " + client.client + " " + client.next;
+            break;
+        case 1:
+            command = "find bench " + client.client;
+            break;
+        case 2:
+            command = "toggle 1";
+            break;
+        default:
+            command = "delete 1";
+            break;
+        }
+        client.out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+        client.out.flush();
+        return awaitPrompt(client.in);
+    }
+
+    /**
+     * Reads the response to the last command, up to and including the next prompt
+     *
+     * @param in The input stream of the connection
+     * @return The number of bytes read
+     * @throws IOException If the connection closes before the prompt arrives
+     */
+    private static int awaitPrompt(InputStream in) throws IOException {
+        int count = 0;
+        int matched = 0;
+        while (matched < PROMPT.length) {
+            int next = in.read();
+            if (next < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            count++;
+            if (next == PROMPT[matched]) {
+                matched++;
+            } else {
+                matched = next == PROMPT[0] ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+}
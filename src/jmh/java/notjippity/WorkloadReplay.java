@@ -0,0 +1,333 @@
+package notjippity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import notjippity.io.Ui;
+import notjippity.jmh.Workload;
+import notjippity.utils.LatencyHistogram;
+
+/**
+ * Replays a generated workload through the bot's real main loop in-process, with its output
+ * discarded, then reports the throughput, the latency percentiles of every command and the peak
+ * heap usage. The results are compared against a baseline from an earlier run, failing with exit
+ * code 1 if any of them regressed by more than the tolerance, or if there is no baseline for the
+ * same workload to compare against. The baseline is kept under version control, and is only
+ * replaced when --save-baseline is given.
+ * <p>
+ * The baseline records the machine it was taken on. The ratio of the 99th to the 50th percentile
+ * latency and the peak heap usage carry over between machines, so they are always compared, while
+ * the throughput and the 99th percentile latency itself are only compared on a matching machine.
+ * <p>
+ * Options, all optional:
+ * <ul>
+ *     <li>--commands=&lt;count&gt;: the number of commands to generate, 1000000 by default</li>
+ *     <li>--seed=&lt;seed&gt;: the seed of the workload, 1 by default</li>
+ *     <li>--mix=&lt;kind=weight,...&gt;: the command mix, see {@link Workload}</li>
+ *     <li>--tolerance=&lt;fraction&gt;: how far results may regress, 0.25 by default</li>
+ *     <li>--baseline=&lt;file&gt;: the baseline to compare against, workload-baseline.properties by default</li>
+ *     <li>--results=&lt;file&gt;: where to write the results, workload-results.properties by default</li>
+ *     <li>--save-baseline: replace the baseline with the results instead of comparing them</li>
+ * </ul>
+ * Run with: gradlew replayWorkload
+ */
+public class WorkloadReplay {
+
+    private static final String COMMANDS_OPTION = "--commands=";
+    private static final String SEED_OPTION = "--seed=";
+    private static final String MIX_OPTION = "--mix=";
+    private static final String TOLERANCE_OPTION = "--tolerance=";
+    private static final String BASELINE_OPTION = "--baseline=";
+    private static final String RESULTS_OPTION = "--results=";
+    private static final String SAVE_BASELINE_FLAG = "--save-baseline";
+
+    private static final String ROW_FORMAT = "%-10s %9s %9s %9s %9s%n";
+    private static final Path DATA_DIR = Path.of("data");
+
+    private static final String KEY_COMMANDS = "commands";
+    private static final String KEY_SEED = "seed";
+    private static final String KEY_MIX = "mix";
+    private static final String KEY_MACHINE = "machine";
+    private static final String KEY_THROUGHPUT = "commandsPerSecond";
+    private static final String KEY_P50 = "p50Nanos";
+    private static final String KEY_P99 = "p99Nanos";
+    private static final String KEY_TAIL_RATIO = "p99ToP50";
+    private static final String KEY_PEAK_HEAP = "peakHeapBytes";
+
+    /**
+     * Generates the workload, replays it and compares the results against the baseline
+     *
+     * @param args The options
+     * @throws Exception If the workload cannot be generated or replayed
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = List.of(args);
+        int commandCount = Integer.parseInt(getOption(options, COMMANDS_OPTION, "1000000"));
+        long seed = Long.parseLong(getOption(options, SEED_OPTION, "1"));
+        Workload workload = new Workload(getOption(options, MIX_OPTION, Workload.DEFAULT_MIX));
+        double tolerance = Double.parseDouble(getOption(options, TOLERANCE_OPTION, "0.25"));
+        Path baselineFile = Path.of(getOption(options, BASELINE_OPTION, "workload-baseline.properties"));
+        Path resultsFile = Path.of(getOption(options, RESULTS_OPTION, "workload-results.properties"));
+
+        Path script = Files.createTempFile("workload", ".txt");
+        try {
+            long startTime = System.nanoTime();
+            int taskCount = workload.write(script, commandCount, seed);
+            System.out.printf("Generated %d commands leaving %d tasks in %.1fs%n", commandCount, taskCount,
+                    (System.nanoTime() - startTime) / 1e9);
+
+            Properties results = replay(script);
+            results.setProperty(KEY_COMMANDS, Integer.toString(commandCount));
+            results.setProperty(KEY_SEED, Long.toString(seed));
+            results.setProperty(KEY_MIX, workload.getMix());
+            results.setProperty(KEY_MACHINE, describeMachine());
+            store(results, resultsFile);
+
+            if (options.contains(SAVE_BASELINE_FLAG)) {
+                store(results, baselineFile);
+                System.out.println("Saved the results as the baseline in " + baselineFile);
+                return;
+            }
+            if (!isComparable(results, baselineFile)) {
+                System.out.println("Nothing to compare against, run again with " + SAVE_BASELINE_FLAG
+                        + " to save the results as the baseline in " + baselineFile);
+                System.exit(1);
+            }
+            if (!isWithinTolerance(results, load(baselineFile), tolerance)) {
+                System.out.println("Regressed by more than " + Math.round(tolerance * 100) + "% against "
+                        + baselineFile);
+                System.exit(1);
+            }
+            System.out.println("Within " + Math.round(tolerance * 100) + "% of " + baselineFile);
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    /**
+     * Replays the given script through a bot starting with no tasks and prints what it measured
+     *
+     * @param script The script of commands
+     * @return The throughput, the overall latency percentiles and the peak heap usage
+     * @throws IOException If the script cannot be read or the previous data cannot be deleted
+     */
+    private static Properties replay(Path script) throws IOException {
+        ScratchFiles.deleteRecursively(DATA_DIR);
+
+        NotJippity bot = new NotJippity();
+        long commandCount;
+        long runNanos;
+        try (InputStream input = Files.newInputStream(script)) {
+            bot.init(List.of(), new Ui(input, OutputStream.nullOutputStream(), true));
+            // Only count the heap used from here on
+            System.gc();
+            List<MemoryPoolMXBean> heapPools = getHeapPools();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long startTime = System.nanoTime();
+            bot.startMainLoop();
+            runNanos = System.nanoTime() - startTime;
+            long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            bot.shutdown();
+
+            LatencyHistogram overall = new LatencyHistogram();
+            System.out.printf(ROW_FORMAT, "command", "count", "p50 us", "p99 us", "max us");
+            for (Map.Entry<String, LatencyHistogram> entry : bot.getMetrics().getCommandLatencies().entrySet()) {
+                printRow(entry.getKey(), entry.getValue());
+                overall.add(entry.getValue());
+            }
+            printRow("(all)", overall);
+            commandCount = overall.getCount();
+
+            double throughput = commandCount / (runNanos / 1e9);
+            System.out.printf("Ran %d commands in %.1fs (%.0f commands/s), peak heap %.1fMB%n", commandCount,
+                    runNanos / 1e9, throughput, peakHeap / (1024.0 * 1024));
+
+            Properties results = new Properties();
+            results.setProperty(KEY_THROUGHPUT, Long.toString(Math.round(throughput)));
+            long p50 = overall.getPercentile(0.5), p99 = overall.getPercentile(0.99);
+            results.setProperty(KEY_P50, Long.toString(p50));
+            results.setProperty(KEY_P99, Long.toString(p99));
+            results.setProperty(KEY_TAIL_RATIO, String.format("%.2f", (double) p99 / Math.max(p50, 1)));
+            results.setProperty(KEY_PEAK_HEAP, Long.toString(peakHeap));
+            return results;
+        }
+    }
+
+    /**
+     * Returns whether the given results and baseline were measured with the same workload
+     *
+     * @param results The results
+     * @param baselineFile The baseline, which may not exist
+     * @return True if the baseline exists and has the same workload
+     * @throws IOException If the baseline cannot be read
+     */
+    private static boolean isComparable(Properties results, Path baselineFile) throws IOException {
+        if (!Files.exists(baselineFile)) {
+            System.out.println("There is no baseline in " + baselineFile);
+            return false;
+        }
+        Properties baseline = load(baselineFile);
+        for (String key : new String[] {KEY_COMMANDS, KEY_SEED, KEY_MIX}) {
+            if (!results.getProperty(key).equals(baseline.getProperty(key))) {
+                System.out.println("The baseline was taken with a different " + key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the results are all within the tolerance of the baseline, printing any which
+     * are not. The throughput and 99th percentile latency are only compared if the baseline was
+     * taken on the same kind of machine.
+     *
+     * @param results The results
+     * @param baseline The baseline
+     * @param tolerance How far each may regress, as a fraction of the baseline
+     * @return True if none regressed by more than the tolerance
+     */
+    private static boolean isWithinTolerance(Properties results, Properties baseline, double tolerance) {
+        boolean isWithin = checkRegression(KEY_TAIL_RATIO, results, baseline, tolerance);
+        isWithin &= checkRegression(KEY_PEAK_HEAP, results, baseline, tolerance);
+
+        String machine = baseline.getProperty(KEY_MACHINE);
+        if (!results.getProperty(KEY_MACHINE).equals(machine)) {
+            System.out.println("Skipped " + KEY_THROUGHPUT + " and " + KEY_P99 + ", the baseline was taken on "
+                    + (machine == null ? "an unknown machine" : machine));
+            return isWithin;
+        }
+        isWithin &= checkRegression(KEY_THROUGHPUT, results, baseline, -tolerance);
+        isWithin &= checkRegression(KEY_P99, results, baseline, tolerance);
+        return isWithin;
+    }
+
+    /**
+     * Compares a single result against the baseline, printing both
+     *
+     * @param key The result
+     * @param results The results
+     * @param baseline The baseline
+     * @param tolerance How far the result may rise, as a fraction of the baseline, or how far it
+     *     may fall if negative
+     * @return True if the result is within the tolerance
+     */
+    private static boolean checkRegression(String key, Properties results, Properties baseline, double tolerance) {
+        double result = Double.parseDouble(results.getProperty(key));
+        double expected = Double.parseDouble(baseline.getProperty(key));
+        double change = expected == 0 ? 0 : (result - expected) / expected;
+        boolean isWithin = tolerance < 0 ? change >= tolerance : change <= tolerance;
+        System.out.printf("%-18s %14s -> %14s (%+.1f%%)%s%n", key, baseline.getProperty(key),
+                results.getProperty(key), change * 100, isWithin ? "" : " REGRESSED");
+        return isWithin;
+    }
+
+    /**
+     * Returns a description of this machine and JVM, covering what absolute results depend on
+     *
+     * @return The number of CPUs, the Java version, the OS and architecture, and the maximum heap size
+     */
+    private static String describeMachine() {
+        return Runtime.getRuntime().availableProcessors() + " cpus, Java " + Runtime.version().feature() + ", "
+                + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+                + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "MB max heap";
+    }
+
+    /**
+     * Prints a table row with the count and latency percentiles of the given histogram
+     *
+     * @param name The name of the row
+     * @param histogram The latencies
+     */
+    private static void printRow(String name, LatencyHistogram histogram) {
+        System.out.printf(ROW_FORMAT, name, histogram.getCount(), formatMicros(histogram.getPercentile(0.5)),
+                formatMicros(histogram.getPercentile(0.99)), formatMicros(histogram.getMax()));
+    }
+
+    /**
+     * Returns the given duration in microseconds
+     *
+     * @param nanos The duration in nanoseconds
+     * @return The formatted duration
+     */
+    private static String formatMicros(long nanos) {
+        return String.format("%.1f", nanos / 1e3);
+    }
+
+    /**
+     * Returns the memory pools which make up the heap
+     *
+     * @return The heap pools
+     */
+    private static List<MemoryPoolMXBean> getHeapPools() {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        return heapPools;
+    }
+
+    /**
+     * Returns the value of the given option, e.g. "10" for "--commands=10"
+     *
+     * @param options The options
+     * @param prefix The option's prefix, up to and including "="
+     * @param defaultValue The value to return if the option is not given
+     * @return The value
+     */
+    private static String getOption(List<String> options, String prefix, String defaultValue) {
+        for (String option : options) {
+            if (option.startsWith(prefix)) {
+                return option.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads properties from the given file
+     *
+     * @param file The file
+     * @return The properties
+     * @throws IOException If the file cannot be read
+     */
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Writes properties to the given file, creating its directory if needed
+     *
+     * @param properties The properties
+     * @param file The file
+     * @throws IOException If the file cannot be written
+     */
+    private static void store(Properties properties, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "Workload replay results");
+        }
+    }
+
+}
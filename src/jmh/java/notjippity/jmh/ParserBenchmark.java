@@ -0,0 +1,96 @@
+package notjippity.jmh;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.tasks.Deadline;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
+
+/**
+ * Measures splitting user inputs into their parts, for each shape of input a user types
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final int INPUT_COUNT = 1024;
+
+    @Param({"todo", "deadline", "event", "list"})
+    public String shape;
+
+    private final String[] inputs = new String[INPUT_COUNT];
+    private final ParsedInput parsed = new ParsedInput();
+    private int next;
+
+    /**
+     * Generates the inputs, cycled through so that no single input stays hot in the cache
+     */
+    @Setup
+    public void setUp() {
+        SyntheticTasks generator = new SyntheticTasks(shape.hashCode());
+        Random random = generator.getRandom();
+        DateTimeFormatter formatter = Deadline.DATETIME_FORMATTER;
+        for (int i = 0; i < INPUT_COUNT; i++) {
+            switch (shape) {
+            case "todo":
+                inputs[i] = "todo " + generator.nextName();
+                break;
+            case "deadline":
+                inputs[i] = "deadline " + generator.nextName() + " --by " + generator.nextDateTime().format(formatter);
+                break;
+            case "event":
+                inputs[i] = "event " + generator.nextName() + " --from " + generator.nextDateTime().format(formatter)
+                        + " --to " + generator.nextDateTime().format(formatter);
+                break;
+            default:
+                inputs[i] = random.nextBoolean() ? "list" : "list --date "
+                        + generator.nextDateTime().toLocalDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public String getCommand() {
+        return Parser.getCommand(nextInput());
+    }
+
+    @Benchmark
+    public String getArgString() {
+        return Parser.getArgString(nextInput());
+    }
+
+    @Benchmark
+    public ParsedInput parse() {
+        Parser.parse(nextInput(), parsed);
+        return parsed;
+    }
+
+    /**
+     * Returns the next input in the cycle
+     *
+     * @return The input
+     */
+    private String nextInput() {
+        return inputs[next++ & (INPUT_COUNT - 1)];
+    }
+
+}
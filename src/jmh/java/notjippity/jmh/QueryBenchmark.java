@@ -0,0 +1,108 @@
+package notjippity.jmh;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.commands.FindCmd;
+import notjippity.commands.ListCmd;
+import notjippity.exceptions.NJException;
+import notjippity.io.Ui;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
+
+/**
+ * Measures the commands which scan the tasks, "list", "list --date" and "find", along with the
+ * task tracker lookups behind them. The commands' output is rendered as usual, then discarded.
+ * Keywords and dates are cycled through, so both common and rare ones are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int QUERY_COUNT = 64;
+
+    @Param({"100", "10000", "100000", "1000000"})
+    public int size;
+
+    private TaskTracker taskTracker;
+    private ListCmd listCmd;
+    private FindCmd findCmd;
+    private final ParsedInput listInput = new ParsedInput();
+    private final String[] keywords = new String[QUERY_COUNT];
+    private final LocalDate[] dates = new LocalDate[QUERY_COUNT];
+    private final ParsedInput[] dateInputs = new ParsedInput[QUERY_COUNT];
+    private int next;
+
+    /**
+     * Generates the tasks and the queries
+     */
+    @Setup
+    public void setUp() {
+        SyntheticTasks generator = new SyntheticTasks(size);
+        taskTracker = new TaskTracker();
+        for (Task task : generator.nextTasks(size)) {
+            taskTracker.addTask(task);
+        }
+
+        Ui ui = new Ui(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        listCmd = new ListCmd(ui, taskTracker);
+        findCmd = new FindCmd(ui, taskTracker);
+        Parser.parse("list", listInput);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            keywords[i] = generator.nextWord();
+            dates[i] = generator.nextDateTime().toLocalDate();
+            dateInputs[i] = new ParsedInput();
+            Parser.parse("list --date " + dates[i].format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), dateInputs[i]);
+        }
+    }
+
+    @Benchmark
+    public TaskTracker list() throws NJException {
+        listCmd.execute(listInput);
+        return taskTracker;
+    }
+
+    @Benchmark
+    public TaskTracker listOnDate() throws NJException {
+        listCmd.execute(dateInputs[next++ & (QUERY_COUNT - 1)]);
+        return taskTracker;
+    }
+
+    @Benchmark
+    public TaskTracker find() throws NJException {
+        findCmd.execute("find", keywords[next++ & (QUERY_COUNT - 1)]);
+        return taskTracker;
+    }
+
+    @Benchmark
+    public int[] getIndicesMatching() {
+        return taskTracker.getIndicesMatching(keywords[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int[] getIndicesOnDate() {
+        return taskTracker.getIndicesOnDate(dates[next++ & (QUERY_COUNT - 1)]);
+    }
+
+}
@@ -0,0 +1,108 @@
+package notjippity.jmh;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.exceptions.StorageException;
+import notjippity.io.Storage;
+import notjippity.io.Ui;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Measures saving all tasks into the data file and loading them back, both eagerly and lazily.
+ * A load is a full startup of the storage: preparing the data file, decoding it and replaying
+ * the (empty) journal. Works on data/ in the current directory, which the jmh task points at
+ * the build directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"100", "10000", "100000", "1000000"})
+    public int size;
+
+    private final Ui ui = new Ui(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+    private TaskTracker taskTracker;
+    private Storage saveStorage;
+
+    /**
+     * Writes the generated tasks into the data file
+     *
+     * @throws StorageException If the data file cannot be written
+     */
+    @Setup
+    public void setUp() throws StorageException {
+        taskTracker = new TaskTracker();
+        for (Task task : new SyntheticTasks(size).nextTasks(size)) {
+            taskTracker.addTask(task);
+        }
+
+        // Never loads, so it has no journal to keep in step with the saves
+        saveStorage = new Storage(ui);
+        saveStorage.init();
+        saveStorage.saveData(taskTracker);
+    }
+
+    /**
+     * Releases the storage used for saving
+     */
+    @TearDown
+    public void tearDown() {
+        saveStorage.close();
+    }
+
+    @Benchmark
+    public TaskTracker loadData() throws StorageException {
+        return load(false);
+    }
+
+    @Benchmark
+    public TaskTracker loadDataLazy() throws StorageException {
+        return load(true);
+    }
+
+    @Benchmark
+    public TaskTracker saveData() throws StorageException {
+        saveStorage.saveData(taskTracker);
+        return taskTracker;
+    }
+
+    /**
+     * Loads the data file into a new task tracker
+     *
+     * @param isLazy Whether tasks should only be decoded when first accessed
+     * @return The loaded tasks
+     * @throws StorageException If the data file cannot be read
+     */
+    private TaskTracker load(boolean isLazy) throws StorageException {
+        Storage storage = new Storage(ui, isLazy);
+        TaskTracker loaded = new TaskTracker();
+        try {
+            storage.init();
+            storage.loadData(loaded);
+        } finally {
+            storage.close();
+        }
+        return loaded;
+    }
+
+}
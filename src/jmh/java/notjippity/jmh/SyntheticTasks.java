@@ -0,0 +1,127 @@
+package notjippity.jmh;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.ToDo;
+
+/**
+ * Generates realistic tasks from a seed, so that every run measures exactly the same data.
+ * <p>
+ * Names are 2 to 5 words drawn from a small vocabulary, skewed so a few words are very common
+ * and most are rare, as in real task lists. Dates cluster around the start of 2025 and fall on
+ * the half hour during the day. About 60% of tasks are todos, 25% deadlines and 15% events,
+ * and about 30% are completed.
+ */
+public class SyntheticTasks {
+
+    private static final String[] VOCABULARY = {
+        "read", "book", "buy", "milk", "call", "mom", "finish", "report", "email", "team", "meeting",
+        "project", "review", "code", "fix", "bug", "gym", "run", "groceries", "pay", "rent", "bills",
+        "clean", "room", "laundry", "dinner", "lunch", "plan", "trip", "flight", "hotel", "tickets",
+        "dentist", "doctor", "appointment", "submit", "assignment", "lecture", "tutorial", "exam",
+        "revise", "notes", "slides", "presentation", "draft", "proposal", "budget", "invoice",
+        "birthday", "gift", "party", "wedding", "concert", "movie", "walk", "dog", "water", "plants",
+        "backup", "laptop", "update", "phone", "renew", "passport", "license", "insurance", "car",
+        "service", "repair", "bike", "study", "group", "weekly", "sync", "quarterly", "taxes",
+    };
+    private static final LocalDateTime DATE_ORIGIN = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int DATE_SPREAD_DAYS = 90;
+
+    private final Random random;
+
+    /**
+     * Returns a new SyntheticTasks instance
+     *
+     * @param seed The seed, where the same seed always generates the same tasks
+     */
+    public SyntheticTasks(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Generates the given number of tasks
+     *
+     * @param count The number of tasks
+     * @return The tasks
+     */
+    public List<Task> nextTasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(nextTask());
+        }
+        return tasks;
+    }
+
+    /**
+     * Generates a single task of a random type
+     *
+     * @return The task
+     */
+    public Task nextTask() {
+        Task task;
+        int type = random.nextInt(100);
+        if (type < 60) {
+            task = new ToDo(nextName());
+        } else if (type < 85) {
+            task = new Deadline(nextName(), nextDateTime());
+        } else {
+            LocalDateTime from = nextDateTime();
+            task = new Event(nextName(), from, from.plusMinutes(30L * (1 + random.nextInt(16))));
+        }
+
+        if (random.nextInt(100) < 30) {
+            task.complete();
+        }
+        return task;
+    }
+
+    /**
+     * Generates a task name
+     *
+     * @return The name
+     */
+    public String nextName() {
+        StringBuilder name = new StringBuilder(nextWord());
+        int wordCount = 2 + random.nextInt(4);
+        for (int i = 1; i < wordCount; i++) {
+            name.append(' ').append(nextWord());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Picks a word from the vocabulary, favouring the first words
+     *
+     * @return The word
+     */
+    public String nextWord() {
+        double skewed = random.nextDouble() * random.nextDouble();
+        return VOCABULARY[(int) (skewed * VOCABULARY.length)];
+    }
+
+    /**
+     * Generates a date and time on the half hour between 8am and 8pm
+     *
+     * @return The date and time
+     */
+    public LocalDateTime nextDateTime() {
+        long days = Math.round(random.nextGaussian() * DATE_SPREAD_DAYS / 3);
+        return DATE_ORIGIN.plusDays(days).plusMinutes(8 * 60 + 30L * random.nextInt(24));
+    }
+
+    /**
+     * Returns the random number generator, for callers which pick further values from the same sequence
+     *
+     * @return The generator
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+}
@@ -0,0 +1,87 @@
+package notjippity.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.ToDo;
+
+/**
+ * Measures converting single tasks to and from their data strings, for each type of task
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskCodecBenchmark {
+
+    private static final int TASK_COUNT = 1024;
+
+    @Param({"todo", "deadline", "event"})
+    public String type;
+
+    private final Task[] tasks = new Task[TASK_COUNT];
+    private final String[] dataStrings = new String[TASK_COUNT];
+    private int next;
+
+    /**
+     * Generates tasks of the benchmarked type along with their data strings
+     */
+    @Setup
+    public void setUp() {
+        SyntheticTasks generator = new SyntheticTasks(type.hashCode());
+        int count = 0;
+        while (count < TASK_COUNT) {
+            Task task = generator.nextTask();
+            if (isOfType(task)) {
+                tasks[count] = task;
+                dataStrings[count] = task.getDataString();
+                count++;
+            }
+        }
+    }
+
+    @Benchmark
+    public Task createTaskFromString() throws StorageException {
+        return Task.createTaskFromString(dataStrings[next++ & (TASK_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public String getDataString() {
+        return tasks[next++ & (TASK_COUNT - 1)].getDataString();
+    }
+
+    /**
+     * Checks if the given task is of the benchmarked type
+     *
+     * @param task The task
+     * @return True if it is
+     */
+    private boolean isOfType(Task task) {
+        switch (type) {
+        case "todo":
+            return task instanceof ToDo;
+        case "deadline":
+            return task instanceof Deadline;
+        default:
+            return task instanceof Event;
+        }
+    }
+
+}
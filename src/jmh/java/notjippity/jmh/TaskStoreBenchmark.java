@@ -0,0 +1,163 @@
+package notjippity.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskStoreType;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Compares the task tracker stores against a plain ArrayList: appending every task into an empty
+ * list, and reading and removing at random positions. Removals are paired with adds, so the number
+ * of tasks stays the same throughout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskStoreBenchmark {
+
+    private static final String ARRAY_LIST = "ARRAYLIST";
+    private static final int POSITION_COUNT = 4096;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({ARRAY_LIST, "SLOTS", "TREE", "COLUMNS", "OFFHEAP"})
+    public String store;
+
+    private List<Task> tasks;
+    private PositionalList list;
+    private final int[] positions = new int[POSITION_COUNT];
+    private int next;
+
+    /**
+     * Represents the positional operations being measured, so a plain ArrayList can stand in
+     * for a task tracker
+     */
+    private interface PositionalList {
+
+        void add(Task task);
+
+        Task get(int index);
+
+        Task remove(int index);
+
+    }
+
+    /**
+     * Generates the tasks and fills the list with them, along with the random positions cycled
+     * through
+     */
+    @Setup
+    public void setUp() {
+        SyntheticTasks generator = new SyntheticTasks(size);
+        tasks = generator.nextTasks(size);
+        list = fill(createList());
+
+        Random random = generator.getRandom();
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            positions[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void appendAll(Blackhole blackhole) {
+        blackhole.consume(fill(createList()));
+    }
+
+    @Benchmark
+    public Task get() {
+        return list.get(positions[next++ & (POSITION_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Task removeAndAdd() {
+        Task task = list.remove(positions[next++ & (POSITION_COUNT - 1)]);
+        list.add(task);
+        return task;
+    }
+
+    /**
+     * Appends every generated task to the given list
+     *
+     * @param list The empty list
+     * @return The filled list
+     */
+    private PositionalList fill(PositionalList list) {
+        for (Task task : tasks) {
+            list.add(task);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a new empty list of the benchmarked kind
+     *
+     * @return The empty list
+     */
+    private PositionalList createList() {
+        if (store.equals(ARRAY_LIST)) {
+            return wrap(new ArrayList<>());
+        }
+        return wrap(new TaskTracker(TaskStoreType.valueOf(store)));
+    }
+
+    private static PositionalList wrap(List<Task> list) {
+        return new PositionalList() {
+            @Override
+            public void add(Task task) {
+                list.add(task);
+            }
+
+            @Override
+            public Task get(int index) {
+                return list.get(index);
+            }
+
+            @Override
+            public Task remove(int index) {
+                return list.remove(index);
+            }
+        };
+    }
+
+    private static PositionalList wrap(TaskTracker taskTracker) {
+        return new PositionalList() {
+            @Override
+            public void add(Task task) {
+                taskTracker.addTask(task);
+            }
+
+            @Override
+            public Task get(int index) {
+                return taskTracker.getTask(index);
+            }
+
+            @Override
+            public Task remove(int index) {
+                return taskTracker.removeTask(index);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,88 @@
+package notjippity.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskStoreType;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Measures the task tracker's mutations and positional reads at random positions, for every
+ * store. Adds are paired with removals, so the number of tasks stays the same throughout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskTrackerBenchmark {
+
+    private static final int POSITION_COUNT = 4096;
+
+    @Param({"100", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"SLOTS", "TREE", "COLUMNS", "OFFHEAP"})
+    public TaskStoreType storeType;
+
+    private TaskTracker taskTracker;
+    private final Task[] newTasks = new Task[POSITION_COUNT];
+    private final int[] positions = new int[POSITION_COUNT];
+    private int next;
+
+    /**
+     * Generates the tasks, along with the random positions cycled through
+     */
+    @Setup
+    public void setUp() {
+        SyntheticTasks generator = new SyntheticTasks(size);
+        taskTracker = new TaskTracker(storeType);
+        for (Task task : generator.nextTasks(size)) {
+            taskTracker.addTask(task);
+        }
+
+        Random random = generator.getRandom();
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            newTasks[i] = generator.nextTask();
+            // One less than the size, so positions stay valid between a removal and its add
+            positions[i] = random.nextInt(size - 1);
+        }
+    }
+
+    @Benchmark
+    public Task addAndRemove() {
+        int i = next++ & (POSITION_COUNT - 1);
+        taskTracker.addTask(newTasks[i]);
+        return taskTracker.removeTask(positions[i]);
+    }
+
+    @Benchmark
+    public Task toggleTask() {
+        return taskTracker.toggleTask(positions[next++ & (POSITION_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Task getTask() {
+        return taskTracker.getTask(positions[next++ & (POSITION_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return taskTracker.indexOf(taskTracker.getTaskId(positions[next++ & (POSITION_COUNT - 1)]));
+    }
+
+}
@@ -0,0 +1,155 @@
+package notjippity.jmh;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import notjippity.tasks.Deadline;
+
+/**
+ * Generates scripts of commands for the bot, in the mix given as relative weights per kind of
+ * command, e.g. "todo=200,find=150,delete=300". Names, keywords and dates come from
+ * SyntheticTasks, so the same seed always generates the same script.
+ * <p>
+ * Toggles and deletes pick a random task among those the script has added and not yet deleted,
+ * so every command is valid; while there are no tasks, a todo is added instead.
+ */
+public class Workload {
+
+    /** Adds about 2% more tasks than it deletes and mostly looks tasks up, listing everything rarely */
+    public static final String DEFAULT_MIX = "todo=200,deadline=80,event=40,list=2,find=150,date=100,toggle=128,delete=300";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Represents the kinds of commands in a workload
+     */
+    private enum Kind {
+        TODO, DEADLINE, EVENT, LIST, FIND, DATE, TOGGLE, DELETE
+    }
+
+    private final String mix;
+    private final int[] weights = new int[Kind.values().length];
+    private int totalWeight;
+
+    /**
+     * Returns a new Workload instance
+     *
+     * @param mix The weight of each kind of command, as comma-separated kind=weight pairs, where
+     *     the kinds are todo, deadline, event, list, find, date, toggle and delete. Kinds left out
+     *     have a weight of 0.
+     * @throws IllegalArgumentException If the mix is invalid
+     */
+    public Workload(String mix) throws IllegalArgumentException {
+        this.mix = mix;
+        for (String pair : mix.split(",")) {
+            String[] parts = pair.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected kind=weight but found \"" + pair + "\"");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + parts[0]);
+            }
+            weights[Kind.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = weight;
+            totalWeight += weight;
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("The mix has no commands");
+        }
+    }
+
+    /**
+     * Returns the mix this workload was created with
+     *
+     * @return The mix
+     */
+    public String getMix() {
+        return mix;
+    }
+
+    /**
+     * Writes a script of the given number of commands, one per line
+     *
+     * @param script The file to write
+     * @param commandCount The number of commands
+     * @param seed The seed
+     * @return The number of tasks the script leaves behind
+     * @throws IOException If the file cannot be written
+     */
+    public int write(Path script, int commandCount, long seed) throws IOException {
+        SyntheticTasks generator = new SyntheticTasks(seed);
+        Random random = generator.getRandom();
+        int taskCount = 0;
+
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(script, StandardCharsets.UTF_8), 1 << 16)) {
+            for (int i = 0; i < commandCount; i++) {
+                Kind kind = pickKind(random);
+                if (taskCount == 0 && (kind == Kind.TOGGLE || kind == Kind.DELETE)) {
+                    kind = Kind.TODO;
+                }
+
+                switch (kind) {
+                case TODO:
+                    out.write("todo " + generator.nextName());
+                    taskCount++;
+                    break;
+                case DEADLINE:
+                    out.write("deadline " + generator.nextName() + " --by "
+                            + generator.nextDateTime().format(Deadline.DATETIME_FORMATTER));
+                    taskCount++;
+                    break;
+                case EVENT:
+                    String from = generator.nextDateTime().format(Deadline.DATETIME_FORMATTER);
+                    String to = generator.nextDateTime().plusHours(1 + random.nextInt(8))
+                            .format(Deadline.DATETIME_FORMATTER);
+                    out.write("event " + generator.nextName() + " --from " + from + " --to " + to);
+                    taskCount++;
+                    break;
+                case LIST:
+                    out.write("list");
+                    break;
+                case FIND:
+                    out.write("find " + generator.nextWord());
+                    break;
+                case DATE:
+                    out.write("list --date " + generator.nextDateTime().format(DATE_FORMATTER));
+                    break;
+                case TOGGLE:
+                    out.write("toggle " + (1 + random.nextInt(taskCount)));
+                    break;
+                default:
+                    out.write("delete " + (1 + random.nextInt(taskCount)));
+                    taskCount--;
+                    break;
+                }
+                out.write('\n');
+            }
+        }
+        return taskCount;
+    }
+
+    /**
+     * Picks the kind of the next command according to the weights
+     *
+     * @param random The random number generator
+     * @return The kind of command
+     */
+    private Kind pickKind(Random random) {
+        int roll = random.nextInt(totalWeight);
+        for (Kind kind : Kind.values()) {
+            roll -= weights[kind.ordinal()];
+            if (roll < 0) {
+                return kind;
+            }
+        }
+        throw new IllegalStateException("Unreachable, the weights add up to the total");
+    }
+
+}
@@ -0,0 +1,201 @@
+package notjippity;
+
+import java.util.concurrent.locks.LockSupport;
+
+import notjippity.io.Journal;
+import notjippity.utils.RingBuffer;
+
+/**
+ * Applies the commands of all sessions on a single writer thread. Sessions hand their commands
+ * over through a bounded lock-free ring buffer and wait for them to be applied; the writer takes
+ * whatever has queued up as one group, applies the group in order, and writes the journal records
+ * of the whole group at once before releasing the waiting sessions.
+ * <p>
+ * As only the writer modifies the tasks, sessions never contend for them. Commands which only
+ * read the tasks do not go through the pipeline at all: sessions run them on their own threads.
+ */
+class CommandPipeline {
+
+    private static final int CAPACITY = 1024;
+    private static final int MAX_GROUP_SIZE = 256;
+
+    private final RingBuffer<Request> queue = new RingBuffer<>(CAPACITY);
+    private final Request[] group = new Request[MAX_GROUP_SIZE];
+    private final Journal journal;
+    private final Thread writer;
+
+    private volatile boolean isRunning = true;
+    private volatile boolean isWriterIdle;
+
+    private long groupCount;
+    private long requestCount;
+
+    /**
+     * Represents a command handed over to the writer, which a session waits on until it is applied
+     */
+    abstract static class Request {
+
+        private volatile boolean isDone;
+        private volatile Thread waiter;
+        private RuntimeException failure;
+
+        /**
+         * Applies the command. Called on the writer thread.
+         */
+        abstract void apply();
+
+        /**
+         * Prepares the request to be queued again
+         */
+        private void reset() {
+            isDone = false;
+            failure = null;
+            waiter = Thread.currentThread();
+        }
+
+        /**
+         * Marks the request as applied and wakes the session waiting on it
+         */
+        private void complete() {
+            isDone = true;
+            LockSupport.unpark(waiter);
+        }
+
+        /**
+         * Blocks until the request is applied, rethrowing any unexpected failure on the session's thread
+         *
+         * @throws RuntimeException If applying the command failed unexpectedly
+         */
+        private void await() throws RuntimeException {
+            while (!isDone) {
+                LockSupport.park(this);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+    }
+
+    /**
+     * Returns a new CommandPipeline instance
+     *
+     * @param journal The journal which mutations are recorded into
+     */
+    CommandPipeline(Journal journal) {
+        this.journal = journal;
+        writer = new Thread(this::runWriter, "command-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread
+     */
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Applies the given requests in order, then blocks until all of them have been applied.
+     * Requests from one call are queued together, so the writer can apply them as one group.
+     *
+     * @param requests The requests to apply
+     * @param count The number of requests, taken from the start of the array
+     * @throws RuntimeException If applying any command failed unexpectedly
+     */
+    void submit(Request[] requests, int count) throws RuntimeException {
+        for (int i = 0; i < count; i++) {
+            requests[i].reset();
+            while (!queue.offer(requests[i])) {
+                // The writer is behind, let it catch up
+                wakeWriter();
+                Thread.yield();
+            }
+        }
+        wakeWriter();
+
+        // Requests complete in order, but a failure may only be rethrown once all of them are done
+        RuntimeException failure = null;
+        for (int i = 0; i < count; i++) {
+            try {
+                requests[i].await();
+            } catch (RuntimeException exception) {
+                failure = failure == null ? exception : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the writer once every queued request is applied
+     */
+    void stop() {
+        isRunning = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the average number of requests the writer applied per group
+     *
+     * @return The average group size, or 0 if nothing was applied
+     */
+    double getAverageGroupSize() {
+        return groupCount == 0 ? 0 : (double) requestCount / groupCount;
+    }
+
+    /**
+     * Wakes the writer if it is waiting for requests
+     */
+    private void wakeWriter() {
+        if (isWriterIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Applies queued requests group by group until stopped
+     */
+    private void runWriter() {
+        while (true) {
+            int count = queue.drainTo(group);
+            if (count == 0) {
+                if (!isRunning) {
+                    return;
+                }
+                // Announce the wait before checking again, so a request queued in between still wakes us
+                isWriterIdle = true;
+                if (queue.isEmpty() && isRunning) {
+                    LockSupport.park(this);
+                }
+                isWriterIdle = false;
+                continue;
+            }
+
+            journal.beginBatch();
+            for (int i = 0; i < count; i++) {
+                try {
+                    group[i].apply();
+                } catch (RuntimeException exception) {
+                    group[i].failure = exception;
+                }
+            }
+            journal.endBatch();
+
+            // Only release the sessions once their changes have reached the journal
+            for (int i = 0; i < count; i++) {
+                group[i].complete();
+                group[i] = null;
+            }
+            groupCount++;
+            requestCount += count;
+        }
+    }
+
+}
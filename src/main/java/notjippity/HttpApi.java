@@ -0,0 +1,540 @@
+package notjippity;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import notjippity.commands.Command;
+import notjippity.commands.CommandDispatcher;
+import notjippity.commands.DeleteCmd;
+import notjippity.commands.ListCmd;
+import notjippity.exceptions.CmdFormatException;
+import notjippity.exceptions.FatalNJException;
+import notjippity.exceptions.MissingArgException;
+import notjippity.exceptions.NJException;
+import notjippity.io.Ui;
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskMatch;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.TaskView;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
+
+/**
+ * Serves the tasks as JSON over HTTP on a local port, for scripts and dashboards. Task references
+ * are list indices as seen in "list", or IDs prefixed with "#" (sent as "%23").
+ * <ul>
+ *     <li>GET /tasks: all tasks, or only those matching ?find=&lt;keyword&gt; or on ?date=&lt;dd/MM/yyyy&gt;</li>
+ *     <li>POST /tasks: adds a task from the form fields type (todo, deadline or event), name, by, from and to</li>
+ *     <li>DELETE /tasks/&lt;task&gt;: deletes the task</li>
+ *     <li>POST /tasks/&lt;task&gt;/toggle: toggles the completed status of the task</li>
+ * </ul>
+ * Adding, deleting and toggling run the same commands as the CLI, through the bot's command
+ * pipeline, so they are validated the same way; their error messages are returned as
+ * {"error": "..."}. Task lists are streamed out as they are read rather than built up in memory,
+ * and like "list", they reflect modifications made while they are being sent.
+ * <p>
+ * Only local clients are served: requests must name a loopback host, and any Origin must be a
+ * loopback one, so web pages cannot reach the API through DNS rebinding. Requests which modify
+ * the tasks must also carry an X-Requested-With header, which a web page can only send
+ * cross-origin after a preflight this API never answers, so plain form posts are turned away.
+ */
+class HttpApi {
+
+    private static final int BACKLOG = 64;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String PATH_TASKS = "tasks";
+    private static final String PATH_TOGGLE = "toggle";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final String CSRF_HEADER = "X-Requested-With";
+    private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private static final Map<String, List<String>> TASK_FLAGS = Map.of(
+            "todo", List.of(),
+            "deadline", List.of("by"),
+            "event", List.of("from", "to"));
+
+    private final NotJippity bot;
+    private final TaskTracker taskTracker;
+    private final Ui silentUi;
+    private final CommandDispatcher commands;
+    private final HttpServer server;
+    private final ExecutorService handlerThreads;
+    private final AtomicInteger handlerCount = new AtomicInteger();
+
+    /**
+     * Represents a command from a request, applied by the command pipeline. Records the task the
+     * command acted on, so it can be sent back.
+     */
+    private class CommandRequest extends CommandPipeline.Request {
+
+        private final Command command;
+        private final ParsedInput input;
+        private final String ref;
+
+        private long id;
+        private int index;
+        private Task task;
+        private NJException error;
+
+        /**
+         * Returns a new CommandRequest instance
+         *
+         * @param command The command handler
+         * @param input The parsed command
+         * @param ref The reference to the task the command acts on, or null if it adds a task
+         */
+        private CommandRequest(Command command, ParsedInput input, String ref) {
+            this.command = command;
+            this.input = input;
+            this.ref = ref;
+        }
+
+        @Override
+        void apply() {
+            try {
+                // As the only writer, nothing can change the tasks between these steps
+                boolean isDelete = command instanceof DeleteCmd;
+                id = ref == null ? taskTracker.getNextId() : resolveId(ref);
+                if (isDelete && id != 0) {
+                    // Deleted tasks are sent back as they were
+                    index = taskTracker.indexOf(id);
+                    task = taskTracker.getTask(index);
+                }
+
+                bot.executeCommand(command, input);
+                if (!isDelete && id != 0) {
+                    index = taskTracker.indexOf(id);
+                    task = taskTracker.getTask(index);
+                }
+            } catch (NJException exception) {
+                error = exception;
+                if (exception instanceof FatalNJException) {
+                    bot.terminate(silentUi);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Returns a new HttpApi instance listening on the given port of the loopback address
+     *
+     * @param bot The bot whose tasks are served
+     * @param taskTracker The bot's task tracker
+     * @param port The port, or 0 for any free port
+     * @throws IOException If the port cannot be bound
+     */
+    HttpApi(NotJippity bot, TaskTracker taskTracker, int port) throws IOException {
+        this.bot = bot;
+        this.taskTracker = taskTracker;
+        // The commands' text output is not sent anywhere, the tasks they act on are sent instead
+        silentUi = new Ui(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        commands = bot.createCommands(silentUi, null);
+
+        // Responses are written as headers, then body; with Nagle's algorithm on, every response to a
+        // keep-alive client stalls on the client's delayed acknowledgement. Read once by the JDK, when
+        // its first server is created.
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        handlerThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-" + handlerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlerThreads);
+        server.createContext("/" + PATH_TASKS, this::handle);
+    }
+
+    /**
+     * Returns the port the API is served on
+     *
+     * @return The port
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Starts serving requests in the background
+     */
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving requests, abandoning any still being handled
+     */
+    void stop() {
+        server.stop(0);
+        handlerThreads.shutdownNow();
+    }
+
+    /**
+     * Routes a request to its handler, sending back any error as JSON
+     *
+     * @param exchange The request and its response
+     */
+    private void handle(HttpExchange exchange) {
+        try {
+            String[] parts = exchange.getRequestURI().getPath().substring(1).split("/");
+            String method = exchange.getRequestMethod();
+            if (!parts[0].equals(PATH_TASKS) || parts.length > 3
+                    || (parts.length == 3 && !parts[2].equals(PATH_TOGGLE))) {
+                sendError(exchange, 404, "Nothing here, try /tasks");
+                return;
+            }
+            if (!isLocalRequest(exchange)) {
+                sendError(exchange, 403, "Only local clients may use this");
+                return;
+            }
+            if (!method.equals("GET") && !exchange.getRequestHeaders().containsKey(CSRF_HEADER)) {
+                sendError(exchange, 403, "Send an " + CSRF_HEADER + " header with requests that change tasks");
+                return;
+            }
+            if (bot.isLoading()) {
+                // Task IDs only settle once the existing tasks are handed over
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Hang on, still loading your tasks...");
+                return;
+            }
+
+            Map<String, String> params = readParams(exchange);
+            if (parts.length == 1 && method.equals("GET")) {
+                sendTasks(exchange, params);
+            } else if (parts.length == 1 && method.equals("POST")) {
+                addTask(exchange, params);
+            } else if (parts.length == 2 && method.equals("DELETE")) {
+                applyToTask(exchange, "delete", parts[1]);
+            } else if (parts.length == 3 && method.equals("POST")) {
+                applyToTask(exchange, "toggle", parts[1]);
+            } else {
+                exchange.getResponseHeaders().set("Allow", parts.length == 1 ? "GET, POST"
+                        : parts.length == 2 ? "DELETE" : "POST");
+                sendError(exchange, 405, "Can't " + method + " that");
+            }
+        } catch (NJException exception) {
+            sendError(exchange, 400, exception.getMessage());
+        } catch (IllegalArgumentException exception) {
+            // Thrown when decoding a malformed form field
+            sendError(exchange, 400, "Can't read that request: " + exception.getMessage());
+        } catch (IOException exception) {
+            // The client went away, there is nobody left to answer
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Streams out the requested tasks as a JSON array
+     *
+     * @param exchange The request and its response
+     * @param params The query fields
+     * @throws IOException If the response cannot be sent
+     * @throws NJException If the query is invalid
+     */
+    private void sendTasks(HttpExchange exchange, Map<String, String> params) throws IOException, NJException {
+        List<TaskMatch> matches = null;
+        String keyword = params.get("find");
+        String dateStr = params.get("date");
+        if (keyword != null) {
+            if (keyword.isEmpty()) {
+                throw new MissingArgException("Np, just tell me what to look for (?find=<keyword>)");
+            }
+            matches = taskTracker.getTasksMatching(keyword);
+        } else if (dateStr != null) {
+            matches = taskTracker.getTasksOnDate(ListCmd.parseDate(dateStr));
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        // A length of 0 streams the body in chunks, so its size need not be known up front
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            out.write('[');
+            boolean isFirst = true;
+            if (matches == null) {
+                TaskView.Cursor cursor = taskTracker.getTaskView().iterator();
+                while (cursor.hasNext()) {
+                    Task task = cursor.next();
+                    out.write(isFirst ? "" : ",");
+                    writeTask(out, cursor.getIndex(), cursor.getId(), task);
+                    isFirst = false;
+                }
+            } else {
+                for (TaskMatch match : matches) {
+                    out.write(isFirst ? "" : ",");
+                    writeTask(out, match.getIndex(), match.getId(), match.getTask());
+                    isFirst = false;
+                }
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Adds the task described by the form fields
+     *
+     * @param exchange The request and its response
+     * @param params The form fields
+     * @throws IOException If the response cannot be sent
+     * @throws NJException If the task is invalid
+     */
+    private void addTask(HttpExchange exchange, Map<String, String> params) throws IOException, NJException {
+        String type = params.get("type");
+        if (type == null || !TASK_FLAGS.containsKey(type)) {
+            throw new CmdFormatException("What kind of task? (type=todo|deadline|event)");
+        }
+
+        // Each field is passed on as it is, so a name containing "--by" stays part of the name. Only
+        // the flags which were given are passed on, so missing ones are reported by the command.
+        Map<String, String> flags = new LinkedHashMap<>();
+        for (String flag : TASK_FLAGS.get(type)) {
+            if (params.containsKey(flag)) {
+                flags.put(flag, params.get(flag));
+            }
+        }
+        ParsedInput input = Parser.compose(type, params.getOrDefault("name", ""), flags);
+        apply(exchange, 201, new CommandRequest(commands.get(type), input, null));
+    }
+
+    /**
+     * Applies the given command to the referenced task
+     *
+     * @param exchange The request and its response
+     * @param cmdName The command to apply
+     * @param ref The index of the task, or its ID prefixed with "#"
+     * @throws IOException If the response cannot be sent
+     * @throws NJException If the command fails
+     */
+    private void applyToTask(HttpExchange exchange, String cmdName, String ref) throws IOException, NJException {
+        apply(exchange, 200, new CommandRequest(commands.get(cmdName), Parser.compose(cmdName, ref, Map.of()), ref));
+    }
+
+    /**
+     * Hands the given command to the pipeline, then sends back the task it acted on
+     *
+     * @param exchange The request and its response
+     * @param status The status to send on success
+     * @param request The command
+     * @throws IOException If the response cannot be sent
+     * @throws NJException If the command fails
+     */
+    private void apply(HttpExchange exchange, int status, CommandRequest request) throws IOException, NJException {
+        bot.getPipeline().submit(new CommandPipeline.Request[] {request}, 1);
+        if (request.error != null) {
+            throw request.error;
+        }
+
+        StringBuilder body = new StringBuilder();
+        if (request.task != null) {
+            writeTask(body, request.index, request.id, request.task);
+        } else {
+            body.append("{}");
+        }
+        sendJson(exchange, status, body.toString());
+    }
+
+    /**
+     * Returns the ID of the referenced task
+     *
+     * @param ref The index of the task, or its ID prefixed with "#"
+     * @return The ID, or 0 if there is no such task, which the command itself reports
+     */
+    private long resolveId(String ref) {
+        try {
+            if (ref.startsWith(TaskTracker.ID_PREFIX)) {
+                long id = Long.parseLong(ref.substring(TaskTracker.ID_PREFIX.length()));
+                taskTracker.indexOf(id);
+                return id;
+            }
+            return taskTracker.getTaskId(Integer.parseInt(ref) - 1);
+        } catch (NumberFormatException | IndexOutOfBoundsException | NoSuchElementException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Checks if the request was addressed to a loopback host and, if it came from a web page,
+     * whether that page was served from one
+     *
+     * @param exchange The request
+     * @return True if both the Host and any Origin header name a loopback host
+     */
+    private static boolean isLocalRequest(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !LOCAL_HOSTS.contains(stripPort(host))) {
+            return false;
+        }
+
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) {
+            return true;
+        }
+        try {
+            URI originUri = new URI(origin);
+            return "http".equals(originUri.getScheme()) && originUri.getHost() != null
+                    && LOCAL_HOSTS.contains(originUri.getHost());
+        } catch (URISyntaxException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the host part of a Host header, without any port
+     *
+     * @param host The header value, e.g. "localhost:8080" or "[::1]:8080"
+     * @return The host, e.g. "localhost" or "[::1]"
+     */
+    private static String stripPort(String host) {
+        int portStart = host.startsWith("[") ? host.indexOf("]:") + 1 : host.lastIndexOf(':');
+        return portStart <= 0 ? host : host.substring(0, portStart);
+    }
+
+    /**
+     * Returns the query fields, followed by any form fields in the body which are not in the query
+     *
+     * @param exchange The request
+     * @return The fields by name
+     * @throws IOException If the body cannot be read
+     */
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        addParams(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream body = exchange.getRequestBody()) {
+            addParams(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    /**
+     * Decodes URL-encoded fields into the given map, keeping existing fields of the same name
+     *
+     * @param encoded The encoded fields, e.g. "name=read%20book&amp;by=01/01/2024", or null
+     * @param params The map to decode into
+     * @throws IllegalArgumentException If a field is malformed
+     */
+    private static void addParams(String encoded, Map<String, String> params) throws IllegalArgumentException {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String field : encoded.split("&")) {
+            int separator = field.indexOf('=');
+            String name = separator < 0 ? field : field.substring(0, separator);
+            String value = separator < 0 ? "" : field.substring(separator + 1);
+            params.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Writes the given task as a JSON object, with dates in ISO-8601 format
+     *
+     * @param out The destination
+     * @param index The list index of the task, 0-indexed, which is sent 1-indexed as in "list"
+     * @param id The ID of the task
+     * @param task The task
+     * @throws IOException If writing fails
+     */
+    private static void writeTask(Appendable out, int index, long id, Task task) throws IOException {
+        out.append("{\"index\":").append(Integer.toString(index + 1))
+                .append(",\"id\":").append(Long.toString(id))
+                .append(",\"type\":\"").append(task.getTypeIcon())
+                .append("\",\"name\":");
+        writeString(out, task.getName());
+        out.append(",\"completed\":").append(Boolean.toString(task.isCompleted()));
+        if (task instanceof Deadline) {
+            out.append(",\"by\":\"").append(((Deadline) task).getByDateTime().toString()).append('"');
+        } else if (task instanceof Event) {
+            Event event = (Event) task;
+            out.append(",\"from\":\"").append(event.getFromDateTime().toString())
+                    .append("\",\"to\":\"").append(event.getToDateTime().toString()).append('"');
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes the given string as a JSON string literal
+     *
+     * @param out The destination
+     * @param value The string
+     * @throws IOException If writing fails
+     */
+    private static void writeString(Appendable out, String value) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character == '"' || character == '\\') {
+                out.append('\\').append(character);
+            } else if (character < ' ') {
+                out.append(String.format("\\u%04x", (int) character));
+            } else {
+                out.append(character);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Sends the given JSON as the whole response
+     *
+     * @param exchange The request and its response
+     * @param status The status code
+     * @param json The response body
+     * @throws IOException If the response cannot be sent
+     */
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Sends the given error message as {"error": "..."}, unless the response was already started
+     *
+     * @param exchange The request and its response
+     * @param status The status code
+     * @param message The error message
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            StringBuilder json = new StringBuilder("{\"error\":");
+            writeString(json, message);
+            sendJson(exchange, status, json.append('}').toString());
+        } catch (IOException exception) {
+            // The client went away, there is nobody left to answer
+        }
+    }
+
+}
@@ -1,16 +1,28 @@
 package notjippity;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import notjippity.commands.ByeCmd;
 import notjippity.commands.Command;
+import notjippity.commands.CommandDispatcher;
+import notjippity.commands.CompactCmd;
 import notjippity.commands.DeadlineCmd;
 import notjippity.commands.DeleteCmd;
 import notjippity.commands.DoneCmd;
 import notjippity.commands.EventCmd;
+import notjippity.commands.ExportCmd;
 import notjippity.commands.FindCmd;
 import notjippity.commands.ListCmd;
+import notjippity.commands.StatsCmd;
 import notjippity.commands.ToDoCmd;
 import notjippity.commands.ToggleCmd;
 import notjippity.commands.UndoCmd;
@@ -19,21 +31,36 @@ import notjippity.exceptions.NJException;
 import notjippity.exceptions.StorageException;
 import notjippity.io.Storage;
 import notjippity.io.Ui;
-import notjippity.tasks.Task;
+import notjippity.jfr.CommandExecutionEvent;
+import notjippity.jfr.EventRecording;
+import notjippity.tasks.TaskStoreType;
 import notjippity.tasks.TaskTracker;
-import notjippity.utils.Parser;
+import notjippity.utils.Metrics;
+import notjippity.utils.ParsedInput;
 
 /**
  * Represents the NotJippity bot and handles all overarching interactions
  */
 public class NotJippity {
 
+    private static final String STORE_FLAG = "--store=";
+    private static final String BATCH_FLAG = "--batch";
+    private static final String SERVER_FLAG = "--server=";
+    private static final String HTTP_FLAG = "--http=";
+    private static final String JFR_FLAG = "--jfr";
+    private static final String DEFAULT_RECORDING_PATH = "notjippity.jfr";
+
     private Ui ui;
     private TaskTracker taskTracker;
     private Storage storage;
-    private final List<Command> commands = new ArrayList<>();
-
-    private boolean isRunning = true;
+    private CommandPipeline pipeline;
+    private Session consoleSession;
+    private Server server;
+    private HttpApi httpApi;
+    private EventRecording eventRecording;
+    private TaskStoreType storeType;
+    private CompletableFuture<TaskTracker> loadedTasks;
+    private final Metrics metrics = new Metrics();
 
     /**
      * Starts the chatbot
@@ -42,7 +69,7 @@ public class NotJippity {
      */
     public static void main(String[] args) {
         NotJippity bot = new NotJippity();
-        bot.init();
+        bot.init(Arrays.asList(args));
         bot.startMainLoop();
         bot.shutdown();
     }
@@ -50,91 +77,431 @@ public class NotJippity {
     /**
      * Runs the bot's startup sequence. Must be called before performing any further bot logic.
      * If any initialisation error occurs, the bot will terminate immediately.
+     *
+     * <p>
+     * Supported startup flags:
+     * <ul>
+     *     <li>--lazy: only decode tasks from the data file when first accessed</li>
+     *     <li>--background-load: load the existing tasks while already accepting commands</li>
+     *     <li>--store=&lt;slots|tree|columns|offheap&gt;: the data structure holding the tasks</li>
+     *     <li>--batch &lt;file&gt;: run the commands in the file without prompting, then exit</li>
+     *     <li>--server=&lt;port&gt;: also accept clients on the given local port until the console session ends</li>
+     *     <li>--http=&lt;port&gt;: also serve the tasks as JSON on the given local port until the console session ends</li>
+     *     <li>--jfr[=&lt;file&gt;]: record Flight Recorder events into the file, notjippity.jfr by default</li>
+     * </ul>
+     *
+     * @param flags The startup flags
+     */
+    void init(List<String> flags) {
+        init(flags, createUi(flags));
+    }
+
+    /**
+     * Runs the bot's startup sequence with the given console UI in place of the one chosen by the
+     * startup flags, e.g. to replay a generated script in-process with its output discarded
+     *
+     * @param flags The startup flags, where any --batch flag is ignored
+     * @param ui The console UI
      */
-    private void init() {
-        ui = new Ui();
-        taskTracker = new TaskTracker();
-        storage = new Storage(ui);
+    void init(List<String> flags, Ui ui) {
+        this.ui = ui;
+        startEventRecording(flags);
+        storeType = parseStoreType(flags);
+        taskTracker = new TaskTracker(storeType);
+        storage = new Storage(ui, flags.contains("--lazy"), metrics);
 
         try {
             storage.init();
 
-            for (Task task : storage.loadData()) {
-                taskTracker.addTask(task);
+            if (flags.contains("--background-load")) {
+                startBackgroundLoad();
+            } else {
+                storage.loadData(taskTracker);
+                // Only record mutations made after the loaded state
+                taskTracker.setJournal(storage.getJournal());
             }
         } catch (FatalNJException exception) {
             ui.sendRaw(exception.getMessage());
-            System.exit(1);
+            terminate();
         }
 
-        // Register all the command handlers
-        commands.add(new ToDoCmd(ui, taskTracker));
-        commands.add(new DeadlineCmd(ui, taskTracker));
-        commands.add(new EventCmd(ui, taskTracker));
-        commands.add(new ListCmd(ui, taskTracker));
-        commands.add(new FindCmd(ui, taskTracker));
-        commands.add(new ToggleCmd(ui, taskTracker));
-        commands.add(new DoneCmd(ui, taskTracker));
-        commands.add(new UndoCmd(ui, taskTracker));
-        commands.add(new DeleteCmd(ui, taskTracker));
-        commands.add(new ByeCmd(this));
+        pipeline = new CommandPipeline(storage.getJournal());
+        pipeline.start();
+        consoleSession = new Session(this, ui);
 
         // Startup complete, send the welcome message
-        printStartupMsg();
+        printStartupMsg(ui);
+        startServer(flags);
+        startHttpApi(flags);
+    }
+
+    /**
+     * Returns the command handlers for a session, all of which send their output to the given UI
+     *
+     * @param ui The UI of the session
+     * @param session The session, or null if the handlers are not used by a session, in which case
+     *     there is no "bye" command
+     * @return The command handlers
+     */
+    CommandDispatcher createCommands(Ui ui, Session session) {
+        CommandDispatcher commands = new CommandDispatcher();
+        commands.register(new ToDoCmd(ui, taskTracker));
+        commands.register(new DeadlineCmd(ui, taskTracker), "dl");
+        commands.register(new EventCmd(ui, taskTracker));
+        commands.register(new ListCmd(ui, taskTracker), "ls");
+        commands.register(new FindCmd(ui, taskTracker));
+        commands.register(new ToggleCmd(ui, taskTracker));
+        commands.register(new DoneCmd(ui, taskTracker));
+        commands.register(new UndoCmd(ui, taskTracker));
+        commands.register(new DeleteCmd(ui, taskTracker));
+        commands.register(new CompactCmd(ui, storage));
+        commands.register(new ExportCmd(ui, taskTracker, storage));
+        commands.register(new StatsCmd(ui, metrics));
+        if (session != null) {
+            commands.register(new ByeCmd(session));
+        }
+        return commands;
+    }
+
+    /**
+     * Returns the port clients can connect to
+     *
+     * @return The port, or -1 if the bot was not started with the --server flag
+     */
+    int getServerPort() {
+        return server == null ? -1 : server.getPort();
+    }
+
+    /**
+     * Returns the port the tasks are served on as JSON
+     *
+     * @return The port, or -1 if the bot was not started with the --http flag
+     */
+    int getHttpPort() {
+        return httpApi == null ? -1 : httpApi.getPort();
+    }
+
+    /**
+     * Returns the pipeline which applies every session's commands that modify the tasks
+     *
+     * @return The command pipeline
+     */
+    CommandPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Executes the given command, recording its latency and, while events are being recorded,
+     * its execution event
+     *
+     * @param command The command handler
+     * @param input The parsed command
+     * @throws NJException If the command fails
+     */
+    void executeCommand(Command command, ParsedInput input) throws NJException {
+        CommandExecutionEvent event = CommandExecutionEvent.begin(command.getCmdName(), input.getArgLength());
+        String outcome = CommandExecutionEvent.OUTCOME_FAILED;
+        long startTime = System.nanoTime();
+        try {
+            command.execute(input);
+            outcome = CommandExecutionEvent.OUTCOME_OK;
+        } catch (NJException exception) {
+            outcome = exception instanceof FatalNJException
+                    ? CommandExecutionEvent.OUTCOME_FATAL
+                    : CommandExecutionEvent.OUTCOME_REJECTED;
+            throw exception;
+        } finally {
+            metrics.recordCommand(command.getCmdName(), System.nanoTime() - startTime);
+            CommandExecutionEvent.end(event, outcome);
+        }
+    }
+
+    /**
+     * Returns the metrics which commands, loads and saves are recorded into
+     *
+     * @return The metrics
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Checks if the existing tasks are still to be handed over to the task tracker
+     *
+     * @return True if the existing tasks are loading or waiting to be merged
+     */
+    boolean isLoading() {
+        return taskTracker.isLoading();
     }
 
     /**
      * Runs the bot's shutdown sequence. Must be called after all logic ends and before bot termination.
      */
-    private void shutdown() {
+    void shutdown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (httpApi != null) {
+            httpApi.stop();
+        }
+        pipeline.stop();
+        awaitLoadedTasks(ui);
         try {
-            storage.saveData(taskTracker.getAllDataStrings());
+            storage.saveData(taskTracker);
         } catch (StorageException exception) {
             ui.send(exception.getMessage());
         }
+        storage.close();
+        if (eventRecording != null) {
+            eventRecording.stop();
+            ui.send("Saved the flight recording to " + eventRecording.getDestination());
+        }
 
-        printExitMsg();
+        printExitMsg(ui);
+        ui.flush();
+
+        if (ui.isBatch()) {
+            // Reported separately, so the output can still be compared against an interactive run
+            int commandCount = consoleSession.getCommandCount();
+            double seconds = consoleSession.getRunNanos() / 1e9;
+            System.err.printf("Ran %d commands in %.3fs (%.0f commands/s)%n", commandCount, seconds,
+                    commandCount / Math.max(seconds, 1e-9));
+        }
     }
 
     /**
-     * Starts an infinite loop to handle the bot's main logic
+     * Terminates the bot immediately, writing out any buffered output first
      */
-    private void startMainLoop() {
-        while (isRunning) {
-            String input = ui.getUserInput();
-            String cmdString = Parser.getCommand(input);
-            String argString = Parser.getArgString(input);
+    private void terminate() {
+        terminate(ui);
+    }
 
-            // Try to match the given command
-            boolean match = false;
-            for (Command command : commands) {
-                if (command.getCmdName().equalsIgnoreCase(cmdString)) {
-                    match = true;
-                    try {
-                        command.execute(cmdString, argString);
-                    } catch (NJException exception) {
-                        ui.send(exception.getMessage());
-                        if (exception instanceof FatalNJException) {
-                            System.exit(1);
-                        }
-                    }
-                    break;
-                }
+    /**
+     * Terminates the bot immediately, writing out any output buffered by the console or the given UI first
+     *
+     * @param sessionUi The UI of the session causing the termination
+     */
+    void terminate(Ui sessionUi) {
+        sessionUi.flush();
+        ui.flush();
+        System.exit(1);
+    }
+
+    /**
+     * Handles the console session until the user leaves or the input runs out
+     */
+    void startMainLoop() {
+        consoleSession.run();
+    }
+
+    /**
+     * Returns the UI to use, which runs in batch mode if the --batch flag is given.
+     * If the batch file cannot be opened, the bot will terminate immediately.
+     *
+     * @param flags The startup flags
+     * @return The UI
+     */
+    private Ui createUi(List<String> flags) {
+        int flagIndex = flags.indexOf(BATCH_FLAG);
+        if (flagIndex < 0) {
+            return new Ui();
+        }
+
+        Ui cliUi = new Ui();
+        if (flagIndex + 1 >= flags.size()) {
+            cliUi.sendRaw("Which file should I run? (" + BATCH_FLAG + " <file>)");
+            cliUi.flush();
+            System.exit(1);
+        }
+        String fileStr = flags.get(flagIndex + 1);
+        try {
+            return new Ui(Path.of(fileStr));
+        } catch (IOException | InvalidPathException exception) {
+            cliUi.sendRaw("Couldn't open the batch file \"" + fileStr + "\": " + exception.getMessage());
+            cliUi.flush();
+            System.exit(1);
+            return cliUi;
+        }
+    }
+
+    /**
+     * Returns the task store type given by the --store flag, or slots if there is none.
+     * If the type is unknown, the bot will terminate immediately.
+     *
+     * @param flags The startup flags
+     * @return The task store type
+     */
+    private TaskStoreType parseStoreType(List<String> flags) {
+        for (String flag : flags) {
+            if (!flag.startsWith(STORE_FLAG)) {
+                continue;
+            }
+
+            String typeStr = flag.substring(STORE_FLAG.length());
+            try {
+                return TaskStoreType.valueOf(typeStr.toUpperCase());
+            } catch (IllegalArgumentException exception) {
+                ui.sendRaw("Unknown task store \"" + typeStr + "\", expected one of "
+                        + Arrays.toString(TaskStoreType.values()).toLowerCase());
+                terminate();
+            }
+        }
+        return TaskStoreType.SLOTS;
+    }
+
+    /**
+     * Starts recording Flight Recorder events if the --jfr flag is given, so that stalls can be
+     * traced back to commands and storage. If recording cannot start, the bot will terminate immediately.
+     *
+     * @param flags The startup flags
+     */
+    private void startEventRecording(List<String> flags) {
+        for (String flag : flags) {
+            if (!flag.equals(JFR_FLAG) && !flag.startsWith(JFR_FLAG + "=")) {
+                continue;
             }
 
-            // If a match isn't found, send an error message
-            if (!match) {
-//                throw new UnknownCmdException("Idk what's \"" + cmdString + "\". Typo maybe?");
-                ui.send("Idk what's \"" + cmdString + "\". Typo maybe?");
+            String pathStr = flag.equals(JFR_FLAG) ? DEFAULT_RECORDING_PATH : flag.substring(JFR_FLAG.length() + 1);
+            try {
+                eventRecording = EventRecording.start(Path.of(pathStr));
+            } catch (IOException | InvalidPathException | IllegalStateException exception) {
+                ui.sendRaw("Can't record events into \"" + pathStr + "\": " + exception.getMessage());
+                terminate();
             }
+            return;
         }
     }
 
     /**
-     * Stops the main loop of the bot
+     * Starts accepting clients if the --server flag is given.
+     * If the port cannot be used, the bot will terminate immediately.
+     *
+     * @param flags The startup flags
      */
-    public void stopMainLoop() {
-        isRunning = false;
+    private void startServer(List<String> flags) {
+        for (String flag : flags) {
+            if (!flag.startsWith(SERVER_FLAG)) {
+                continue;
+            }
+
+            String portStr = flag.substring(SERVER_FLAG.length());
+            try {
+                server = new Server(this, Integer.parseInt(portStr));
+            } catch (IOException | IllegalArgumentException exception) {
+                ui.sendRaw("Can't accept clients on port \"" + portStr + "\": " + exception.getMessage());
+                terminate();
+            }
+            server.start();
+            ui.send("Also taking commands on port " + server.getPort() + " now");
+            return;
+        }
+    }
+
+    /**
+     * Starts serving the tasks as JSON if the --http flag is given.
+     * If the port cannot be used, the bot will terminate immediately.
+     *
+     * @param flags The startup flags
+     */
+    private void startHttpApi(List<String> flags) {
+        for (String flag : flags) {
+            if (!flag.startsWith(HTTP_FLAG)) {
+                continue;
+            }
+
+            String portStr = flag.substring(HTTP_FLAG.length());
+            try {
+                httpApi = new HttpApi(this, taskTracker, Integer.parseInt(portStr));
+            } catch (IOException | IllegalArgumentException exception) {
+                ui.sendRaw("Can't serve the API on port \"" + portStr + "\": " + exception.getMessage());
+                terminate();
+            }
+            httpApi.start();
+            ui.send("Also serving your tasks at http://localhost:" + httpApi.getPort() + "/tasks now");
+            return;
+        }
+    }
+
+    /**
+     * Loads the existing tasks on a separate thread, so that commands which do not need them
+     * can be accepted right away. The journal is opened first, so those commands are recorded
+     * as soon as they are accepted.
+     *
+     * @throws StorageException If the journal cannot be opened
+     */
+    private void startBackgroundLoad() throws StorageException {
+        storage.openJournal();
+        taskTracker.startLoading();
+        taskTracker.setJournal(storage.getJournal());
+        loadedTasks = new CompletableFuture<>();
+
+        Thread loader = new Thread(() -> {
+            TaskTracker loaded = new TaskTracker(storeType);
+            try {
+                storage.loadData(loaded);
+                loadedTasks.complete(loaded);
+            } catch (StorageException | RuntimeException exception) {
+                loadedTasks.completeExceptionally(exception);
+            }
+        }, "task-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Blocks until the existing tasks are loaded, reporting progress every second, then hands
+     * them over to the task tracker
+     *
+     * @param ui The UI to report progress to
+     */
+    void awaitLoadedTasks(Ui ui) {
+        if (loadedTasks == null) {
+            return;
+        }
+
+        if (!loadedTasks.isDone()) {
+            ui.send("Hang on, still loading your tasks...");
+            ui.flush();
+            long startTime = System.nanoTime();
+            while (!loadedTasks.isDone()) {
+                try {
+                    loadedTasks.get(1, TimeUnit.SECONDS);
+                } catch (TimeoutException exception) {
+                    long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+                    ui.sendWithSpacer("Still loading... (" + seconds + "s)");
+                    ui.flush();
+                } catch (InterruptedException | ExecutionException exception) {
+                    // Either the load finished with an error, which is reported when merging, or we were interrupted
+                    break;
+                }
+            }
+        }
+
+        mergeLoadedTasks(ui);
+    }
+
+    /**
+     * Hands the existing tasks over to the task tracker if they have finished loading.
+     * If loading failed, the bot will terminate immediately.
+     *
+     * @param ui The UI to report a failure to
+     */
+    void mergeLoadedTasks(Ui ui) {
+        if (loadedTasks == null || !loadedTasks.isDone()) {
+            return;
+        }
+
+        try {
+            taskTracker.addLoadedTasks(loadedTasks.join());
+            storage.finishLoad(taskTracker);
+        } catch (CompletionException exception) {
+            ui.sendRaw(exception.getCause().getMessage());
+            terminate(ui);
+        } catch (StorageException exception) {
+            ui.sendRaw(exception.getMessage());
+            terminate(ui);
+        }
+        loadedTasks = null;
     }
 
     /**
@@ -148,16 +515,20 @@ public class NotJippity {
 
     /**
      * Prints the startup message
+     *
+     * @param ui The UI to print to
      */
-    private void printStartupMsg() {
+    void printStartupMsg(Ui ui) {
         ui.send("____________________________________________________________");
         ui.sendWithSpacer("What's up?");
     }
 
     /**
      * Prints the shutdown message
+     *
+     * @param ui The UI to print to
      */
-    private void printExitMsg() {
+    void printExitMsg(Ui ui) {
         ui.send("Aite cool, cya.");
         ui.sendWithSpacer("____________________________________________________________");
     }
@@ -0,0 +1,143 @@
+package notjippity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import notjippity.io.Ui;
+
+/**
+ * Accepts client connections on a local port and runs a separate session for each connection on
+ * its own thread. Clients converse exactly as on the console, and all sessions act on the same
+ * tasks as the console session.
+ */
+class Server {
+
+    private static final int BACKLOG = 64;
+    private static final int STOP_TIMEOUT_SECONDS = 5;
+
+    private final NotJippity bot;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessionThreads;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /**
+     * Returns a new Server instance listening on the given port of the loopback address
+     *
+     * @param bot The bot whose tasks the sessions act on
+     * @param port The port, or 0 for any free port
+     * @throws IOException If the port cannot be bound
+     */
+    Server(NotJippity bot, int port) throws IOException {
+        this.bot = bot;
+        serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        sessionThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "session-" + sessionCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the port the server is listening on
+     *
+     * @return The port
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts accepting clients in the background
+     */
+    void start() {
+        Thread acceptor = new Thread(this::acceptClients, "server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stops accepting clients, disconnects the connected ones and waits briefly for their sessions to end
+     */
+    void stop() {
+        close(serverSocket);
+        for (Socket client : clients) {
+            close(client);
+        }
+
+        sessionThreads.shutdown();
+        try {
+            sessionThreads.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Accepts clients until the server socket is closed, starting a session for each
+     */
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException exception) {
+                // The server socket was closed by stop()
+                return;
+            }
+
+            clients.add(client);
+            try {
+                sessionThreads.execute(() -> runSession(client));
+            } catch (RejectedExecutionException exception) {
+                clients.remove(client);
+                close(client);
+            }
+        }
+    }
+
+    /**
+     * Converses with the given client until it leaves or disconnects
+     *
+     * @param client The client connection
+     */
+    private void runSession(Socket client) {
+        try {
+            Ui ui = new Ui(client.getInputStream(), client.getOutputStream());
+            Session session = new Session(bot, ui);
+            bot.printStartupMsg(ui);
+            session.run();
+            bot.printExitMsg(ui);
+            ui.flush();
+        } catch (IOException | UncheckedIOException exception) {
+            // The client disconnected abruptly, there is nothing left to tell it
+        } finally {
+            clients.remove(client);
+            close(client);
+        }
+    }
+
+    /**
+     * Closes the given socket, ignoring any error since it is being discarded anyway
+     *
+     * @param socket The socket
+     */
+    private static void close(AutoCloseable socket) {
+        try {
+            socket.close();
+        } catch (Exception exception) {
+            // Nothing more can be done with the socket
+        }
+    }
+
+}
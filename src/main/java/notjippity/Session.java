@@ -0,0 +1,191 @@
+package notjippity;
+
+import notjippity.commands.Command;
+import notjippity.commands.CommandDispatcher;
+import notjippity.exceptions.FatalNJException;
+import notjippity.exceptions.NJException;
+import notjippity.io.Ui;
+import notjippity.jfr.CommandDispatchEvent;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
+
+/**
+ * Represents a single conversation with the bot through a UI, such as the console or a client
+ * connection. Each session has its own command handlers sending output to its own UI, while the
+ * tasks and storage behind them are shared by all sessions.
+ * <p>
+ * Commands which modify the tasks are handed to the bot's command pipeline, which applies them on
+ * its writer thread. Commands which only read the tasks run directly on the session's thread, once
+ * the session's earlier commands have been applied. A batch session reads ahead and hands over
+ * up to a full group of commands at once.
+ */
+public class Session {
+
+    private static final int BATCH_GROUP_SIZE = 64;
+
+    private final NotJippity bot;
+    private final Ui ui;
+    private final CommandDispatcher commands;
+    private final QueuedCommand[] pending;
+    private int pendingCount;
+
+    private volatile boolean isRunning = true;
+    private int commandCount;
+    private long runNanos;
+
+    /**
+     * Represents a command of this session waiting to be applied by the pipeline
+     */
+    private class QueuedCommand extends CommandPipeline.Request {
+
+        private final ParsedInput parsedInput = new ParsedInput();
+        private Command command;
+
+        @Override
+        void apply() {
+            // A "bye" earlier in the same group ends the session before the rest apply
+            if (!isRunning) {
+                return;
+            }
+            execute(command, parsedInput, true);
+        }
+
+    }
+
+    /**
+     * Returns a new Session instance
+     *
+     * @param bot The bot whose tasks the session acts on
+     * @param ui The UI to converse through
+     */
+    Session(NotJippity bot, Ui ui) {
+        this.bot = bot;
+        this.ui = ui;
+        commands = bot.createCommands(ui, this);
+        pending = new QueuedCommand[ui.isBatch() ? BATCH_GROUP_SIZE : 1];
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = new QueuedCommand();
+        }
+    }
+
+    /**
+     * Handles commands from the UI until the session is stopped or the input runs out
+     */
+    public void run() {
+        long startTime = System.nanoTime();
+        while (isRunning) {
+            String input = ui.getUserInput();
+            // Stop once the input runs out, e.g. at the end of a batch file or when a client disconnects
+            if (input == null) {
+                break;
+            }
+            commandCount++;
+
+            QueuedCommand next = pending[pendingCount];
+            Parser.parse(input, next.parsedInput);
+            Command command = findCommand(next.parsedInput);
+            if (command == null) {
+                continue;
+            }
+
+            if (command.isReadOnly() && !bot.isLoading()) {
+                // Reads must still see every earlier command of this session
+                submitPending();
+                execute(command, next.parsedInput, false);
+                continue;
+            }
+
+            next.command = command;
+            pendingCount++;
+            if (pendingCount == pending.length) {
+                submitPending();
+            }
+        }
+        submitPending();
+        runNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Stops the session after the current command
+     */
+    public void stop() {
+        isRunning = false;
+    }
+
+    /**
+     * Returns the number of commands handled so far
+     *
+     * @return The number of commands
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Returns how long the session ran for, once it has ended
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    /**
+     * Finds the handler of the given command, sending an error message if there is no single match.
+     * Earlier commands of this session are applied first, so that messages stay in order.
+     *
+     * @param parsedInput The parsed command
+     * @return The command handler, or null if there is none
+     */
+    private Command findCommand(ParsedInput parsedInput) {
+        CommandDispatchEvent event = CommandDispatchEvent.begin(parsedInput.getCommand());
+        Command command = null;
+        try {
+            command = commands.get(parsedInput.getCommand());
+        } catch (NJException exception) {
+            submitPending();
+            ui.send(exception.getMessage());
+        } finally {
+            CommandDispatchEvent.end(event, command == null ? null : command.getCmdName());
+        }
+        return command;
+    }
+
+    /**
+     * Hands the commands read so far to the pipeline and waits until they are applied
+     */
+    private void submitPending() {
+        if (pendingCount == 0) {
+            return;
+        }
+        int count = pendingCount;
+        pendingCount = 0;
+        bot.getPipeline().submit(pending, count);
+    }
+
+    /**
+     * Executes the given command, sending any error message to the UI
+     *
+     * @param command The command handler
+     * @param parsedInput The parsed command
+     * @param isWriter Whether this is running on the pipeline's writer thread, which alone may
+     *     take over loaded tasks
+     */
+    private void execute(Command command, ParsedInput parsedInput, boolean isWriter) {
+        try {
+            if (isWriter) {
+                bot.mergeLoadedTasks(ui);
+                if (command.requiresTasks()) {
+                    bot.awaitLoadedTasks(ui);
+                }
+            }
+            bot.executeCommand(command, parsedInput);
+        } catch (NJException exception) {
+            ui.send(exception.getMessage());
+            if (exception instanceof FatalNJException) {
+                bot.terminate(ui);
+            }
+        }
+    }
+
+}
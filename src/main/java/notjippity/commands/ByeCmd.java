@@ -1,6 +1,6 @@
 package notjippity.commands;
 
-import notjippity.NotJippity;
+import notjippity.Session;
 import notjippity.exceptions.NJException;
 
 /**
@@ -8,27 +8,37 @@ import notjippity.exceptions.NJException;
  */
 public class ByeCmd extends Command {
 
-    private NotJippity notJippity;
+    private Session session;
 
     /**
      * Returns a new instance of ByeCmd
      *
-     * @param notJippity The NotJippity instance
+     * @param session The session to end
      */
-    public ByeCmd(NotJippity notJippity) {
+    public ByeCmd(Session session) {
         super("bye");
-        this.notJippity = notJippity;
+        this.session = session;
     }
 
     /**
-     * Triggers the shutdown sequence of the bot
+     * Ends the session. Ending the console session triggers the shutdown sequence of the bot.
      *
      * @param cmdStr The command string
      * @param argStr The string of arguments
      */
     @Override
     public void execute(String cmdStr, String argStr) throws NJException {
-        notJippity.stopMainLoop();
+        session.stop();
+    }
+
+    /**
+     * Shutting down waits for the existing tasks by itself before saving them
+     *
+     * @return False
+     */
+    @Override
+    public boolean requiresTasks() {
+        return false;
     }
 
 }
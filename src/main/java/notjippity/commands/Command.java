@@ -1,6 +1,7 @@
 package notjippity.commands;
 
 import notjippity.exceptions.NJException;
+import notjippity.utils.ParsedInput;
 
 /**
  * Handles behaviour and implementation for recognised NotJippity commands
@@ -27,6 +28,36 @@ public abstract class Command {
      */
     public abstract void execute(String cmdStr, String argStr) throws NJException;
 
+    /**
+     * Executes the command logic with the given parsed input. Commands which take flags override
+     * this to read them from the input directly; by default, only the argument string is used.
+     *
+     * @param input The parsed user input
+     * @throws NJException If any execution error occurs
+     */
+    public void execute(ParsedInput input) throws NJException {
+        execute(input.getCommand(), input.getArgString());
+    }
+
+    /**
+     * Checks if the command needs the existing tasks to be fully loaded before it is executed
+     *
+     * @return True if execution must wait for the existing tasks to load
+     */
+    public boolean requiresTasks() {
+        return true;
+    }
+
+    /**
+     * Checks if the command only reads the tasks. Such commands may run alongside other sessions'
+     * commands rather than waiting for their turn to modify the tasks.
+     *
+     * @return True if the command never modifies the tasks or storage
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
     /**
      * Returns the string that triggers this Command
      *
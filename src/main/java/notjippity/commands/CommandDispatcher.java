@@ -0,0 +1,149 @@
+package notjippity.commands;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import notjippity.exceptions.UnknownCmdException;
+
+/**
+ * Resolves command strings to the registered commands, ignoring case. Besides its name and
+ * aliases, a command can be reached by any abbreviation which no other command shares, e.g.
+ * "del" for "delete".
+ * <p>
+ * Names and aliases are looked up in a hash map, and abbreviations by walking a prefix trie in
+ * which every node records the command it leads to, so resolving takes time proportional to the
+ * length of the command string rather than the number of commands.
+ */
+public class CommandDispatcher {
+
+    private final HashMap<String, Command> commandsByName = new HashMap<>();
+    private final List<Command> commands = new ArrayList<>();
+    private final TrieNode trieRoot = new TrieNode();
+
+    /**
+     * Represents a prefix of the registered names and aliases
+     */
+    private static class TrieNode {
+
+        private final HashMap<Character, TrieNode> children = new HashMap<>();
+        private Command command;
+        private boolean isAmbiguous;
+
+    }
+
+    /**
+     * Registers the given command under its name and the given aliases
+     *
+     * @param command The command
+     * @param aliases Any other strings which trigger the command
+     * @throws IllegalArgumentException If the name or any alias is already registered
+     */
+    public void register(Command command, String... aliases) throws IllegalArgumentException {
+        List<String> keys = new ArrayList<>();
+        keys.add(fold(command.getCmdName()));
+        for (String alias : aliases) {
+            keys.add(fold(alias));
+        }
+
+        // Check every key before registering any, so a failed registration leaves nothing behind
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            if (commandsByName.containsKey(key) || keys.indexOf(key) != i) {
+                throw new IllegalArgumentException("Command \"" + key + "\" is already registered");
+            }
+        }
+
+        commands.add(command);
+        for (String key : keys) {
+            commandsByName.put(key, command);
+            addToTrie(key, command);
+        }
+    }
+
+    /**
+     * Returns the command triggered by the given command string
+     *
+     * @param cmdStr The command string
+     * @return The command
+     * @throws UnknownCmdException If no command, or more than one command, matches the string
+     */
+    public Command get(String cmdStr) throws UnknownCmdException {
+        if (cmdStr == null) {
+            throw new UnknownCmdException("Idk what's \"" + cmdStr + "\". Typo maybe?");
+        }
+
+        String key = fold(cmdStr);
+        Command command = commandsByName.get(key);
+        if (command != null) {
+            return command;
+        }
+
+        TrieNode node = trieRoot;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null || node == trieRoot) {
+            throw new UnknownCmdException("Idk what's \"" + cmdStr + "\". Typo maybe?");
+        }
+        if (node.isAmbiguous) {
+            throw new UnknownCmdException("\"" + cmdStr + "\" could be " + String.join(" or ", getMatchingNames(key))
+                    + ", which one?");
+        }
+        return node.command;
+    }
+
+    /**
+     * Adds the given key to the trie, marking every prefix it shares with another command as ambiguous
+     *
+     * @param key The case-folded name or alias
+     * @param command The command it triggers
+     */
+    private void addToTrie(String key, Command command) {
+        TrieNode node = trieRoot;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), character -> new TrieNode());
+            if (node.isAmbiguous) {
+                continue;
+            }
+            if (node.command == null) {
+                node.command = command;
+            } else if (node.command != command) {
+                node.command = null;
+                node.isAmbiguous = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the commands whose name or any alias starts with the given prefix.
+     * Only used to report ambiguous abbreviations, so it simply checks every key.
+     *
+     * @param prefix The case-folded prefix
+     * @return The command names, in order of registration
+     */
+    private List<String> getMatchingNames(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (Command command : commands) {
+            for (String key : commandsByName.keySet()) {
+                if (key.startsWith(prefix) && commandsByName.get(key) == command) {
+                    names.add(command.getCmdName());
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Folds the case of the given command string
+     *
+     * @param cmdStr The command string
+     * @return The case-folded string
+     */
+    private static String fold(String cmdStr) {
+        return cmdStr.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,63 @@
+package notjippity.commands;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import notjippity.io.Storage;
+import notjippity.io.Ui;
+
+/**
+ * Handles "compact" command logic and behaviour
+ */
+public class CompactCmd extends Command {
+
+    private Ui ui;
+    private Storage storage;
+
+    /**
+     * Returns a new CompactCmd instance
+     *
+     * @param ui The bot's UI
+     * @param storage The bot's storage
+     */
+    public CompactCmd(Ui ui, Storage storage) {
+        super("compact");
+        this.ui = ui;
+        this.storage = storage;
+    }
+
+    /**
+     * Starts folding the journal back into the data file. It does not wait for a long fold to
+     * finish, so the next command is not held up by it. A failed checkpoint is not fatal, as the
+     * journal it left behind is recovered on the next start.
+     *
+     * @param cmdStr The command string
+     * @param argStr The string of arguments
+     */
+    @Override
+    public void execute(String cmdStr, String argStr) {
+        Future<Integer> checkpoint = storage.checkpoint();
+        if (!checkpoint.isDone()) {
+            ui.send("Compacting the data file in the background");
+            return;
+        }
+
+        int recordCount;
+        try {
+            recordCount = checkpoint.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException exception) {
+            ui.send("Couldn't compact the data file: " + exception.getCause().getMessage());
+            return;
+        }
+
+        if (recordCount == 0) {
+            ui.send("Nothing to compact, the data file is already up to date");
+            return;
+        }
+        ui.send("Folded " + recordCount + " changes into the data file");
+    }
+
+}
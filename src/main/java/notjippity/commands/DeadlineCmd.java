@@ -9,6 +9,8 @@ import notjippity.io.Ui;
 import notjippity.tasks.Deadline;
 import notjippity.tasks.Task;
 import notjippity.tasks.TaskTracker;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
 
 /**
  * Handles "Deadline" command logic and behaviour
@@ -40,28 +42,35 @@ public class DeadlineCmd extends Command {
      */
     @Override
     public void execute(String cmdStr, String argStr) throws CmdFormatException, MissingArgException {
+        execute(Parser.parse(cmdStr, argStr));
+    }
+
+    /**
+     * Adds a Deadline task into the tasklist and executes feedback
+     *
+     * @param input The parsed user input
+     * @throws MissingArgException If user input is missing any arguments"
+     */
+    @Override
+    public void execute(ParsedInput input) throws CmdFormatException, MissingArgException {
         // If the user input something like "deadline" or "deadline --by [...]"
-        if (argStr == null) {
-            throw new MissingArgException("First things first, what's this task called? (" + FORMAT_CMD + ")");
-        }
-        String argStringLow = argStr.toLowerCase();
-        if (argStringLow.startsWith("--by")) {
+        String taskName = input.getPositional();
+        if (taskName.isEmpty()) {
             throw new MissingArgException("First things first, what's this task called? (" + FORMAT_CMD + ")");
         }
 
         // If the user input doesn't contain "--by"
-        if (!argStringLow.contains("--by")) {
+        int byIndex = input.indexOfFlag("by");
+        if (byIndex < 0) {
             throw new MissingArgException("Np but tell me when it's to be done by (" + FORMAT_CMD + ")");
         }
 
-        String[] argSets = argStr.trim().split("--by");
+        String byDateStr = input.getFlagValue(byIndex);
         // If the user input doesn't specify the date after "--by"
-        if (argSets.length == 1) {
+        if (byDateStr.isEmpty()) {
             throw new MissingArgException("Didja forget to put something at the back of --by? (" + FORMAT_CMD + ")");
         }
 
-        String taskName = argSets[0].trim(),
-                byDateStr = argSets[1].trim();
         LocalDateTime byDate;
 
         try {
@@ -72,7 +81,18 @@ public class DeadlineCmd extends Command {
 
         Task task = new Deadline(taskName, byDate);
         taskTracker.addTask(task);
-        ui.send("++ " + task + " (" + taskTracker.getSize() + " total)");
+        String total = taskTracker.isLoading() ? "added while loading" : "total";
+        ui.send("++ " + task + " (" + taskTracker.getSize() + " " + total + ")");
+    }
+
+    /**
+     * Deadlines are only appended, so they can be added while the existing tasks are loading
+     *
+     * @return False
+     */
+    @Override
+    public boolean requiresTasks() {
+        return false;
     }
 
 }
@@ -9,6 +9,8 @@ import notjippity.io.Ui;
 import notjippity.tasks.Event;
 import notjippity.tasks.Task;
 import notjippity.tasks.TaskTracker;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
 
 /**
  * Handles "Event" command logic and behaviour
@@ -42,29 +44,36 @@ public class EventCmd extends Command {
      */
     @Override
     public void execute(String cmdStr, String argStr) throws CmdFormatException, MissingArgException {
+        execute(Parser.parse(cmdStr, argStr));
+    }
+
+    /**
+     * Adds an Event task into the tasklist and executes feedback
+     *
+     * @param input The parsed user input
+     * @throws MissingArgException If user input is missing any arguments"
+     * @throws CmdFormatException If flags are in the wrong order
+     */
+    @Override
+    public void execute(ParsedInput input) throws CmdFormatException, MissingArgException {
         // If the user input something like "event", "event --from [...]" or "event --to [...]"
-        if (argStr == null) {
-            throw new MissingArgException("First things first, what's this task called? (" + FORMAT_CMD + ")");
-        }
-        String argStringLow = argStr.trim().toLowerCase();
-        if (argStringLow.startsWith("--from") || argStringLow.startsWith("--to")) {
+        String taskName = input.getPositional();
+        if (taskName.isEmpty()) {
             throw new MissingArgException("First things first, what's this task called? (" + FORMAT_CMD + ")");
         }
 
         // If the user input doesn't contain "--from" or "--to"
-        if (!argStringLow.contains("--from") || !argStringLow.contains("--to")) {
+        int fromIndex = input.indexOfFlag("from"), toIndex = input.indexOfFlag("to");
+        if (fromIndex < 0 || toIndex < 0) {
             throw new MissingArgException("Np but tell me when it's to be done by (" + FORMAT_CMD + ")");
         }
 
         // If the user input has "--to" preceding "--from"
-        if (argStringLow.indexOf("--from") > argStringLow.indexOf("--to")) {
+        if (fromIndex > toIndex) {
             throw new CmdFormatException("Write --from before --to pls (" + FORMAT_CMD + ")");
         }
 
-        String[] exclNameArgs = argStr.trim().split("--from");
-        String taskName = exclNameArgs[0].trim(), exclFromArgs = exclNameArgs[1].trim();
-        String[] exclToArgs = exclFromArgs.split("--to");
-        String fromStr = exclToArgs[0].trim(), toStr = exclToArgs[1].trim();
+        String fromStr = input.getFlagValue(fromIndex), toStr = input.getFlagValue(toIndex);
         LocalDateTime fromDate, toDate;
 
         // If the arguments following --from or --to is empty
@@ -81,7 +90,18 @@ public class EventCmd extends Command {
 
         Task task = new Event(taskName, fromDate, toDate);
         taskTracker.addTask(task);
-        ui.send("++ " + task + " (" + taskTracker.getSize() + " tasks)");
+        String total = taskTracker.isLoading() ? "added while loading" : "tasks";
+        ui.send("++ " + task + " (" + taskTracker.getSize() + " " + total + ")");
+    }
+
+    /**
+     * Events are only appended, so they can be added while the existing tasks are loading
+     *
+     * @return False
+     */
+    @Override
+    public boolean requiresTasks() {
+        return false;
     }
 
 }
@@ -0,0 +1,55 @@
+package notjippity.commands;
+
+import java.io.File;
+
+import notjippity.exceptions.StorageException;
+import notjippity.io.Storage;
+import notjippity.io.Ui;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Handles "export" command logic and behaviour
+ */
+public class ExportCmd extends Command {
+
+    private static final String DEFAULT_NAME = "tasks-export.txt";
+
+    private Ui ui;
+    private TaskTracker taskTracker;
+    private Storage storage;
+
+    /**
+     * Returns a new ExportCmd instance
+     *
+     * @param ui The bot's UI
+     * @param taskTracker The bot's task tracker
+     * @param storage The bot's storage
+     */
+    public ExportCmd(Ui ui, TaskTracker taskTracker, Storage storage) {
+        super("export");
+        this.ui = ui;
+        this.taskTracker = taskTracker;
+        this.storage = storage;
+    }
+
+    /**
+     * Exports all tasks in the text format to the file named in argStr within the export
+     * directory, or to the default file if none is given. A failed export is not fatal, as the
+     * data file itself is untouched.
+     *
+     * @param cmdStr The command string
+     * @param argStr The string of arguments
+     */
+    @Override
+    public void execute(String cmdStr, String argStr) {
+        File target;
+        try {
+            target = storage.exportText(taskTracker.getAllDataStrings(), argStr == null ? DEFAULT_NAME : argStr);
+        } catch (StorageException exception) {
+            ui.send(exception.getMessage());
+            return;
+        }
+        ui.send("Exported " + taskTracker.getSize() + " tasks to " + target.getPath());
+    }
+
+}
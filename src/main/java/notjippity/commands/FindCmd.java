@@ -1,15 +1,11 @@
 package notjippity.commands;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.util.List;
 
 import notjippity.exceptions.CmdFormatException;
 import notjippity.exceptions.MissingArgException;
 import notjippity.io.Ui;
-import notjippity.tasks.Deadline;
-import notjippity.tasks.Event;
-import notjippity.tasks.Task;
+import notjippity.tasks.TaskMatch;
 import notjippity.tasks.TaskTracker;
 
 /**
@@ -44,19 +40,10 @@ public class FindCmd extends Command {
             throw new MissingArgException("Np, just tell me what to look for (" + FORMAT_CMD + ")");
         }
 
-        // Filter out the tasks which are relevant to the given date, along with the actual list indices
-        HashMap<Integer, Task> tasks = new HashMap<>();
-        int listIndex = 1, lastAddedIndex = 0;
-        for (Task task : taskTracker.getTasks()) {
-            if (task.matchesKeyword(argStr)) {
-                tasks.put(listIndex, task);
-                lastAddedIndex = listIndex;
-            }
-
-            listIndex++;
-        }
-
-        if (tasks.isEmpty()) {
+        // Look up the tasks matching the keyword in one pass, so that a concurrent deletion
+        // cannot shift them between the lookup and the printing
+        List<TaskMatch> matches = taskTracker.getTasksMatching(argStr);
+        if (matches.isEmpty()) {
             ui.send("Didn't find anything matching \"" + argStr + "\", sry man");
             return;
         }
@@ -66,17 +53,26 @@ public class FindCmd extends Command {
         // Print the list of tasks. Append spaces after
         // tasks indices with lesser digits so the
         // line formatting is preserved
-        int maxDigits = 1 + (int) Math.floor(Math.log10(lastAddedIndex));
-        for (int index : tasks.keySet()) {
-            Task task = tasks.get(index);
+        int maxDigits = 1 + (int) Math.floor(Math.log10(matches.get(matches.size() - 1).getIndex() + 1));
+        for (TaskMatch match : matches) {
+            int index = match.getIndex() + 1;
             int curDigits = 1 + (int) Math.floor(Math.log10(index));
             StringBuilder indexStr = new StringBuilder(index + ". ");
             for (int i = 0; i < maxDigits - curDigits; i++) {
                 indexStr.append(" ");
             }
-            ui.sendWithSpacer(indexStr.toString() + task);
+            ui.sendWithSpacer(indexStr.toString() + match.getTask());
         }
     }
 
+    /**
+     * Finding tasks only reads them
+     *
+     * @return True
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 
 }
@@ -3,15 +3,17 @@ package notjippity.commands;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.util.List;
 
 import notjippity.exceptions.CmdFormatException;
 import notjippity.exceptions.MissingArgException;
 import notjippity.io.Ui;
-import notjippity.tasks.Deadline;
-import notjippity.tasks.Event;
 import notjippity.tasks.Task;
+import notjippity.tasks.TaskMatch;
 import notjippity.tasks.TaskTracker;
+import notjippity.tasks.TaskView;
+import notjippity.utils.ParsedInput;
+import notjippity.utils.Parser;
 
 /**
  * Handles "list" command logic and behaviour
@@ -19,7 +21,7 @@ import notjippity.tasks.TaskTracker;
 public class ListCmd extends Command {
 
     private static final String FORMAT_DATE = "dd/MM/yyyy";
-    private static final String FORMAT_CMD = "Format: list [--date <" + FORMAT_DATE + ">]";
+    private static final String FORMAT_CMD = "Format: list [--date <" + FORMAT_DATE + "> | --ids]";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(FORMAT_DATE);
 
     private Ui ui;
@@ -39,7 +41,8 @@ public class ListCmd extends Command {
 
     /**
      * Prints the list of all tasks currently stored, or only those occurring
-     * on a specific date if the --date flag is included
+     * on a specific date if the --date flag is included. The --ids flag shows
+     * the ID of each task beside its index.
      *
      * @param cmdStr The command string
      * @param argStr The string of arguments
@@ -48,7 +51,28 @@ public class ListCmd extends Command {
      */
     @Override
     public void execute(String cmdStr, String argStr) throws CmdFormatException, MissingArgException {
-        if (argStr == null) {
+        execute(Parser.parse(cmdStr, argStr));
+    }
+
+    /**
+     * Prints the list of all tasks currently stored, or only those occurring
+     * on a specific date if the --date flag is included. The --ids flag shows
+     * the ID of each task beside its index.
+     *
+     * @param input The parsed user input
+     * @throws CmdFormatException If the user input has an invalid format
+     * @throws MissingArgException If the user input has (a) missing argument(s)
+     */
+    @Override
+    public void execute(ParsedInput input) throws CmdFormatException, MissingArgException {
+        String argStr = input.getArgString();
+        // Only a single flag is accepted, with nothing before it
+        String flagValue = null;
+        if (argStr != null && input.getPositional().isEmpty() && input.getFlagCount() == 1) {
+            flagValue = input.getFlagValue(0);
+        }
+
+        if (argStr == null || (input.indexOfFlag("ids") == 0 && flagValue != null && flagValue.isEmpty())) {
             if (taskTracker.getSize() == 0) {
                 ui.send("Nothing here yet man, wanna add some stuff? (todo, deadline, event)");
                 return;
@@ -57,52 +81,37 @@ public class ListCmd extends Command {
             ui.send("Here's what we have so far:");
 
             int maxDigits = 1 + (int) Math.floor(Math.log10(taskTracker.getSize()));
+            boolean showIds = argStr != null;
 
             // Print the list of tasks. Append spaces after tasks indices with lesser digits so the
             // line formatting is preserved
-            int index = 1;
-            for (Task task : taskTracker.getTasks()) {
+            TaskView.Cursor cursor = taskTracker.getTaskView().iterator();
+            while (cursor.hasNext()) {
+                Task task = cursor.next();
+                int index = cursor.getIndex() + 1;
                 int curDigits = 1 + (int) Math.floor(Math.log10(index));
-                StringBuilder indexStr = new StringBuilder(index++ + ". ");
+                StringBuilder indexStr = new StringBuilder(index + ". ");
                 for (int i = 0; i < maxDigits - curDigits; i++) {
                     indexStr.append(" ");
                 }
+                if (showIds) {
+                    indexStr.append(TaskTracker.ID_PREFIX).append(cursor.getId()).append(" ");
+                }
                 ui.sendWithSpacer(indexStr.toString() + task);
             }
-        } else if (argStr.toLowerCase().startsWith("--date")) {
+        } else if (input.indexOfFlag("date") == 0 && flagValue != null) {
 
-            String dateStr = argStr.replaceFirst("--date", "").trim();
+            String dateStr = flagValue;
             if (dateStr.isEmpty()) {
                 throw new MissingArgException("On which date? (" + FORMAT_CMD + ")");
             }
 
-            LocalDate date;
-            try {
-                date = LocalDate.parse(dateStr, DATE_FORMATTER);
-            } catch (DateTimeParseException exception) {
-                throw new CmdFormatException("Sry bro can't understand that date format (" + FORMAT_DATE + ")");
-            }
-
-            // Filter out the tasks which are relevant to the given date, along with the actual list indices
-            HashMap<Integer, Task> tasks = new HashMap<>();
-            int listIndex = 1, lastAddedIndex = 0;
-            for (Task task : taskTracker.getTasks()) {
-                if (task instanceof Deadline deadline) {
-                    if (deadline.hasDate(date)) {
-                        tasks.put(listIndex, deadline);
-                        lastAddedIndex = listIndex;
-                    }
-                } else if (task instanceof Event event) {
-                    if (event.hasDate(date)) {
-                        tasks.put(listIndex, event);
-                        lastAddedIndex = listIndex;
-                    }
-                }
+            LocalDate date = parseDate(dateStr);
 
-                listIndex++;
-            }
-
-            if (tasks.isEmpty()) {
+            // Look up the tasks which are relevant to the given date in one pass, so that a
+            // concurrent deletion cannot shift them between the lookup and the printing
+            List<TaskMatch> matches = taskTracker.getTasksOnDate(date);
+            if (matches.isEmpty()) {
                 ui.send("Didn't find anything on " + date.format(DATE_FORMATTER) + " yet, wanna add some stuff? (deadline, event)");
                 return;
             }
@@ -112,19 +121,44 @@ public class ListCmd extends Command {
             // Print the list of tasks. Append spaces after
             // tasks indices with lesser digits so the
             // line formatting is preserved
-            int maxDigits = 1 + (int) Math.floor(Math.log10(lastAddedIndex));
-            for (int index : tasks.keySet()) {
-                Task task = tasks.get(index);
+            int maxDigits = 1 + (int) Math.floor(Math.log10(matches.get(matches.size() - 1).getIndex() + 1));
+            for (TaskMatch match : matches) {
+                int index = match.getIndex() + 1;
                 int curDigits = 1 + (int) Math.floor(Math.log10(index));
                 StringBuilder indexStr = new StringBuilder(index + ". ");
                 for (int i = 0; i < maxDigits - curDigits; i++) {
                     indexStr.append(" ");
                 }
-                ui.sendWithSpacer(indexStr.toString() + task);
+                ui.sendWithSpacer(indexStr.toString() + match.getTask());
             }
         } else {
             throw new CmdFormatException("Uhhh idk waddat (" + FORMAT_CMD + ")");
         }
     }
 
+    /**
+     * Parses a date in the format taken by the --date flag
+     *
+     * @param dateStr The date string
+     * @return The date
+     * @throws CmdFormatException If the date is of an invalid format
+     */
+    public static LocalDate parseDate(String dateStr) throws CmdFormatException {
+        try {
+            return LocalDate.parse(dateStr, DATE_FORMATTER);
+        } catch (DateTimeParseException exception) {
+            throw new CmdFormatException("Sry bro can't understand that date format (" + FORMAT_DATE + ")");
+        }
+    }
+
+    /**
+     * Listing tasks only reads them
+     *
+     * @return True
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
 }
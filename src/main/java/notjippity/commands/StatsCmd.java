@@ -0,0 +1,117 @@
+package notjippity.commands;
+
+import java.util.Map;
+
+import notjippity.io.Ui;
+import notjippity.utils.LatencyHistogram;
+import notjippity.utils.Metrics;
+
+/**
+ * Handles "stats" command logic and behaviour
+ */
+public class StatsCmd extends Command {
+
+    private static final String ROW_FORMAT = "%-10s %8s %9s %9s %9s";
+
+    private Ui ui;
+    private Metrics metrics;
+
+    /**
+     * Returns a new StatsCmd instance
+     *
+     * @param ui The bot's UI
+     * @param metrics The bot's metrics
+     */
+    public StatsCmd(Ui ui, Metrics metrics) {
+        super("stats");
+        this.ui = ui;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Prints the latency percentiles of every command executed so far, followed by the duration
+     * and size of the loads and saves of the data file
+     *
+     * @param cmdStr The command string
+     * @param argStr The string of arguments
+     */
+    @Override
+    public void execute(String cmdStr, String argStr) {
+        ui.send("Here's where the time went:");
+        ui.sendWithSpacer(String.format(ROW_FORMAT, "command", "count", "p50", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getCommandLatencies().entrySet()) {
+            ui.sendWithSpacer(formatRow(entry.getKey(), entry.getValue()));
+        }
+        ui.sendWithSpacer(formatRow("(load)", metrics.getLoadLatency()));
+        ui.sendWithSpacer(formatRow("(save)", metrics.getSaveLatency()));
+
+        ui.sendWithSpacer("Loaded " + metrics.getLoadedTasks() + " tasks and " + metrics.getLoadedRecords()
+                + " journal records from " + formatBytes(metrics.getLoadedBytes()));
+        ui.sendWithSpacer("Saved " + metrics.getSavedTasks() + " tasks in " + formatBytes(metrics.getSavedBytes()));
+    }
+
+    /**
+     * Stats are kept apart from the tasks
+     *
+     * @return False
+     */
+    @Override
+    public boolean requiresTasks() {
+        return false;
+    }
+
+    /**
+     * Printing stats only reads them
+     *
+     * @return True
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    /**
+     * Returns a table row with the count and latency percentiles of the given histogram
+     *
+     * @param name The name of the row
+     * @param histogram The latencies
+     * @return The row
+     */
+    private static String formatRow(String name, LatencyHistogram histogram) {
+        return String.format(ROW_FORMAT, name, histogram.getCount(), formatNanos(histogram.getPercentile(0.5)),
+                formatNanos(histogram.getPercentile(0.99)), formatNanos(histogram.getMax()));
+    }
+
+    /**
+     * Returns the given duration in the largest unit which keeps it at 1 or above
+     *
+     * @param nanos The duration in nanoseconds
+     * @return The formatted duration, e.g. "12.3ms"
+     */
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+
+    /**
+     * Returns the given size in the largest unit which keeps it at 1 or above
+     *
+     * @param bytes The size in bytes
+     * @return The formatted size, e.g. "1.5MB"
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1fKB", bytes / 1024.0);
+        }
+        return String.format("%.1fMB", bytes / (1024.0 * 1024));
+    }
+
+}
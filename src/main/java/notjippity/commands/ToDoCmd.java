@@ -43,7 +43,19 @@ public class ToDoCmd extends Command {
 
         Task task = new ToDo(argStr);
         taskTracker.addTask(task);
-        ui.send("++ " + task + " (" + taskTracker.getSize() + " total)");
+        // Until the existing tasks are loaded, only the tasks added so far are known
+        String total = taskTracker.isLoading() ? "added while loading" : "total";
+        ui.send("++ " + task + " (" + taskTracker.getSize() + " " + total + ")");
+    }
+
+    /**
+     * Adding a task does not depend on the existing tasks, so it can run while they are loading
+     *
+     * @return False
+     */
+    @Override
+    public boolean requiresTasks() {
+        return false;
     }
 
 }
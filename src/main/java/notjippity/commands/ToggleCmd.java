@@ -1,5 +1,7 @@
 package notjippity.commands;
 
+import java.util.NoSuchElementException;
+
 import notjippity.exceptions.CmdFormatException;
 import notjippity.exceptions.InvalidArgException;
 import notjippity.exceptions.MissingArgException;
@@ -31,7 +33,7 @@ public class ToggleCmd extends Command {
 
     /**
      * Toggles a task's completion status with the task index provided in argStr
-     * (follows the index numbering of list command)
+     * (follows the index numbering of list command), or the task ID prefixed with #
      *
      * @param cmdStr The command string
      * @param argStr The string of arguments
@@ -48,15 +50,19 @@ public class ToggleCmd extends Command {
         Task task;
 
         try {
-            int index = Integer.parseInt(argStr);
-            task = taskTracker.getTask(index - 1);
+            if (argStr.startsWith(TaskTracker.ID_PREFIX)) {
+                long id = Long.parseLong(argStr.substring(TaskTracker.ID_PREFIX.length()));
+                task = taskTracker.toggleTaskById(id);
+            } else {
+                int index = Integer.parseInt(argStr);
+                task = taskTracker.toggleTask(index - 1);
+            }
         } catch (NumberFormatException exception) {
             throw new CmdFormatException("Idk waddat, enter the index of the task as seen in the \"list\" command instead");
-        } catch (IndexOutOfBoundsException exception) {
+        } catch (IndexOutOfBoundsException | NoSuchElementException exception) {
             throw new InvalidArgException("Uhhhh we don't have task #" + argStr + ", maybe check with \"list\" again?");
         }
 
-        task.toggleComplete();
         ui.send(task.toString());
     }
 
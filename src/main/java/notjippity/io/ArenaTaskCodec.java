@@ -0,0 +1,146 @@
+package notjippity.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32C;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Encodes and verifies the arena data file format, which an off-heap tracker saves its memory
+ * into as-is. All values are big-endian:
+ * <pre>
+ * header  : magic "NJTA" | u16 version | u16 reserved
+ * arena   : as written by TaskTracker.writeArena()
+ * footer  : u32 CRC32C of the header and the arena
+ * </pre>
+ * Any tracker can load an arena, and an off-heap tracker can load the other formats too, so a
+ * data file is only converted between formats when the store type changes and it is next saved.
+ */
+class ArenaTaskCodec {
+
+    static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'N', 'J', 'T', 'A'};
+    private static final int HEADER_LENGTH = MAGIC.length + 2 + 2;
+    private static final int FOOTER_LENGTH = 4;
+
+    /**
+     * Passes writes through to another channel, updating a checksum with every written byte
+     */
+    private static class CheckedChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private final CRC32C checksum;
+
+        private CheckedChannel(WritableByteChannel channel, CRC32C checksum) {
+            this.channel = channel;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int start = source.position();
+            int count = channel.write(source);
+            checksum.update(source.duplicate().position(start).limit(start + count));
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    /**
+     * Checks if the given content starts with the arena format's magic bytes
+     *
+     * @param buffer The file content, starting at position 0
+     * @return True if the content is in the arena format
+     */
+    static boolean isArena(ByteBuffer buffer) {
+        if (buffer.limit() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifies the checksum and header of the given arena content, and returns the arena itself
+     *
+     * @param buffer The file content, starting at position 0
+     * @return The arena, starting at position 0
+     * @throws StorageException If the content is corrupted or of an unsupported version
+     */
+    static ByteBuffer verify(ByteBuffer buffer) throws StorageException {
+        int length = buffer.limit();
+        if (length < HEADER_LENGTH + FOOTER_LENGTH) {
+            throw new StorageException("Invalid data file; the arena header is incomplete");
+        }
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().position(0).limit(length - FOOTER_LENGTH));
+        if ((int) checksum.getValue() != buffer.getInt(length - FOOTER_LENGTH)) {
+            throw new StorageException("Invalid data file; the checksum does not match, the file may be corrupted");
+        }
+
+        int version = Short.toUnsignedInt(buffer.getShort(MAGIC.length));
+        if (version != VERSION) {
+            throw new StorageException("Unsupported data file version " + version);
+        }
+        return buffer.duplicate().position(HEADER_LENGTH).limit(length - FOOTER_LENGTH).slice();
+    }
+
+    /**
+     * Encodes all Tasks of the given off-heap tracker into the arena format
+     *
+     * @param taskTracker The off-heap tracker holding the tasks to encode
+     * @param channel The channel to write into
+     * @return The CRC32C checksum of all written bytes, including the footer
+     * @throws IOException If an I/O error occurs while writing
+     * @throws IllegalStateException If the tracker is not off-heap, or any record is corrupted
+     */
+    static long encode(TaskTracker taskTracker, WritableByteChannel channel) throws IOException,
+            IllegalStateException {
+        CRC32C checksum = new CRC32C();
+        WritableByteChannel output = new CheckedChannel(channel, checksum);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).flip();
+        writeFully(header, output);
+        taskTracker.writeArena(output);
+
+        // The footer holds the checksum of everything before it, and is itself part of the file checksum
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+        footer.putInt((int) checksum.getValue()).flip();
+        writeFully(footer, output);
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes the remaining content of the given buffer
+     *
+     * @param buffer The buffer
+     * @param channel The channel to write into
+     * @throws IOException If an I/O error occurs while writing
+     */
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
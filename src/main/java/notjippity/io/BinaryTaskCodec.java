@@ -0,0 +1,278 @@
+package notjippity.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.ToDo;
+
+/**
+ * Encodes and decodes the compact binary data file format. All values are big-endian:
+ * <pre>
+ * header  : magic "NJTB" | u16 version | u16 reserved | u32 record count | i64 next task ID
+ * record  : u8 type (bits 0-1) and completion (bit 2) | i64 task ID
+ *           | deadline: i64 by | event: i64 from, i64 to  (minutes since the epoch, UTC)
+ *           | u32 name length | UTF-8 name
+ * index   : per record, i64 task ID | u32 offset of the record from the first record
+ * footer  : u32 CRC32C of the header, all records and the index
+ * </pre>
+ * The fixed-width index lets the records be indexed without walking them, so each record is
+ * only located when it is accessed. Version 1 files, written before tasks had IDs, lack both ID
+ * fields and the index; they are still read.
+ */
+class BinaryTaskCodec {
+
+    static final int VERSION = 2;
+    static final int VERSION_WITH_IDS = 2;
+
+    private static final byte[] MAGIC = {'N', 'J', 'T', 'B'};
+    private static final int HEADER_LENGTH = MAGIC.length + 2 + 2 + 4;
+    private static final int ID_LENGTH = 8;
+    private static final int INDEX_ENTRY_LENGTH = 8 + 4;
+    private static final int FOOTER_LENGTH = 4;
+
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int TYPE_MASK = 0b11;
+    private static final int COMPLETED_FLAG = 0b100;
+
+    /**
+     * Checks if the given content starts with the binary format's magic bytes
+     *
+     * @param buffer The file content, starting at position 0
+     * @return True if the content is in the binary format
+     */
+    static boolean isBinary(ByteBuffer buffer) {
+        if (buffer.limit() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifies the checksum and header of the given binary content, and returns its records
+     * without decoding any of them. The checksum of the whole content, footer included, is
+     * kept with the records.
+     *
+     * @param buffer The file content, starting at position 0
+     * @return The undecoded records
+     * @throws StorageException If the content is corrupted or of an unsupported version
+     */
+    static TaskRecords index(ByteBuffer buffer) throws StorageException {
+        int length = buffer.limit();
+        if (length < HEADER_LENGTH + FOOTER_LENGTH) {
+            throw new StorageException("Invalid data file; the binary header is incomplete");
+        }
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().position(0).limit(length - FOOTER_LENGTH));
+        if ((int) checksum.getValue() != buffer.getInt(length - FOOTER_LENGTH)) {
+            throw new StorageException("Invalid data file; the checksum does not match, the file may be corrupted");
+        }
+        // Continuing over the footer gives the checksum of the whole file without reading it again
+        checksum.update(buffer.duplicate().position(length - FOOTER_LENGTH).limit(length));
+
+        ByteBuffer content = buffer.duplicate().position(MAGIC.length).limit(length - FOOTER_LENGTH);
+        int version = Short.toUnsignedInt(content.getShort());
+        if (version < 1 || version > VERSION) {
+            throw new StorageException("Unsupported data file version " + version);
+        }
+        content.getShort();
+        int recordCount = content.getInt();
+        if (recordCount < 0) {
+            throw new StorageException("Invalid data file; negative record count " + recordCount);
+        }
+
+        long nextId = recordCount + 1L;
+        if (version >= VERSION_WITH_IDS) {
+            if (content.remaining() < ID_LENGTH) {
+                throw new StorageException("Invalid data file; the binary header is incomplete");
+            }
+            nextId = content.getLong();
+        }
+
+        ByteBuffer index = null;
+        if (version >= VERSION_WITH_IDS) {
+            long indexLength = (long) recordCount * INDEX_ENTRY_LENGTH;
+            if (content.remaining() < indexLength) {
+                throw new StorageException("Invalid data file; the record index is incomplete");
+            }
+            int recordsEnd = content.limit() - (int) indexLength;
+            index = content.duplicate().position(recordsEnd).slice();
+            content.limit(recordsEnd);
+        }
+        return new TaskRecords(content, recordCount, version, nextId, index, checksum.getValue());
+    }
+
+    /**
+     * Encodes all Tasks of the given tracker into the binary format. Records which were never
+     * decoded since loading are copied through as-is.
+     *
+     * @param taskTracker The tracker holding the tasks to encode
+     * @param outputStream The stream to write into
+     * @return The CRC32C checksum of all written bytes, including the footer
+     * @throws IOException If an I/O error occurs while writing
+     */
+    static long encode(TaskTracker taskTracker, OutputStream outputStream) throws IOException {
+        CRC32C checksum = new CRC32C();
+        DataOutputStream output = new DataOutputStream(new CheckedOutputStream(outputStream, checksum));
+
+        int recordCount = taskTracker.getSize();
+        output.write(MAGIC);
+        output.writeShort(VERSION);
+        output.writeShort(0);
+        output.writeInt(recordCount);
+        output.writeLong(taskTracker.getNextId());
+
+        long[] ids = new long[recordCount];
+        int[] offsets = new int[recordCount];
+        int recordsStart = output.size();
+        byte[] copyBuffer = new byte[8192];
+        for (int i = 0; i < recordCount; i++) {
+            ids[i] = taskTracker.getTaskId(i);
+            offsets[i] = output.size() - recordsStart;
+            ByteBuffer record = taskTracker.getUntouchedRecord(i);
+            if (record == null) {
+                encodeRecord(ids[i], taskTracker.getTask(i), output);
+                continue;
+            }
+            while (record.hasRemaining()) {
+                int count = Math.min(copyBuffer.length, record.remaining());
+                record.get(copyBuffer, 0, count);
+                output.write(copyBuffer, 0, count);
+            }
+        }
+        for (int i = 0; i < recordCount; i++) {
+            output.writeLong(ids[i]);
+            output.writeInt(offsets[i]);
+        }
+
+        // The footer holds the checksum of everything before it, and is itself part of the file checksum
+        output.writeInt((int) checksum.getValue());
+        output.flush();
+        return checksum.getValue();
+    }
+
+    /**
+     * Returns the length of the record starting at the given position, without decoding it
+     *
+     * @param content The records
+     * @param position The position of the record
+     * @param version The format version of the records
+     * @return The length of the record in bytes
+     */
+    static int getRecordLength(ByteBuffer content, int position, int version) {
+        int type = content.get(position) & TYPE_MASK;
+        int idLength = version >= VERSION_WITH_IDS ? ID_LENGTH : 0;
+        int dateLength = type == TYPE_EVENT ? 16 : type == TYPE_DEADLINE ? 8 : 0;
+        return 1 + idLength + dateLength + 4 + content.getInt(position + 1 + idLength + dateLength);
+    }
+
+    /**
+     * Decodes a single record at the buffer's position, advancing past it
+     *
+     * @param content The buffer positioned at the start of the record
+     * @param version The format version of the record
+     * @return The decoded task
+     * @throws StorageException If the record has an unknown type or an empty name
+     */
+    static Task decodeRecord(ByteBuffer content, int version) throws StorageException {
+        int flags = Byte.toUnsignedInt(content.get());
+        int type = flags & TYPE_MASK;
+        if (version >= VERSION_WITH_IDS) {
+            // The ID is kept by the task tracker rather than the task itself
+            content.getLong();
+        }
+
+        LocalDateTime firstDate = null, secondDate = null;
+        if (type == TYPE_DEADLINE || type == TYPE_EVENT) {
+            firstDate = fromEpochMinutes(content.getLong());
+        }
+        if (type == TYPE_EVENT) {
+            secondDate = fromEpochMinutes(content.getLong());
+        }
+
+        int nameLength = content.getInt();
+        if (nameLength <= 0 || nameLength > content.remaining()) {
+            throw new StorageException("Invalid name length " + nameLength);
+        }
+        byte[] nameBytes = new byte[nameLength];
+        content.get(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+        Task task;
+        switch (type) {
+        case TYPE_TODO:
+            task = new ToDo(name);
+            break;
+        case TYPE_DEADLINE:
+            task = new Deadline(name, firstDate);
+            break;
+        case TYPE_EVENT:
+            task = new Event(name, firstDate, secondDate);
+            break;
+        default:
+            throw new StorageException("Unknown task type " + type);
+        }
+
+        if ((flags & COMPLETED_FLAG) != 0) {
+            task.complete();
+        }
+        return task;
+    }
+
+    /**
+     * Encodes a single Task as a record
+     *
+     * @param id The ID of the task
+     * @param task The task to encode
+     * @param output The stream to write into
+     * @throws IOException If an I/O error occurs while writing
+     */
+    private static void encodeRecord(long id, Task task, DataOutputStream output) throws IOException {
+        int completedFlag = task.isCompleted() ? COMPLETED_FLAG : 0;
+        if (task instanceof Deadline deadline) {
+            output.writeByte(TYPE_DEADLINE | completedFlag);
+            output.writeLong(id);
+            output.writeLong(toEpochMinutes(deadline.getByDateTime()));
+        } else if (task instanceof Event event) {
+            output.writeByte(TYPE_EVENT | completedFlag);
+            output.writeLong(id);
+            output.writeLong(toEpochMinutes(event.getFromDateTime()));
+            output.writeLong(toEpochMinutes(event.getToDateTime()));
+        } else {
+            output.writeByte(TYPE_TODO | completedFlag);
+            output.writeLong(id);
+        }
+
+        byte[] nameBytes = task.getName().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(nameBytes.length);
+        output.write(nameBytes);
+    }
+
+    private static long toEpochMinutes(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime fromEpochMinutes(long epochMinutes) {
+        return LocalDateTime.ofEpochSecond(epochMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+}
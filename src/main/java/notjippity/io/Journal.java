@@ -0,0 +1,599 @@
+package notjippity.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+
+/**
+ * Represents the append-only mutation log kept beside the data file. Every mutation is
+ * appended as a single line, so a command costs one small sequential write instead of
+ * a full rewrite of the data file. Records refer to tasks by their ID, e.g. "R||#42", while
+ * records written before tasks had IDs refer to list positions instead.
+ * <p>
+ * The first line of the journal is a fixed-width header holding the checksum and length
+ * of the data file the records apply to. Records are only replayed if the data file still
+ * matches, so a journal left behind after its records were saved into the data file is ignored.
+ * <p>
+ * During a checkpoint the journal is rotated: its records are moved aside to be folded into the
+ * data file, and appending continues in a fresh journal with a pending header. The pending header
+ * is patched with the new data file's checksum once the checkpoint completes.
+ * <p>
+ * Records appended between beginBatch() and endBatch() are held back and reach the file in a
+ * single write, so a group of mutations costs one write instead of one per record.
+ */
+public class Journal {
+
+    public static final String RECORD_ADD = "A";
+    public static final String RECORD_REMOVE = "R";
+    public static final String RECORD_TOGGLE = "X";
+    public static final String RECORD_COMPLETE = "C";
+    public static final String RECORD_UNDO = "U";
+    public static final String RECORD_SEPARATOR = "||";
+
+    private static final String HEADER_PREFIX = "BASE" + RECORD_SEPARATOR;
+    private static final String HEADER_PENDING = HEADER_PREFIX + "--------" + RECORD_SEPARATOR
+            + "----------------\n";
+    private static final int HEADER_LENGTH = HEADER_PENDING.length();
+    private static final long SYNC_INTERVAL_MS = 100;
+    private static final int INITIAL_BATCH_CAPACITY = 8 * 1024;
+
+    private final File file;
+    private final Ui ui;
+
+    private volatile FileChannel channel;
+    private ScheduledExecutorService syncer;
+    private volatile boolean isDirty;
+    private volatile boolean isFailed;
+
+    private int recordLimit = Integer.MAX_VALUE;
+    private long sizeLimit = Long.MAX_VALUE;
+    private Runnable limitListener;
+    private int recordCount;
+    private long size;
+    private String openedHeader;
+    private List<String> openedRecords;
+
+    private boolean isBatching;
+    private ByteBuffer batch = ByteBuffer.allocate(INITIAL_BATCH_CAPACITY);
+
+    /**
+     * Returns a new Journal instance
+     *
+     * @param file The journal file
+     * @param ui The bot's UI
+     */
+    public Journal(File file, Ui ui) {
+        this.file = file;
+        this.ui = ui;
+    }
+
+    /**
+     * Sets the limits past which the journal should be folded back into the data file
+     *
+     * @param recordLimit The maximum number of records
+     * @param sizeLimit The maximum size of the journal in bytes
+     * @param limitListener Called on the appending thread once either limit is reached
+     */
+    public void setLimits(int recordLimit, long sizeLimit, Runnable limitListener) {
+        this.recordLimit = recordLimit;
+        this.sizeLimit = sizeLimit;
+        this.limitListener = limitListener;
+    }
+
+    /**
+     * Opens the journal for appending and returns the records which still have to be replayed
+     * on top of the data file. A journal with a pending header is always replayed, as it was
+     * started by a checkpoint whose result has already been recovered by the caller. If the
+     * journal was written against a different data file, its records are discarded and the
+     * journal is restarted against the given base.
+     *
+     * @param baseChecksum The checksum of the data file that was loaded
+     * @param baseLength The length of the data file that was loaded
+     * @return The records to replay, in the order they were appended
+     * @throws StorageException If an I/O error occurs while reading or opening the journal
+     */
+    public List<String> open(long baseChecksum, long baseLength) throws StorageException {
+        open();
+        List<String> records = getOpenedRecords(baseChecksum, baseLength);
+        attach(baseChecksum, baseLength);
+        return records;
+    }
+
+    /**
+     * Opens the journal for appending before the data file it applies to is loaded, so mutations
+     * can already be recorded. They are appended after the records already in the journal, which
+     * are only replayed once getOpenedRecords() finds they apply to the loaded data file.
+     *
+     * @throws StorageException If an I/O error occurs while reading or opening the journal
+     */
+    public void open() throws StorageException {
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            byte[] content = Files.readAllBytes(file.toPath());
+            if (content.length < HEADER_LENGTH) {
+                // Nothing was recorded yet, so the records appended apply to whatever is loaded
+                openedHeader = HEADER_PENDING;
+                openedRecords = new ArrayList<>();
+                writeHeader(HEADER_PENDING);
+            } else {
+                openedHeader = new String(content, 0, HEADER_LENGTH, StandardCharsets.UTF_8);
+                openedRecords = splitRecords(content);
+                // Drop any torn record at the tail, so appended records start on a new line
+                int end = HEADER_LENGTH;
+                for (String record : openedRecords) {
+                    end += record.getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+                channel.truncate(end);
+                channel.position(end);
+                size = end;
+            }
+        } catch (IOException exception) {
+            throw new StorageException("An I/O error occurred while opening the journal, exiting...");
+        }
+
+        recordCount = openedRecords.size();
+        startSyncer();
+    }
+
+    /**
+     * Returns the records which were in the journal when it was opened, provided they apply to
+     * the given data file. Records appended since are not included. May be called from any thread.
+     *
+     * @param baseChecksum The checksum of the data file that was loaded
+     * @param baseLength The length of the data file that was loaded
+     * @return The records to replay in the order they were appended, or none if the journal was
+     *     written against a different data file
+     */
+    public List<String> getOpenedRecords(long baseChecksum, long baseLength) {
+        return isOpenedHeaderValid(baseChecksum, baseLength) ? openedRecords : new ArrayList<>();
+    }
+
+    /**
+     * Points the opened journal at the given loaded data file. If the records found when opening
+     * do not apply to it, they are discarded, while any records appended since are kept, as they
+     * were made on top of the loaded tasks. Must be called from the appending thread.
+     *
+     * @param baseChecksum The checksum of the data file that was loaded
+     * @param baseLength The length of the data file that was loaded
+     * @throws StorageException If an I/O error occurs while updating the journal
+     */
+    public void attach(long baseChecksum, long baseLength) throws StorageException {
+        if (isOpenedHeaderValid(baseChecksum, baseLength)) {
+            // A pending header now refers to the data file that was just loaded
+            commitHeader(baseChecksum, baseLength);
+        } else {
+            int openedEnd = HEADER_LENGTH;
+            for (String record : openedRecords) {
+                openedEnd += record.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+            try {
+                ByteBuffer appended = ByteBuffer.allocate((int) (channel.size() - openedEnd));
+                while (appended.hasRemaining() && channel.read(appended, openedEnd + appended.position()) >= 0) {
+                    // Keep reading until every appended record is read
+                }
+                writeHeader(createHeader(baseChecksum, baseLength));
+                appended.flip();
+                while (appended.hasRemaining()) {
+                    size += channel.write(appended);
+                }
+                channel.force(false);
+            } catch (IOException exception) {
+                throw new StorageException("An I/O error occurred while opening the journal, exiting...");
+            }
+            // Records held back by a batch are still counted, they are written once it ends
+            size += batch.position();
+            recordCount -= openedRecords.size();
+        }
+        openedRecords = null;
+    }
+
+    /**
+     * Reads the records of a rotated journal, provided it was written against the given data file
+     *
+     * @param journalFile The rotated journal file
+     * @param baseChecksum The checksum of the data file
+     * @param baseLength The length of the data file
+     * @return The records in the order they were appended, or null if the journal does not apply
+     * @throws StorageException If an I/O error occurs while reading the journal
+     */
+    public static List<String> readRecords(File journalFile, long baseChecksum, long baseLength)
+            throws StorageException {
+        try {
+            return readRecords(Files.readAllBytes(journalFile.toPath()),
+                    createHeader(baseChecksum, baseLength), false);
+        } catch (IOException exception) {
+            throw new StorageException("An I/O error occurred while reading the journal");
+        }
+    }
+
+    /**
+     * Moves all current records aside into the given file and continues appending into a fresh
+     * journal with a pending header. Must be called from the appending thread.
+     *
+     * @param rotatedFile The file to move the current records into
+     * @throws StorageException If an I/O error occurs while rotating the journal
+     */
+    public void rotate(File rotatedFile) throws StorageException {
+        writeBatch();
+        try {
+            channel.force(false);
+            channel.close();
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            writeHeader(HEADER_PENDING);
+            recordCount = 0;
+        } catch (IOException exception) {
+            isFailed = true;
+            throw new StorageException("An error occurred while rotating the journal");
+        }
+    }
+
+    /**
+     * Replaces the pending header with the checksum of the data file produced by a checkpoint.
+     * Appends may continue concurrently, as only the header bytes are overwritten.
+     *
+     * @param baseChecksum The checksum of the new data file
+     * @param baseLength The length of the new data file
+     * @throws StorageException If an I/O error occurs while writing the header
+     */
+    public void commitHeader(long baseChecksum, long baseLength) throws StorageException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(createHeader(baseChecksum, baseLength)
+                    .getBytes(StandardCharsets.UTF_8));
+            int position = 0;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException exception) {
+            // The pending header would make the next rotation unreadable, so appending stops here;
+            // the records appended so far are still replayed from the pending journal on restart
+            isFailed = true;
+            ui.sendRaw("Unable to write to the journal, changes will only be saved on exit");
+            throw new StorageException("An error occurred while updating the journal header");
+        }
+    }
+
+    /**
+     * Returns whether the journal stopped recording mutations after an I/O error
+     *
+     * @return True if mutations will only be saved on exit
+     */
+    public boolean isFailed() {
+        return isFailed;
+    }
+
+    /**
+     * Returns the number of records appended since the journal was last reset or rotated
+     *
+     * @return The number of records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns whether the journal has grown past its record or size limit
+     *
+     * @return True if the journal should be folded back into the data file
+     */
+    public boolean isOverLimit() {
+        return recordCount >= recordLimit || size >= sizeLimit;
+    }
+
+    /**
+     * Discards all records and restarts the journal against a newly saved data file
+     *
+     * @param baseChecksum The checksum of the saved data file
+     * @param baseLength The length of the saved data file
+     * @throws StorageException If an I/O error occurs while resetting the journal
+     */
+    public void reset(long baseChecksum, long baseLength) throws StorageException {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            // Held back records are already part of the saved data file
+            batch.clear();
+            // The failure which stopped recording may have closed the channel
+            if (!channel.isOpen()) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            writeHeader(createHeader(baseChecksum, baseLength));
+            recordCount = 0;
+            // Every mutation is now in the data file, so recording can resume after an earlier failure
+            isFailed = false;
+        } catch (IOException exception) {
+            throw new StorageException("An error occurred while resetting the journal");
+        }
+    }
+
+    /**
+     * Records a Task being added to the end of the list
+     *
+     * @param id The ID given to the task
+     * @param task The added task
+     */
+    public void logAdd(long id, Task task) {
+        append(RECORD_ADD + RECORD_SEPARATOR + TaskTracker.ID_PREFIX + id + RECORD_SEPARATOR + task.getDataString());
+    }
+
+    /**
+     * Records a Task being added to the end of the list before it was given its final ID, as
+     * happens while the existing tasks are still loading. Replaying the record gives the task
+     * the next free ID.
+     *
+     * @param task The added task
+     */
+    public void logAdd(Task task) {
+        append(RECORD_ADD + RECORD_SEPARATOR + task.getDataString());
+    }
+
+    /**
+     * Records the Task with the given ID being removed
+     *
+     * @param id The ID of the task
+     */
+    public void logRemove(long id) {
+        append(RECORD_REMOVE + RECORD_SEPARATOR + TaskTracker.ID_PREFIX + id);
+    }
+
+    /**
+     * Records the Task with the given ID having its completion status toggled
+     *
+     * @param id The ID of the task
+     */
+    public void logToggle(long id) {
+        append(RECORD_TOGGLE + RECORD_SEPARATOR + TaskTracker.ID_PREFIX + id);
+    }
+
+    /**
+     * Records the Task with the given ID being set as completed
+     *
+     * @param id The ID of the task
+     */
+    public void logComplete(long id) {
+        append(RECORD_COMPLETE + RECORD_SEPARATOR + TaskTracker.ID_PREFIX + id);
+    }
+
+    /**
+     * Records the Task with the given ID being set as incomplete
+     *
+     * @param id The ID of the task
+     */
+    public void logUndo(long id) {
+        append(RECORD_UNDO + RECORD_SEPARATOR + TaskTracker.ID_PREFIX + id);
+    }
+
+    /**
+     * Starts holding back appended records until endBatch(). Must be called from the appending thread.
+     */
+    public void beginBatch() {
+        isBatching = true;
+    }
+
+    /**
+     * Writes all records held back since beginBatch() at once, then checks the journal limits.
+     * Must be called from the appending thread.
+     */
+    public void endBatch() {
+        isBatching = false;
+        writeBatch();
+        if (limitListener != null && isOverLimit()) {
+            limitListener.run();
+        }
+    }
+
+    /**
+     * Forces all appended records to disk and closes the journal
+     */
+    public void close() {
+        writeBatch();
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException exception) {
+            // Records already handed to the OS survive the process exiting, nothing else to do
+        }
+        channel = null;
+    }
+
+    /**
+     * Appends a single record to the journal. The record reaches the OS immediately, so it
+     * survives the process being killed; fsyncs are grouped by the background syncer.
+     *
+     * @param record The record to append, without the line terminator
+     */
+    private void append(String record) {
+        if (channel == null || isFailed) {
+            return;
+        }
+
+        if (isBatching) {
+            byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+            if (batch.remaining() < bytes.length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + bytes.length));
+                batch.flip();
+                batch = grown.put(batch);
+            }
+            batch.put(bytes);
+            size += bytes.length;
+            recordCount++;
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+            isDirty = true;
+            recordCount++;
+        } catch (IOException exception) {
+            isFailed = true;
+            ui.sendRaw("Unable to write to the journal, changes will only be saved on exit");
+            return;
+        }
+
+        if (limitListener != null && isOverLimit()) {
+            limitListener.run();
+        }
+    }
+
+    /**
+     * Writes out the records held back by the current batch, if any
+     */
+    private void writeBatch() {
+        if (batch.position() == 0) {
+            return;
+        }
+
+        batch.flip();
+        try {
+            if (channel != null && !isFailed) {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                isDirty = true;
+            }
+        } catch (IOException exception) {
+            isFailed = true;
+            ui.sendRaw("Unable to write to the journal, changes will only be saved on exit");
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Truncates the journal and writes the given header as its only content
+     *
+     * @param header The header line
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeHeader(String header) throws IOException {
+        channel.truncate(0);
+        ByteBuffer buffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        size = HEADER_LENGTH;
+    }
+
+    /**
+     * Starts the background thread which group-commits appended records to disk
+     */
+    private void startSyncer() {
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-syncer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(() -> {
+            if (!isDirty) {
+                return;
+            }
+            isDirty = false;
+            FileChannel current = channel;
+            try {
+                if (current != null) {
+                    current.force(false);
+                }
+            } catch (IOException exception) {
+                // The journal was closed concurrently, close() already forced it
+            }
+        }, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Splits the content of a journal into its complete records. Only complete lines are
+     * returned; a torn record at the tail is dropped.
+     *
+     * @param content The raw journal content
+     * @param header The header the journal must start with
+     * @param isPendingValid Whether a pending header is also accepted
+     * @return The records, or null if the journal does not start with an accepted header
+     */
+    private static List<String> readRecords(byte[] content, String header, boolean isPendingValid) {
+        if (content.length < HEADER_LENGTH) {
+            return null;
+        }
+        String actualHeader = new String(content, 0, HEADER_LENGTH, StandardCharsets.UTF_8);
+        if (!actualHeader.equals(header) && !(isPendingValid && actualHeader.equals(HEADER_PENDING))) {
+            return null;
+        }
+
+        return splitRecords(content);
+    }
+
+    /**
+     * Splits the content of a journal after its header into its complete records. Only complete
+     * lines are returned; a torn record at the tail is dropped.
+     *
+     * @param content The raw journal content, starting with a header
+     * @return The records
+     */
+    private static List<String> splitRecords(byte[] content) {
+        List<String> records = new ArrayList<>();
+        int lineStart = HEADER_LENGTH;
+        for (int i = HEADER_LENGTH; i < content.length; i++) {
+            if (content[i] == '\n') {
+                records.add(new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Checks if the records found when the journal was opened apply to the given data file
+     *
+     * @param baseChecksum The checksum of the data file that was loaded
+     * @param baseLength The length of the data file that was loaded
+     * @return True if the journal had a pending header or one matching the data file
+     */
+    private boolean isOpenedHeaderValid(long baseChecksum, long baseLength) {
+        return openedHeader.equals(HEADER_PENDING) || openedHeader.equals(createHeader(baseChecksum, baseLength));
+    }
+
+    /**
+     * Returns the fixed-width header line for the given base data file
+     *
+     * @param baseChecksum The checksum of the data file
+     * @param baseLength The length of the data file
+     * @return The header line, including its line terminator
+     */
+    private static String createHeader(long baseChecksum, long baseLength) {
+        return HEADER_PREFIX + String.format("%08x", baseChecksum) + RECORD_SEPARATOR
+                + String.format("%016d", baseLength) + "\n";
+    }
+
+}
@@ -1,27 +1,71 @@
 package notjippity.io;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import notjippity.exceptions.StorageException;
+import notjippity.jfr.ParseFailureEvent;
+import notjippity.jfr.StorageEvent;
 import notjippity.tasks.Task;
+import notjippity.tasks.TaskStoreType;
+import notjippity.tasks.TaskTracker;
+import notjippity.utils.Metrics;
 
 /**
  * Represents the bot's persistent data storage system
  */
 public class Storage {
 
-    private static final String REL_FILE_PATH = "data/tasks.txt";
+    private static final String REL_FILE_PATH = "data/tasks.dat";
+    private static final String REL_TEMP_PATH = "data/tasks.dat.tmp";
+    private static final String REL_LEGACY_FILE_PATH = "data/tasks.txt";
+    private static final String REL_LEGACY_BACKUP_PATH = "data/tasks.txt.bak";
+    private static final String REL_JOURNAL_PATH = "data/tasks.journal";
+    private static final String REL_ROTATED_JOURNAL_PATH = "data/tasks.journal.old";
+    private static final String REL_EXPORT_DIR_PATH = "data/exports";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int CHECKPOINT_RECORD_LIMIT = 10000;
+    private static final long CHECKPOINT_SIZE_LIMIT = 4 * 1024 * 1024;
 
     private final Ui ui;
+    private final boolean isLazy;
+    private final Metrics metrics;
 
     private final File file;
-    private Scanner fileReader;
+    private final File tempFile;
+    private final File legacyFile;
+    private boolean isMigrating;
+    private boolean isRecovering;
+    private long loadedChecksum;
+    private long loadedLength;
+    private volatile boolean isLoadPending;
+    private final File rotatedJournalFile;
+    private final Journal journal;
+
+    private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Integer> checkpoint = CompletableFuture.completedFuture(0);
 
     /**
      * Returns a new Storage instance
@@ -29,22 +73,51 @@ public class Storage {
      * @param ui The bot's UI
      */
     public Storage(Ui ui) {
+        this(ui, false);
+    }
+
+    /**
+     * Returns a new Storage instance
+     *
+     * @param ui The bot's UI
+     * @param isLazy Whether tasks should only be decoded from the data file when first accessed
+     */
+    public Storage(Ui ui, boolean isLazy) {
+        this(ui, isLazy, new Metrics());
+    }
+
+    /**
+     * Returns a new Storage instance
+     *
+     * @param ui The bot's UI
+     * @param isLazy Whether tasks should only be decoded from the data file when first accessed
+     * @param metrics The metrics to record the duration and size of loads and saves into
+     */
+    public Storage(Ui ui, boolean isLazy, Metrics metrics) {
         this.ui = ui;
+        this.isLazy = isLazy;
+        this.metrics = metrics;
         file = new File(REL_FILE_PATH);
+        tempFile = new File(REL_TEMP_PATH);
+        legacyFile = new File(REL_LEGACY_FILE_PATH);
+        rotatedJournalFile = new File(REL_ROTATED_JOURNAL_PATH);
+        journal = new Journal(new File(REL_JOURNAL_PATH), ui);
+        journal.setLimits(CHECKPOINT_RECORD_LIMIT, CHECKPOINT_SIZE_LIMIT, this::checkpoint);
     }
 
     /**
      * Runs the Storage startup sequence. Must be called once before calling any other Storage methods
      *
-     * @throws StorageException If an error occurs while loading the file or instantiating the File Scanner
+     * @throws StorageException If an error occurs while loading the file
      */
     public void init() throws StorageException {
-        try {
+        StorageEvent event = StorageEvent.begin(StorageEvent.OPERATION_INIT);
+        // Data saved by older versions is migrated into the binary format while loading
+        isMigrating = !file.exists() && legacyFile.exists();
+        if (!isMigrating) {
             loadFile();
-            fileReader = new Scanner(file);
-        } catch (FileNotFoundException exception) {
-            throw new StorageException("Unable to find file while loading it into scanner!");
         }
+        StorageEvent.end(event, isMigrating ? legacyFile.length() : file.length(), 0, 0);
     }
 
     /**
@@ -68,51 +141,444 @@ public class Storage {
     }
 
     /**
-     * Attempts to parse the task data contained in the file into a collection of Tasks
+     * Opens the journal ahead of loadData(), so that mutations made while the data file is
+     * loading on another thread are recorded as they are made. finishLoad() must then be called
+     * once the loaded tasks are handed over.
+     *
+     * @throws StorageException If an I/O error occurs while opening the journal
+     */
+    public void openJournal() throws StorageException {
+        journal.open();
+        isLoadPending = true;
+    }
+
+    /**
+     * Attempts to parse the task data contained in the file into the given task tracker, then
+     * replays any mutations recorded in the journal since the file was last saved.
+     * The file may be in either the binary or the legacy text format.
+     *
+     * @param tasks The empty task tracker to load the tasks into, which must not have a journal set
+     * @throws StorageException If the file or journal content is of the wrong format/corrupted
+     */
+    public void loadData(TaskTracker tasks) throws StorageException {
+        StorageEvent event = StorageEvent.begin(StorageEvent.OPERATION_LOAD);
+        long startTime = System.nanoTime();
+        TaskFileLoader.Result result = TaskFileLoader.load(isMigrating ? legacyFile : file, isLazy);
+        addLoadedTasks(tasks, result, !isLazy);
+        long checksum = result.checksum, length = result.length;
+        int taskCount = tasks.getSize(), recordCount = 0;
+
+        // A rotated journal means the process stopped during a checkpoint. Its records are only
+        // replayed if the data file was not replaced yet, otherwise they are already contained in it
+        isRecovering = rotatedJournalFile.exists();
+        if (isRecovering) {
+            List<String> rotatedRecords = Journal.readRecords(rotatedJournalFile, checksum, length);
+            if (rotatedRecords != null) {
+                replayRecords(tasks, rotatedRecords);
+                recordCount += rotatedRecords.size();
+            }
+        }
+
+        // Replay the mutations made after the data file was last saved. Mutations recorded while
+        // loading in the background are left out, as they are made on top of the loaded tasks
+        boolean isJournalOpen = isLoadPending;
+        if (!isJournalOpen) {
+            journal.open();
+        }
+        List<String> records = journal.getOpenedRecords(checksum, length);
+        replayRecords(tasks, records);
+        recordCount += records.size();
+        loadedChecksum = checksum;
+        loadedLength = length;
+        metrics.recordLoad(System.nanoTime() - startTime, taskCount, recordCount, length);
+        StorageEvent.end(event, length, taskCount, recordCount);
+
+        if (!isJournalOpen) {
+            finishLoad(tasks);
+        }
+    }
+
+    /**
+     * Points the journal at the loaded data file, then folds anything recovered while loading
+     * into the data file. Called by loadData(), unless the journal was opened ahead of it, in which
+     * case it must be called from the appending thread once the loaded tasks are handed over.
+     *
+     * @param tasks The task tracker holding the loaded tasks, and any added while loading
+     * @throws StorageException If an I/O error occurs while updating the journal or data file
+     */
+    public void finishLoad(TaskTracker tasks) throws StorageException {
+        journal.attach(loadedChecksum, loadedLength);
+        isLoadPending = false;
+
+        // Fold everything recovered into the data file so the checkpoint does not have to be redone
+        if (isRecovering || isMigrating) {
+            saveData(tasks);
+        } else if (journal.isOverLimit()) {
+            checkpoint();
+        }
+
+        if (isMigrating) {
+            legacyFile.renameTo(new File(REL_LEGACY_BACKUP_PATH));
+            isMigrating = false;
+            ui.sendRaw("Migrated " + REL_LEGACY_FILE_PATH + " to " + REL_FILE_PATH
+                    + ", the old file was kept as " + REL_LEGACY_BACKUP_PATH);
+        }
+    }
+
+    /**
+     * Returns the journal which records mutations made after the data file was loaded
+     *
+     * @return The journal
+     */
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Starts folding the journal back into the data file. The current records are moved aside and
+     * replayed onto a fresh copy of the data file in the background, which is then swapped in
+     * atomically. If a checkpoint is already running, that checkpoint is returned instead.
      *
-     * @throws StorageException If the file content is of the wrong format/corrupted
+     * @return A future completing with the number of records folded into the data file
      */
-    public List<Task> loadData() throws StorageException {
-        ArrayList<Task> tasks = new ArrayList<>();
+    public synchronized Future<Integer> checkpoint() {
+        if (!checkpoint.isDone()) {
+            return checkpoint;
+        }
+        // Until the loaded data file is known, the journal cannot be pointed at a new one
+        if (isLoadPending) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        int recordCount = journal.getRecordCount();
+        if (recordCount == 0) {
+            return CompletableFuture.completedFuture(0);
+        }
+        // A failed journal may still hold a pending header, which a rotated journal must never have
+        if (journal.isFailed()) {
+            return CompletableFuture.failedFuture(new StorageException(
+                    "The journal failed, changes will only be saved on exit"));
+        }
+        // A failed checkpoint leaves its rotated journal behind, which must not be overwritten
+        if (rotatedJournalFile.exists()) {
+            return CompletableFuture.failedFuture(new StorageException(
+                    "The last checkpoint did not finish, it will be recovered on the next start"));
+        }
 
-        // For each line in the file, parse each line and form the Task
-        int index = 1;
-        while (fileReader.hasNext()) {
-            String dataStr = fileReader.nextLine();
+        try {
+            journal.rotate(rotatedJournalFile);
+        } catch (StorageException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
 
+        checkpoint = CompletableFuture.supplyAsync(() -> {
             try {
-                Task task = Task.createTaskFromString(dataStr);
-                tasks.add(task);
+                foldRotatedJournal();
             } catch (StorageException exception) {
-                throw new StorageException("Invalid file format on line " + index + ": " + exception.getMessage());
+                ui.sendRaw(exception.getMessage());
+                throw new CompletionException(exception);
             }
+            return recordCount;
+        }, checkpointer);
+        return checkpoint;
+    }
+
+    /**
+     * Waits for any running checkpoint, forces any pending journal records to disk and releases the journal
+     */
+    public void close() {
+        awaitCheckpoint();
+        checkpointer.shutdown();
+        journal.close();
+    }
+
+    /**
+     * Saves all Tasks to file, then restarts the journal since all of its records are now
+     * contained in the file
+     *
+     * @param tasks The task tracker holding the tasks to save
+     * @throws StorageException If an I/O error occurs during the saving process
+     */
+    public void saveData(TaskTracker tasks) throws StorageException {
+        awaitCheckpoint();
+
+        long checksum = writeSnapshot(tasks);
+        journal.reset(checksum, file.length());
+        rotatedJournalFile.delete();
+    }
+
+    /**
+     * Rebuilds the data file from its current content and the rotated journal, swaps it in,
+     * then points the live journal at the new data file. Runs on the checkpointer thread.
+     * <p>
+     * If the process stops at any point, loadData() still recovers the same tasks: until the swap
+     * the old data file and rotated journal are intact, and after it the rotated journal no longer
+     * matches the data file and is skipped.
+     *
+     * @throws StorageException If an I/O error occurs or the stored data is corrupted
+     */
+    private void foldRotatedJournal() throws StorageException {
+        // Records are only decoded when touched by the journal, the rest are copied through as-is.
+        // The file is read into the heap, as a mapping of it would be held while it is replaced.
+        TaskFileLoader.Result result = TaskFileLoader.load(file, false);
+        TaskTracker tasks = new TaskTracker(result.arena != null ? TaskStoreType.OFFHEAP : TaskStoreType.SLOTS);
+        addLoadedTasks(tasks, result, false);
 
-            index++;
+        List<String> records = Journal.readRecords(rotatedJournalFile, result.checksum, result.length);
+        if (records == null) {
+            throw new StorageException("The rotated journal does not match the data file, skipping checkpoint");
         }
+        replayRecords(tasks, records);
+        long checksum = writeSnapshot(tasks);
 
-        return tasks;
+        rotatedJournalFile.delete();
+        journal.commitHeader(checksum, file.length());
     }
 
     /**
-     * Saves all Tasks to file with the provided List of data strings
+     * Blocks until the running checkpoint, if any, has finished
+     */
+    private void awaitCheckpoint() {
+        try {
+            checkpoint.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            // Already reported by the checkpointer, the rotated journal is recovered on the next start
+        }
+    }
+
+    /**
+     * Writes all Tasks in the legacy text format, one data string per line, to the file of the
+     * given name in the export directory. The file is written into a temporary file first and
+     * atomically swapped in, so an existing export is never left half written.
      *
      * @param dataStrings The list of data strings given by TaskTracker.getAllDataStrings()
-     * @throws StorageException If an I/O error occurs during the saving process
+     * @param name The name of the file to export into, relative to the export directory
+     * @return The file exported into
+     * @throws StorageException If the name leads outside the export directory or to a file the
+     *                          storage itself uses, or an I/O error occurs during the export
      */
-    public void saveData(List<String> dataStrings) throws StorageException {
+    public File exportText(List<String> dataStrings, String name) throws StorageException {
+        File target = resolveExportTarget(new File(REL_EXPORT_DIR_PATH), name);
+        for (String path : new String[] {REL_FILE_PATH, REL_TEMP_PATH, REL_LEGACY_FILE_PATH,
+                REL_LEGACY_BACKUP_PATH, REL_JOURNAL_PATH, REL_ROTATED_JOURNAL_PATH}) {
+            if (isSameFile(target, new File(path))) {
+                throw new StorageException("Can't export over " + path + ", it holds the saved tasks");
+            }
+        }
+
+        File exportTempFile = new File(target.getPath() + TEMP_SUFFIX);
         try {
-            FileWriter fileWriter = new FileWriter(REL_FILE_PATH);
-            for (int i = 0; i < dataStrings.size(); i++) {
-                if (i > 0) {
-                    fileWriter.write(System.lineSeparator());
+            target.getParentFile().mkdirs();
+            try (FileOutputStream outputStream = new FileOutputStream(exportTempFile)) {
+                Writer fileWriter = new BufferedWriter(new OutputStreamWriter(outputStream));
+                for (int i = 0; i < dataStrings.size(); i++) {
+                    if (i > 0) {
+                        fileWriter.write(System.lineSeparator());
+                    }
+                    fileWriter.write(dataStrings.get(i));
                 }
-                fileWriter.write(dataStrings.get(i));
+                fileWriter.flush();
+                outputStream.getFD().sync();
+            }
+            Files.move(exportTempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            exportTempFile.delete();
+            throw new StorageException("An error occurred while exporting data to " + target.getPath());
+        }
+        return target;
+    }
+
+    /**
+     * Resolves the file of the given name within the given export directory, which exports are
+     * confined to so that they can never overwrite other files
+     *
+     * @param directory The export directory
+     * @param name The name of the file, which may lead into subdirectories
+     * @return The file
+     * @throws StorageException If the name is empty or leads outside the export directory
+     */
+    static File resolveExportTarget(File directory, String name) throws StorageException {
+        try {
+            Path root = directory.getCanonicalFile().toPath();
+            Path target = root.resolve(name).normalize();
+            // Canonicalizing resolves symbolic links, which could otherwise lead back out
+            Path canonicalTarget = target.toFile().getCanonicalFile().toPath();
+            if (name.isBlank() || name.endsWith(TEMP_SUFFIX) || !target.startsWith(root)
+                    || !canonicalTarget.startsWith(root) || canonicalTarget.equals(root)) {
+                throw new StorageException("Exports can only go into " + directory.getPath()
+                        + ", e.g. export my-tasks.txt");
             }
+            return new File(directory, root.relativize(target).toString());
+        } catch (IOException | InvalidPathException exception) {
+            throw new StorageException("Sry bro can't export to " + name);
+        }
+    }
 
-            fileWriter.close();
+    /**
+     * Checks if the given files are the same file, following symbolic links
+     *
+     * @param first The first file
+     * @param second The second file
+     * @return True if both lead to the same file
+     * @throws StorageException If either path cannot be resolved
+     */
+    private static boolean isSameFile(File first, File second) throws StorageException {
+        try {
+            return first.getCanonicalFile().equals(second.getCanonicalFile());
         } catch (IOException exception) {
+            throw new StorageException("Sry bro can't export to " + first.getPath());
+        }
+    }
+
+    /**
+     * Writes the given Tasks into a temporary file and atomically swaps it in as the data file
+     *
+     * @param tasks The task tracker holding the tasks to write
+     * @return The CRC32C checksum of the written data file
+     * @throws StorageException If an I/O error occurs during the saving process
+     */
+    private long writeSnapshot(TaskTracker tasks) throws StorageException {
+        StorageEvent event = StorageEvent.begin(StorageEvent.OPERATION_SAVE);
+        long startTime = System.nanoTime();
+        long checksum;
+        try {
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                if (tasks.isOffHeap()) {
+                    // The arena is written straight from off-heap memory in bulk, without a heap buffer
+                    checksum = ArenaTaskCodec.encode(tasks, outputStream.getChannel());
+                } else {
+                    BufferedOutputStream bufferedStream = new BufferedOutputStream(outputStream);
+                    checksum = BinaryTaskCodec.encode(tasks, bufferedStream);
+                    bufferedStream.flush();
+                }
+                outputStream.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IllegalStateException exception) {
             throw new StorageException("An error occurred while saving data to file");
         }
+
+        metrics.recordSave(System.nanoTime() - startTime, tasks.getSize(), file.length());
+        StorageEvent.end(event, file.length(), tasks.getSize(), 0);
+        return checksum;
+    }
+
+    /**
+     * Adds the tasks, undecoded records or arena of a loaded data file into the given task tracker
+     *
+     * @param tasks The empty task tracker
+     * @param result The loaded data file
+     * @param shouldDecode Whether undecoded records should all be decoded right away
+     * @throws StorageException If any record or the arena is corrupted
+     */
+    private static void addLoadedTasks(TaskTracker tasks, TaskFileLoader.Result result, boolean shouldDecode)
+            throws StorageException {
+        if (result.arena != null) {
+            try {
+                tasks.addArena(result.arena);
+            } catch (IllegalStateException exception) {
+                throw new StorageException(exception.getMessage());
+            }
+            return;
+        }
+        if (result.records != null) {
+            tasks.addRecords(result.records);
+            if (shouldDecode) {
+                try {
+                    tasks.decodeAll();
+                } catch (IllegalStateException exception) {
+                    throw new StorageException(exception.getMessage());
+                }
+            }
+            return;
+        }
+        for (Task task : result.tasks) {
+            tasks.addTask(task);
+        }
+    }
+
+    /**
+     * Applies the given journal records to the loaded tasks, in order
+     *
+     * @param tasks The loaded tasks
+     * @param records The journal records
+     * @throws StorageException If any record is invalid
+     */
+    private static void replayRecords(TaskTracker tasks, List<String> records) throws StorageException {
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                replayRecord(tasks, records.get(i));
+            } catch (StorageException | IndexOutOfBoundsException | NoSuchElementException
+                    | IllegalArgumentException exception) {
+                ParseFailureEvent.report(ParseFailureEvent.SOURCE_JOURNAL_RECORD, i + 1, exception.getMessage());
+                throw new StorageException("Invalid journal record #" + (i + 1) + ": " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies a single journal record to the loaded tasks
+     *
+     * @param tasks The loaded tasks
+     * @param record The journal record
+     * @throws StorageException If the record has an unknown type or an invalid task
+     */
+    private static void replayRecord(TaskTracker tasks, String record) throws StorageException {
+        int separatorIndex = record.indexOf(Journal.RECORD_SEPARATOR);
+        if (separatorIndex < 0) {
+            throw new StorageException("Unable to detect record type");
+        }
+        String type = record.substring(0, separatorIndex),
+                value = record.substring(separatorIndex + Journal.RECORD_SEPARATOR.length());
+
+        switch (type) {
+        case Journal.RECORD_ADD:
+            if (value.startsWith(TaskTracker.ID_PREFIX)) {
+                int dataIndex = value.indexOf(Journal.RECORD_SEPARATOR);
+                long id = Long.parseLong(value.substring(TaskTracker.ID_PREFIX.length(), dataIndex));
+                String dataStr = value.substring(dataIndex + Journal.RECORD_SEPARATOR.length());
+                tasks.addTask(Task.createTaskFromString(dataStr), id);
+            } else {
+                tasks.addTask(Task.createTaskFromString(value));
+            }
+            break;
+        case Journal.RECORD_REMOVE:
+            tasks.removeTask(parseRecordIndex(tasks, value));
+            break;
+        case Journal.RECORD_TOGGLE:
+            tasks.toggleTask(parseRecordIndex(tasks, value));
+            break;
+        case Journal.RECORD_COMPLETE:
+            tasks.completeTask(parseRecordIndex(tasks, value));
+            break;
+        case Journal.RECORD_UNDO:
+            tasks.undoTask(parseRecordIndex(tasks, value));
+            break;
+        default:
+            throw new StorageException("Unknown record type \"" + type + "\"");
+        }
+    }
+
+    /**
+     * Returns the current list index of the task a journal record refers to. Records refer to
+     * tasks by ID, or by list index if they were written before tasks had IDs.
+     *
+     * @param tasks The loaded tasks
+     * @param value The value of the record
+     * @return The index of the task, 0-indexed
+     * @throws NumberFormatException If the value is not a number
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    private static int parseRecordIndex(TaskTracker tasks, String value) throws NumberFormatException,
+            NoSuchElementException {
+        if (value.startsWith(TaskTracker.ID_PREFIX)) {
+            return tasks.indexOf(Long.parseLong(value.substring(TaskTracker.ID_PREFIX.length())));
+        }
+        return Integer.parseInt(value);
     }
 
 }
@@ -0,0 +1,292 @@
+package notjippity.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32C;
+
+import notjippity.exceptions.StorageException;
+import notjippity.jfr.ParseFailureEvent;
+import notjippity.tasks.Task;
+
+/**
+ * Loads a data file into Tasks, detecting whether it is in the arena, binary or legacy text format.
+ * Large text files are memory-mapped, split into chunks at line boundaries and parsed in parallel
+ * on the common fork-join pool, then reassembled in file order.
+ * <p>
+ * Lines are read the same way as a Scanner over the file would: lines end with \n, \r\n or \r,
+ * and anything after the last non-whitespace character is ignored.
+ */
+class TaskFileLoader {
+
+    /** Files smaller than this, or any file on a single core, are parsed on the calling thread */
+    private static final int PARALLEL_THRESHOLD = 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    /** Enough bytes from the start of a file to recognise its format */
+    private static final int HEADER_LENGTH = 4;
+
+    /**
+     * Represents the tasks parsed from the data file, along with the file's checksum and length.
+     * Binary and arena files are not decoded here, so their undecoded records or their arena are
+     * kept instead of the tasks.
+     */
+    static class Result {
+
+        final List<Task> tasks;
+        final TaskRecords records;
+        final ByteBuffer arena;
+        final long checksum;
+        final long length;
+
+        private Result(List<Task> tasks, TaskRecords records, ByteBuffer arena, long checksum, long length) {
+            this.tasks = tasks;
+            this.records = records;
+            this.arena = arena;
+            this.checksum = checksum;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Represents the outcome of parsing a single chunk. If parsing failed, the tasks parsed
+     * before the failure are discarded and the failing line is kept instead.
+     */
+    private static class ChunkResult {
+
+        final List<Task> tasks = new ArrayList<>();
+        int lineCount;
+        int errorLine;
+        String errorMessage;
+
+    }
+
+    /**
+     * Parses the lines contained in one chunk of the file
+     */
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        private ChunkTask(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return parseLines(bytes, bytes.length);
+        }
+
+    }
+
+    /**
+     * Parses every line of the given text file into a Task, indexes the records of the given
+     * binary file, or verifies the given arena file
+     *
+     * @param file The data file, in any format
+     * @param isLazy Whether the records of a binary file will be decoded lazily, in which case
+     *               large files are memory-mapped rather than read into the heap
+     * @return The parsed tasks or records in file order, along with the file's checksum and length
+     * @throws StorageException If any record or line has an invalid format, or an I/O error occurs
+     */
+    static Result load(File file, boolean isLazy) throws StorageException {
+        return load(file, isLazy, Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+    /**
+     * Parses every line of the given text file into a Task, indexes the records of the given
+     * binary file, or verifies the given arena file
+     *
+     * @param file The data file, in any format
+     * @param isLazy Whether the records of a binary file will be decoded lazily, in which case
+     *               large files are memory-mapped rather than read into the heap
+     * @param canParallelize Whether large text files may be parsed in parallel
+     * @return The parsed tasks or records in file order, along with the file's checksum and length
+     * @throws StorageException If any record or line has an invalid format, or an I/O error occurs
+     */
+    static Result load(File file, boolean isLazy, boolean canParallelize) throws StorageException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new StorageException("The data file is too large to be loaded, exiting...");
+            }
+
+            // Only map the file when it is used in place: text parsed in parallel, or binary
+            // records decoded lazily. Anything else is copied into the heap, so no mapping keeps
+            // the file open once it is loaded, which would stop it being replaced on some platforms.
+            boolean isLarge = size >= PARALLEL_THRESHOLD;
+            ByteBuffer header = readHeader(channel);
+            boolean isBinary = BinaryTaskCodec.isBinary(header);
+            boolean isText = !isBinary && !ArenaTaskCodec.isArena(header);
+            boolean isParallel = isText && isLarge && canParallelize;
+            ByteBuffer buffer;
+            if (isParallel || (isBinary && isLarge && isLazy)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Keep reading until the buffer is filled
+                }
+                buffer.flip();
+            }
+
+            if (ArenaTaskCodec.isArena(buffer)) {
+                CRC32C checksum = new CRC32C();
+                checksum.update(buffer.duplicate());
+                return new Result(null, null, ArenaTaskCodec.verify(buffer), checksum.getValue(), size);
+            }
+            if (BinaryTaskCodec.isBinary(buffer)) {
+                TaskRecords records = BinaryTaskCodec.index(buffer);
+                return new Result(null, records, null, records.getFileChecksum(), size);
+            }
+
+            if (!isParallel) {
+                CRC32C checksum = new CRC32C();
+                checksum.update(buffer.array(), 0, buffer.limit());
+                ChunkResult result = parseLines(buffer.array(), findContentEnd(buffer, buffer.limit()));
+                throwIfFailed(result, 0);
+                return new Result(result.tasks, null, null, checksum.getValue(), size);
+            }
+
+            List<ChunkTask> chunks = split(buffer, findContentEnd(buffer, (int) size));
+            for (ChunkTask chunk : chunks) {
+                chunk.fork();
+            }
+
+            // Checksum the file while the chunks are being parsed
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.duplicate());
+
+            List<Task> tasks = new ArrayList<>();
+            int lineOffset = 0;
+            for (ChunkTask chunk : chunks) {
+                ChunkResult result = chunk.join();
+                throwIfFailed(result, lineOffset);
+                tasks.addAll(result.tasks);
+                lineOffset += result.lineCount;
+            }
+            return new Result(tasks, null, null, checksum.getValue(), size);
+        } catch (IOException exception) {
+            throw new StorageException("An I/O error occurred while reading the data file, exiting...");
+        }
+    }
+
+    /**
+     * Reads the start of the given file, enough to tell which format it is in
+     *
+     * @param channel The channel of the data file
+     * @return The first bytes of the file
+     * @throws IOException If an I/O error occurs
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Keep reading until the header is filled or the file ends
+        }
+        return header.flip();
+    }
+
+    /**
+     * Splits the given content into chunks which each end right after a \n
+     *
+     * @param buffer The file content
+     * @param contentEnd The end of the content to split
+     * @return The chunks, in file order
+     */
+    private static List<ChunkTask> split(ByteBuffer buffer, int contentEnd) {
+        List<ChunkTask> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < contentEnd) {
+            int end = Math.min(start + CHUNK_SIZE, contentEnd);
+            while (end < contentEnd && buffer.get(end - 1) != '\n') {
+                end++;
+            }
+            chunks.add(new ChunkTask(buffer, start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Parses each line within the given bytes into a Task, stopping at the first invalid line
+     *
+     * @param bytes The bytes of whole lines
+     * @param length The number of bytes to parse
+     * @return The parsed tasks and line count, or the first invalid line
+     */
+    private static ChunkResult parseLines(byte[] bytes, int length) {
+        Charset charset = Charset.defaultCharset();
+        ChunkResult result = new ChunkResult();
+
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && bytes[lineEnd] != '\n' && bytes[lineEnd] != '\r') {
+                lineEnd++;
+            }
+
+            result.lineCount++;
+            try {
+                result.tasks.add(Task.createTaskFromString(new String(bytes, lineStart, lineEnd - lineStart, charset)));
+            } catch (StorageException exception) {
+                result.errorLine = result.lineCount;
+                result.errorMessage = exception.getMessage();
+                return result;
+            }
+
+            // Skip the line terminator, treating \r\n as a single terminator
+            if (lineEnd < length && bytes[lineEnd] == '\r' && lineEnd + 1 < length && bytes[lineEnd + 1] == '\n') {
+                lineEnd++;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the position right after the last non-whitespace byte of the given content
+     *
+     * @param buffer The file content
+     * @param length The length of the content
+     * @return The end of the meaningful content
+     */
+    private static int findContentEnd(ByteBuffer buffer, int length) {
+        int end = length;
+        while (end > 0 && Character.isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Throws the error found while parsing a chunk, if any, with its line number in the whole file
+     *
+     * @param result The chunk result
+     * @param lineOffset The number of lines before the chunk
+     * @throws StorageException If the chunk contains an invalid line
+     */
+    private static void throwIfFailed(ChunkResult result, int lineOffset) throws StorageException {
+        if (result.errorMessage != null) {
+            ParseFailureEvent.report(ParseFailureEvent.SOURCE_TEXT_LINE, lineOffset + result.errorLine,
+                    result.errorMessage);
+            throw new StorageException("Invalid file format on line " + (lineOffset + result.errorLine) + ": "
+                    + result.errorMessage);
+        }
+    }
+
+}
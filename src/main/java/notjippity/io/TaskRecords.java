@@ -0,0 +1,170 @@
+package notjippity.io;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+
+import notjippity.exceptions.StorageException;
+import notjippity.jfr.ParseFailureEvent;
+import notjippity.tasks.Task;
+
+/**
+ * Represents the undecoded records of a binary data file. Records are decoded only when they are
+ * first accessed. Records are located through the file's record index in constant time, and
+ * their task IDs read from it without touching the records. Files written before the index
+ * existed are located by walking the records up to the one accessed. Instances are not
+ * thread-safe.
+ */
+public class TaskRecords {
+
+    // Each index entry holds the task ID followed by the offset of its record
+    private static final int INDEX_ENTRY_LENGTH = 8 + 4;
+    private static final int OFFSET_POSITION = 8;
+
+    private final ByteBuffer content;
+    private final int count;
+    private final int version;
+    private final long nextId;
+    private final ByteBuffer index;
+    private final long fileChecksum;
+
+    private int[] offsets;
+    private int scannedCount;
+
+    /**
+     * Returns a new TaskRecords instance
+     *
+     * @param content The file content, positioned at the first record and limited to the last one
+     * @param count The number of records
+     * @param version The format version of the records
+     * @param nextId The ID which the next added task should be given
+     * @param index The record index, starting at position 0, or null if the file has none
+     * @param fileChecksum The CRC32C checksum of the whole file
+     */
+    TaskRecords(ByteBuffer content, int count, int version, long nextId, ByteBuffer index, long fileChecksum) {
+        this.content = content.slice();
+        this.count = count;
+        this.version = version;
+        this.nextId = nextId;
+        this.index = index;
+        this.fileChecksum = fileChecksum;
+        offsets = index == null ? new int[Math.min(count, 1024) + 1] : null;
+    }
+
+    /**
+     * Returns the number of records
+     *
+     * @return The number of records
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the ID which the next added task should be given
+     *
+     * @return The next task ID
+     */
+    public long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the CRC32C checksum of the whole file the records were read from
+     *
+     * @return The checksum
+     */
+    long getFileChecksum() {
+        return fileChecksum;
+    }
+
+    /**
+     * Checks if the records are laid out as currently written, so they can be copied as-is
+     *
+     * @return True if the records are of a format version with the current record layout
+     */
+    public boolean isCurrentVersion() {
+        return version >= BinaryTaskCodec.VERSION_WITH_IDS;
+    }
+
+    /**
+     * Returns the ID of the task in the record at the given index. Records written before tasks
+     * had IDs are numbered in file order.
+     *
+     * @param index The index of the record, 0-indexed
+     * @return The task ID
+     */
+    public long getId(int index) {
+        if (version < BinaryTaskCodec.VERSION_WITH_IDS) {
+            return index + 1;
+        }
+        return this.index.getLong(index * INDEX_ENTRY_LENGTH);
+    }
+
+    /**
+     * Decodes the record at the given index into a Task
+     *
+     * @param index The index of the record, 0-indexed
+     * @return The decoded task
+     * @throws IllegalStateException If the record is corrupted, which the file checksum should rule out
+     */
+    public Task decode(int index) throws IllegalStateException {
+        try {
+            return BinaryTaskCodec.decodeRecord(getRecord(index), version);
+        } catch (StorageException exception) {
+            ParseFailureEvent.report(ParseFailureEvent.SOURCE_BINARY_RECORD, index + 1, exception.getMessage());
+            throw new IllegalStateException("Invalid data file record #" + (index + 1) + ": "
+                    + exception.getMessage(), exception);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | DateTimeException exception) {
+            ParseFailureEvent.report(ParseFailureEvent.SOURCE_BINARY_RECORD, index + 1, "record is truncated");
+            throw new IllegalStateException("Invalid data file record #" + (index + 1) + ": record is truncated",
+                    exception);
+        }
+    }
+
+    /**
+     * Returns the encoded bytes of the record at the given index
+     *
+     * @param index The index of the record, 0-indexed
+     * @return A read-only view over the record's bytes
+     */
+    public ByteBuffer getRecord(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Record " + index + " out of bounds for " + count + " records");
+        }
+
+        if (this.index != null) {
+            int start = this.index.getInt(index * INDEX_ENTRY_LENGTH + OFFSET_POSITION);
+            int end = index + 1 < count ? this.index.getInt((index + 1) * INDEX_ENTRY_LENGTH + OFFSET_POSITION)
+                    : content.limit();
+            return content.asReadOnlyBuffer().limit(end).position(start).slice();
+        }
+
+        scanUpTo(index + 1);
+        return content.asReadOnlyBuffer().position(offsets[index]).limit(offsets[index + 1]).slice();
+    }
+
+    /**
+     * Locates the records up to the given record count, continuing from the last located record
+     *
+     * @param recordCount The number of records to locate
+     */
+    private void scanUpTo(int recordCount) {
+        if (recordCount <= scannedCount) {
+            return;
+        }
+        if (recordCount >= offsets.length) {
+            int[] grown = new int[(int) Math.min((long) count + 1, Math.max(offsets.length * 2L, recordCount + 1))];
+            System.arraycopy(offsets, 0, grown, 0, scannedCount + 1);
+            offsets = grown;
+        }
+
+        int position = offsets[scannedCount];
+        while (scannedCount < recordCount) {
+            position += BinaryTaskCodec.getRecordLength(content, position, version);
+            offsets[++scannedCount] = position;
+        }
+    }
+
+}
@@ -1,26 +1,118 @@
 package notjippity.io;
 
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Represents the user interface to communicate with the user (e.g. GUI, CLI)
+ * <p>
+ * All output is rendered into a single reusable buffer rather than written line by line. The
+ * buffer is written out whenever it fills up, so very large outputs are streamed in bounded
+ * chunks, and otherwise once per command, just before the user is prompted for the next input.
+ * <p>
+ * In batch mode, inputs are read from a file instead of the user, no prompts are shown, and the
+ * buffer is larger and only written out when it fills up or flush() is called.
  */
 public class Ui {
 
     private static final String CLI_INPUT_PREFIX = ">> ";
     private static final String CLI_OUTPUT_PREFIX = "[NotJippity] ";
     private static final String CLI_OUTPUT_SPACER = CLI_OUTPUT_PREFIX.replaceAll("\\S", " ");
+    private static final int CLI_BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_BUFFER_SIZE = 1 << 20;
 
-    private Scanner cliInput = new Scanner(System.in);
+    private final BufferedReader cliInput;
+    private final Writer cliOutput;
+    private final boolean isBatch;
 
     /**
-     * Prompts user for a single-line input and returns it
+     * Returns a new Ui instance which interacts with the user through the CLI
+     */
+    public Ui() {
+        this(new BufferedReader(new InputStreamReader(System.in)), createOutput(CLI_BUFFER_SIZE), false);
+    }
+
+    /**
+     * Returns a new Ui instance in batch mode, which reads inputs from the given file
+     *
+     * @param batchFile The file to read inputs from, one per line
+     * @throws IOException If the file cannot be opened
+     */
+    public Ui(Path batchFile) throws IOException {
+        this(new BufferedReader(new InputStreamReader(Files.newInputStream(batchFile)), BATCH_BUFFER_SIZE),
+                createOutput(BATCH_BUFFER_SIZE), true);
+    }
+
+    /**
+     * Returns a new Ui instance which interacts with a remote user through the given streams,
+     * e.g. those of a client connection. Text is exchanged as UTF-8.
+     *
+     * @param input The stream to read inputs from
+     * @param output The stream to send output to
+     */
+    public Ui(InputStream input, OutputStream output) {
+        this(input, output, false);
+    }
+
+    /**
+     * Returns a new Ui instance which reads inputs from and sends output to the given streams,
+     * optionally in batch mode, e.g. to replay a script of commands with its output discarded.
+     * Text is exchanged as UTF-8.
      *
-     * @return The user's input as a string
+     * @param input The stream to read inputs from
+     * @param output The stream to send output to
+     * @param isBatch Whether to run in batch mode
+     */
+    public Ui(InputStream input, OutputStream output, boolean isBatch) {
+        this(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8),
+                        isBatch ? BATCH_BUFFER_SIZE : CLI_BUFFER_SIZE),
+                new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8),
+                        isBatch ? BATCH_BUFFER_SIZE : CLI_BUFFER_SIZE), isBatch);
+    }
+
+    private Ui(BufferedReader cliInput, Writer cliOutput, boolean isBatch) {
+        this.cliInput = cliInput;
+        this.cliOutput = cliOutput;
+        this.isBatch = isBatch;
+    }
+
+    /**
+     * Prompts user for a single-line input and returns it. Any output of the previous command is
+     * written out together with the prompt. No prompt is shown in batch mode.
+     *
+     * @return The user's input as a string, or null if there is no more input
      */
     public String getUserInput() {
-        System.out.print(CLI_INPUT_PREFIX);
-        return cliInput.nextLine();
+        try {
+            if (!isBatch) {
+                cliOutput.write(CLI_INPUT_PREFIX);
+                cliOutput.flush();
+            }
+            return cliInput.readLine();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Checks if inputs are read from a file rather than the user
+     *
+     * @return True if in batch mode
+     */
+    public boolean isBatch() {
+        return isBatch;
     }
 
     /**
@@ -29,7 +121,7 @@ public class Ui {
      * @param message The message to send
      */
     public void send(String message) {
-        sendRaw(CLI_OUTPUT_PREFIX + message);
+        writeLine(CLI_OUTPUT_PREFIX, message);
     }
 
     /**
@@ -38,7 +130,7 @@ public class Ui {
      * @param message The message to send
      */
     public void sendWithSpacer(String message) {
-        sendRaw(CLI_OUTPUT_SPACER + message);
+        writeLine(CLI_OUTPUT_SPACER, message);
     }
 
     /**
@@ -47,7 +139,18 @@ public class Ui {
      * @param message The message to send
      */
     public void sendRaw(String message) {
-        System.out.println(message);
+        writeLine("", message);
+    }
+
+    /**
+     * Writes out all buffered output right away, e.g. before blocking or exiting
+     */
+    public void flush() {
+        try {
+            cliOutput.flush();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
     }
 
     /**
@@ -69,4 +172,31 @@ public class Ui {
         }
     }
 
+    /**
+     * Renders a line into the output buffer, which writes out a chunk whenever it fills up
+     *
+     * @param prefix The text before the message
+     * @param message The message
+     */
+    private void writeLine(String prefix, String message) {
+        try {
+            cliOutput.write(prefix);
+            cliOutput.write(String.valueOf(message));
+            cliOutput.write(System.lineSeparator());
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Returns a buffered writer to the standard output. It writes to the file descriptor
+     * directly, as System.out would flush again after every line.
+     *
+     * @param bufferSize The size of the buffer, in characters
+     * @return The writer
+     */
+    private static Writer createOutput(int bufferSize) {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), bufferSize);
+    }
+
 }
@@ -0,0 +1,61 @@
+package notjippity.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Represents resolving a typed command string to its command
+ */
+@Name("notjippity.CommandDispatch")
+@Label("Command Dispatch")
+@Category("NotJippity")
+@Description("Resolving a typed command string to its command")
+@StackTrace(false)
+public class CommandDispatchEvent extends Event {
+
+    @Label("Input")
+    @Description("The command string as typed")
+    private String input;
+
+    @Label("Command")
+    @Description("The resolved command, or null if there was no single match")
+    private String command;
+
+    /**
+     * Starts timing the dispatch of the given command string, if events are being recorded
+     *
+     * @param input The command string as typed
+     * @return The started event, or null if events are not being recorded
+     */
+    public static CommandDispatchEvent begin(String input) {
+        if (!EventRecording.isEnabled()) {
+            return null;
+        }
+        CommandDispatchEvent event = new CommandDispatchEvent();
+        event.input = input;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the given event
+     *
+     * @param event The event returned by begin(), or null if events were not being recorded
+     * @param command The name of the resolved command, or null if there was no single match
+     */
+    public static void end(CommandDispatchEvent event, String command) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.commit();
+        }
+    }
+
+}
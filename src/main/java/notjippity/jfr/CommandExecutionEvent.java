@@ -0,0 +1,75 @@
+package notjippity.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Represents the execution of a single command
+ */
+@Name("notjippity.CommandExecution")
+@Label("Command Execution")
+@Category("NotJippity")
+@Description("Executing a single command")
+@StackTrace(false)
+public class CommandExecutionEvent extends Event {
+
+    /** The command completed */
+    public static final String OUTCOME_OK = "ok";
+    /** The command refused its input and sent back an error message */
+    public static final String OUTCOME_REJECTED = "rejected";
+    /** The command failed in a way which terminates the bot */
+    public static final String OUTCOME_FATAL = "fatal";
+    /** The command threw an unexpected exception */
+    public static final String OUTCOME_FAILED = "failed";
+
+    @Label("Command")
+    private String command;
+
+    @Label("Argument Length")
+    @Description("The number of characters after the command string")
+    private int argLength;
+
+    @Label("Outcome")
+    @Description("ok, rejected, fatal or failed")
+    private String outcome;
+
+    /**
+     * Starts timing the execution of the given command, if events are being recorded
+     *
+     * @param command The name of the command
+     * @param argLength The length of the string of arguments, or 0 if there are none
+     * @return The started event, or null if events are not being recorded
+     */
+    public static CommandExecutionEvent begin(String command, int argLength) {
+        if (!EventRecording.isEnabled()) {
+            return null;
+        }
+        CommandExecutionEvent event = new CommandExecutionEvent();
+        event.command = command;
+        event.argLength = argLength;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the given event
+     *
+     * @param event The event returned by begin(), or null if events were not being recorded
+     * @param outcome One of the OUTCOME constants
+     */
+    public static void end(CommandExecutionEvent event, String outcome) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package notjippity.jfr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Records the bot's events, along with the JDK events needed to tell why a session stalled, into
+ * a Java Flight Recorder file. The settings are packaged as notjippity.jfc next to this class, and
+ * can also be used with -XX:StartFlightRecording or JDK Mission Control.
+ * <p>
+ * Events are only created while a recording is running. Otherwise, emitting one costs a single
+ * field read, so the call sites can stay in place.
+ */
+public class EventRecording {
+
+    private static final String SETTINGS_RESOURCE = "notjippity.jfc";
+
+    private static volatile boolean isEnabled;
+
+    private final Recording recording;
+    private final Path destination;
+
+    /**
+     * Returns a new EventRecording instance
+     *
+     * @param recording The running recording
+     * @param destination The file the recording is written to
+     */
+    private EventRecording(Recording recording, Path destination) {
+        this.recording = recording;
+        this.destination = destination;
+    }
+
+    /**
+     * Checks if the bot's events are being recorded
+     *
+     * @return True if a recording is running
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Starts recording with the packaged settings. The recording is written to the given file
+     * when stopped, or when the JVM exits before that.
+     *
+     * @param destination The file to write the recording to
+     * @return The running recording
+     * @throws IOException If the settings cannot be read or the file cannot be written
+     * @throws IllegalStateException If the JVM does not support Flight Recorder
+     */
+    public static EventRecording start(Path destination) throws IOException, IllegalStateException {
+        Configuration configuration;
+        try (InputStream settings = EventRecording.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (settings == null) {
+                throw new IOException("The " + SETTINGS_RESOURCE + " settings are missing");
+            }
+            try (Reader reader = new InputStreamReader(settings, StandardCharsets.UTF_8)) {
+                configuration = Configuration.create(reader);
+            }
+        } catch (ParseException exception) {
+            throw new IOException("The " + SETTINGS_RESOURCE + " settings are invalid: " + exception.getMessage());
+        }
+
+        Recording recording = new Recording(configuration);
+        recording.setName("NotJippity");
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.setDumpOnExit(true);
+        recording.start();
+        isEnabled = true;
+        return new EventRecording(recording, destination);
+    }
+
+    /**
+     * Returns the file the recording is written to
+     *
+     * @return The file
+     */
+    public Path getDestination() {
+        return destination;
+    }
+
+    /**
+     * Stops recording and writes the recording to its file
+     */
+    public void stop() {
+        isEnabled = false;
+        recording.stop();
+        recording.close();
+    }
+
+}
@@ -0,0 +1,56 @@
+package notjippity.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Represents a stored record which could not be parsed
+ */
+@Name("notjippity.ParseFailure")
+@Label("Parse Failure")
+@Category("NotJippity")
+@Description("A stored record which could not be parsed")
+public class ParseFailureEvent extends Event {
+
+    /** A line of a data file in the legacy text format */
+    public static final String SOURCE_TEXT_LINE = "text line";
+    /** A record of a data file in the binary format */
+    public static final String SOURCE_BINARY_RECORD = "binary record";
+    /** A journal record */
+    public static final String SOURCE_JOURNAL_RECORD = "journal record";
+
+    @Label("Source")
+    @Description("text line, binary record or journal record")
+    private String source;
+
+    @Label("Position")
+    @Description("The line or record number within its file, 1-indexed")
+    private long position;
+
+    @Label("Message")
+    private String message;
+
+    /**
+     * Records the given failure, if events are being recorded
+     *
+     * @param source One of the SOURCE constants
+     * @param position The line or record number within its file, 1-indexed
+     * @param message The reason the record could not be parsed
+     */
+    public static void report(String source, long position, String message) {
+        if (!EventRecording.isEnabled()) {
+            return;
+        }
+        ParseFailureEvent event = new ParseFailureEvent();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.position = position;
+            event.message = message;
+            event.commit();
+        }
+    }
+
+}
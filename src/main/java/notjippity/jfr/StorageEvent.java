@@ -0,0 +1,82 @@
+package notjippity.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Represents preparing, loading or saving the data file
+ */
+@Name("notjippity.Storage")
+@Label("Storage")
+@Category("NotJippity")
+@Description("Preparing, loading or saving the data file")
+@StackTrace(false)
+public class StorageEvent extends Event {
+
+    /** Preparing the data file on startup */
+    public static final String OPERATION_INIT = "init";
+    /** Loading the data file and replaying the journal */
+    public static final String OPERATION_LOAD = "load";
+    /** Writing the data file, on exit or by a checkpoint */
+    public static final String OPERATION_SAVE = "save";
+
+    @Label("Operation")
+    @Description("init, load or save")
+    private String operation;
+
+    @Label("Size")
+    @Description("The size of the data file")
+    @DataAmount
+    private long bytes;
+
+    @Label("Records")
+    @Description("The number of tasks read from or written to the data file")
+    private long records;
+
+    @Label("Journal Records")
+    @Description("The number of journal records replayed while loading")
+    private long journalRecords;
+
+    /**
+     * Starts timing the given operation, if events are being recorded
+     *
+     * @param operation One of the OPERATION constants
+     * @return The started event, or null if events are not being recorded
+     */
+    public static StorageEvent begin(String operation) {
+        if (!EventRecording.isEnabled()) {
+            return null;
+        }
+        StorageEvent event = new StorageEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the given event
+     *
+     * @param event The event returned by begin(), or null if events were not being recorded
+     * @param bytes The size of the data file
+     * @param records The number of tasks read or written
+     * @param journalRecords The number of journal records replayed
+     */
+    public static void end(StorageEvent event, long bytes, long records, long journalRecords) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.records = records;
+            event.journalRecords = journalRecords;
+            event.commit();
+        }
+    }
+
+}
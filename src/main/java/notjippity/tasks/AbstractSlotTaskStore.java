@@ -0,0 +1,255 @@
+package notjippity.tasks;
+
+import java.util.Arrays;
+
+/**
+ * Stores entries in slots in list order, leaving subclasses to decide how the tasks themselves
+ * are held in each slot. Removing an entry leaves a tombstone in its slot, and a Fenwick tree over
+ * the live slots maps list indices to slots in logarithmic time, or in constant time while there
+ * are no tombstones. The slots are compacted once more than half of them are tombstones, which
+ * moves the live entries and so invalidates their handles.
+ */
+abstract class AbstractSlotTaskStore implements TaskStore {
+
+    private static final long TOMBSTONE = 0;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_COMPACTION_SLOTS = 64;
+
+    private long[] ids;
+    private int[] recordIndices;
+    private int[] liveCounts;
+    private final IdIndex idIndex;
+    private int slotCount;
+    private int size;
+
+    /**
+     * Initialises the slots of a new store
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     */
+    AbstractSlotTaskStore(int expectedSize) {
+        int capacity = getInitialCapacity(expectedSize);
+        ids = new long[capacity];
+        recordIndices = new int[capacity];
+        liveCounts = new int[capacity + 1];
+        idIndex = new IdIndex(expectedSize);
+    }
+
+    /**
+     * Returns the number of slots a new store starts with, which subclasses size their own
+     * per-slot storage to
+     *
+     * @param expectedSize The number of entries expected to be stored
+     * @return The number of slots
+     */
+    static int getInitialCapacity(int expectedSize) {
+        return Math.max(expectedSize, MIN_CAPACITY);
+    }
+
+    /**
+     * Stores the given task in the given slot, which is either empty or holds an undecoded entry
+     *
+     * @param slot The slot
+     * @param task The task, or null if it has not been decoded yet
+     */
+    abstract void putTask(int slot, Task task);
+
+    /**
+     * Moves the task held in one slot to another, empty slot during compaction
+     *
+     * @param from The slot to move the task out of
+     * @param to The slot to move the task into
+     */
+    abstract void moveTask(int from, int to);
+
+    /**
+     * Empties the given range of slots, whose entries were removed or moved elsewhere
+     *
+     * @param from The first slot, inclusive
+     * @param to The last slot, exclusive
+     */
+    abstract void clearTasks(int from, int to);
+
+    /**
+     * Resizes the per-slot storage of the subclass to the given number of slots, keeping the
+     * tasks held so far
+     *
+     * @param capacity The new number of slots
+     */
+    abstract void resizeTasks(int capacity);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int append(long id, Task task, int recordIndex) {
+        if (slotCount == ids.length) {
+            grow();
+        }
+
+        int slot = slotCount++;
+        putTask(slot, task);
+        ids[slot] = id;
+        recordIndices[slot] = recordIndex;
+        idIndex.put(id, slot);
+        updateLiveCount(slot, 1);
+        size++;
+        return slot;
+    }
+
+    @Override
+    public void remove(int slot) {
+        idIndex.remove(ids[slot]);
+        clearTasks(slot, slot + 1);
+        ids[slot] = TOMBSTONE;
+        updateLiveCount(slot, -1);
+        size--;
+
+        if (slotCount >= MIN_COMPACTION_SLOTS && size < slotCount / 2) {
+            compact();
+        }
+    }
+
+    @Override
+    public int getHandle(int index) {
+        if (size == slotCount) {
+            return index;
+        }
+
+        // Descend the Fenwick tree to the slot holding the (index + 1)th live entry
+        int position = 0, remaining = index + 1;
+        for (int step = Integer.highestOneBit(ids.length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= ids.length && liveCounts[next] < remaining) {
+                position = next;
+                remaining -= liveCounts[next];
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public int getHandleById(long id) {
+        int slot = idIndex.get(id);
+        return slot < 0 ? NONE : slot;
+    }
+
+    @Override
+    public int indexOf(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += liveCounts[i];
+        }
+        return count;
+    }
+
+    @Override
+    public int first() {
+        return next(-1);
+    }
+
+    @Override
+    public int next(int slot) {
+        for (int i = slot + 1; i < slotCount; i++) {
+            if (ids[i] != TOMBSTONE) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    @Override
+    public long getId(int slot) {
+        return ids[slot];
+    }
+
+    @Override
+    public int getRecordIndex(int slot) {
+        return recordIndices[slot];
+    }
+
+    /**
+     * Returns the number of slots in use, live or tombstones
+     *
+     * @return The number of slots
+     */
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Checks if the given slot holds a removed entry
+     *
+     * @param slot The slot, which must be in use
+     * @return True if the entry was removed
+     */
+    boolean isTombstone(int slot) {
+        return ids[slot] == TOMBSTONE;
+    }
+
+    /**
+     * Adjusts the live count of the given slot in the Fenwick tree
+     *
+     * @param slot The slot
+     * @param delta 1 if the slot became live, -1 if it became a tombstone
+     */
+    private void updateLiveCount(int slot, int delta) {
+        for (int i = slot + 1; i <= ids.length; i += i & -i) {
+            liveCounts[i] += delta;
+        }
+    }
+
+    /**
+     * Rebuilds the Fenwick tree over the current capacity in linear time
+     */
+    private void rebuildLiveCounts() {
+        liveCounts = new int[ids.length + 1];
+        for (int i = 1; i <= ids.length; i++) {
+            if (i <= slotCount && ids[i - 1] != TOMBSTONE) {
+                liveCounts[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent <= ids.length) {
+                liveCounts[parent] += liveCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Doubles the capacity of the slots
+     */
+    private void grow() {
+        int capacity = ids.length * 2;
+        resizeTasks(capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        recordIndices = Arrays.copyOf(recordIndices, capacity);
+        rebuildLiveCounts();
+    }
+
+    /**
+     * Moves all live entries to the front of the slots, dropping the tombstones
+     */
+    private void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] == TOMBSTONE) {
+                continue;
+            }
+            if (target != slot) {
+                moveTask(slot, target);
+                ids[target] = ids[slot];
+                recordIndices[target] = recordIndices[slot];
+                idIndex.put(ids[target], target);
+            }
+            target++;
+        }
+
+        clearTasks(target, slotCount);
+        Arrays.fill(ids, target, slotCount, TOMBSTONE);
+        slotCount = target;
+        rebuildLiveCounts();
+    }
+
+}
@@ -0,0 +1,249 @@
+package notjippity.tasks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Stores tasks in slots as columns of primitives rather than as objects: a type byte per slot, a
+ * bit per slot for the completed status, the dates in epoch minutes and the names as UTF-8 in a
+ * shared byte arena. A Task is only created when an entry is accessed, e.g. to be displayed, and
+ * every access creates a new one, so changes to it must be handed back through setCompleted().
+ * <p>
+ * A deadline costs about 25 bytes of columns plus its name, against about 140 bytes plus its name
+ * as a Deadline object with its String and LocalDateTime; the slots themselves cost the same as in
+ * a SlotTaskStore. Dates are kept to the minute, as they are entered. The names of removed tasks
+ * stay in the arena until more than half of it is unused, when it is compacted.
+ * <p>
+ * Lazily loaded entries are decoded under the tracker's read lock, so decoding may write the
+ * columns of one slot while other readers read those of other slots. The type of a slot is
+ * written after the rest of its columns with release semantics and read before them with acquire
+ * semantics, and the arena is only ever replaced through a volatile field, so readers never see a
+ * slot half written.
+ */
+class ColumnarTaskStore extends AbstractSlotTaskStore {
+
+    private static final byte TYPE_UNDECODED = 0;
+    private static final byte TYPE_TODO = 1;
+    private static final byte TYPE_DEADLINE = 2;
+    private static final byte TYPE_EVENT = 3;
+
+    private static final int EXPECTED_NAME_BYTES = 16;
+    private static final int MIN_ARENA_SIZE = 1024;
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+    private static final VarHandle TYPES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private byte[] types;
+    private BitSet completed;
+    // The deadline of a deadline or the start of an event, as only events need two dates
+    private long[] startMinutes;
+    private long[] endMinutes;
+    private int[] nameOffsets;
+    private int[] nameLengths;
+
+    private volatile byte[] arena;
+    private int arenaSize;
+    private int liveNameBytes;
+
+    /**
+     * Returns a new ColumnarTaskStore instance
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     */
+    ColumnarTaskStore(int expectedSize) {
+        super(expectedSize);
+        int capacity = getInitialCapacity(expectedSize);
+        types = new byte[capacity];
+        // Sized up front, so that setting a bit while decoding under the read lock never resizes it
+        completed = new BitSet(capacity);
+        startMinutes = new long[capacity];
+        endMinutes = new long[capacity];
+        nameOffsets = new int[capacity];
+        nameLengths = new int[capacity];
+        arena = new byte[(int) Math.min(Math.max((long) capacity * EXPECTED_NAME_BYTES, MIN_ARENA_SIZE),
+                MAX_ARENA_SIZE)];
+    }
+
+    @Override
+    public Task getTask(int slot) {
+        byte type = (byte) TYPES.getAcquire(types, slot);
+        if (type == TYPE_UNDECODED) {
+            return null;
+        }
+
+        String name = new String(arena, nameOffsets[slot], nameLengths[slot], StandardCharsets.UTF_8);
+        Task task;
+        switch (type) {
+        case TYPE_TODO:
+            task = new ToDo(name);
+            break;
+        case TYPE_DEADLINE:
+            task = new Deadline(name, fromEpochMinutes(startMinutes[slot]));
+            break;
+        default:
+            task = new Event(name, fromEpochMinutes(startMinutes[slot]), fromEpochMinutes(endMinutes[slot]));
+            break;
+        }
+        if (completed.get(slot)) {
+            task.complete();
+        }
+        return task;
+    }
+
+    @Override
+    public void setTask(int slot, Task task) {
+        putTask(slot, task);
+    }
+
+    @Override
+    public void setCompleted(int slot, boolean isCompleted) {
+        completed.set(slot, isCompleted);
+    }
+
+    @Override
+    void putTask(int slot, Task task) {
+        if (task == null) {
+            return;
+        }
+        if (types[slot] != TYPE_UNDECODED) {
+            liveNameBytes -= nameLengths[slot];
+        }
+
+        byte type;
+        if (task instanceof Deadline) {
+            type = TYPE_DEADLINE;
+            startMinutes[slot] = toEpochMinutes(((Deadline) task).getByDateTime());
+        } else if (task instanceof Event) {
+            type = TYPE_EVENT;
+            startMinutes[slot] = toEpochMinutes(((Event) task).getFromDateTime());
+            endMinutes[slot] = toEpochMinutes(((Event) task).getToDateTime());
+        } else {
+            type = TYPE_TODO;
+        }
+
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        int offset = allocateName(name.length);
+        System.arraycopy(name, 0, arena, offset, name.length);
+        nameOffsets[slot] = offset;
+        nameLengths[slot] = name.length;
+        completed.set(slot, task.isCompleted());
+        TYPES.setRelease(types, slot, type);
+    }
+
+    @Override
+    void moveTask(int from, int to) {
+        types[to] = types[from];
+        completed.set(to, completed.get(from));
+        startMinutes[to] = startMinutes[from];
+        endMinutes[to] = endMinutes[from];
+        nameOffsets[to] = nameOffsets[from];
+        nameLengths[to] = nameLengths[from];
+        // The name now belongs to the new slot, so clearing the old one must not count it as unused
+        types[from] = TYPE_UNDECODED;
+    }
+
+    @Override
+    void clearTasks(int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            if (types[slot] != TYPE_UNDECODED) {
+                liveNameBytes -= nameLengths[slot];
+                types[slot] = TYPE_UNDECODED;
+            }
+        }
+        completed.clear(from, to);
+
+        if (arenaSize >= MIN_ARENA_SIZE && liveNameBytes < arenaSize / 2) {
+            compactArena();
+        }
+    }
+
+    @Override
+    void resizeTasks(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        BitSet resized = new BitSet(capacity);
+        resized.or(completed);
+        completed = resized;
+        startMinutes = Arrays.copyOf(startMinutes, capacity);
+        endMinutes = Arrays.copyOf(endMinutes, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+    }
+
+    /**
+     * Returns the number of bytes of the name arena in use, including the names of removed tasks
+     * which have not been compacted away yet
+     *
+     * @return The number of bytes
+     */
+    int getArenaSize() {
+        return arenaSize;
+    }
+
+    /**
+     * Reserves space at the end of the name arena, growing it if needed
+     *
+     * @param length The number of bytes to reserve
+     * @return The offset of the reserved space
+     * @throws IllegalStateException If the arena cannot grow any further
+     */
+    private int allocateName(int length) throws IllegalStateException {
+        byte[] current = arena;
+        if (length > current.length - arenaSize) {
+            if (length > MAX_ARENA_SIZE - arenaSize) {
+                throw new IllegalStateException("The task names have outgrown the name arena");
+            }
+            long capacity = Math.max((long) current.length * 2, (long) arenaSize + length);
+            arena = Arrays.copyOf(current, (int) Math.min(capacity, MAX_ARENA_SIZE));
+        }
+
+        int offset = arenaSize;
+        arenaSize += length;
+        liveNameBytes += length;
+        return offset;
+    }
+
+    /**
+     * Copies the names of all live tasks to a new arena in slot order, dropping those of removed
+     * tasks. Must be called while holding the write lock.
+     */
+    private void compactArena() {
+        byte[] current = arena;
+        byte[] compacted = new byte[(int) Math.min(Math.max((long) liveNameBytes * 2, MIN_ARENA_SIZE), MAX_ARENA_SIZE)];
+        int size = 0;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (types[slot] == TYPE_UNDECODED) {
+                continue;
+            }
+            System.arraycopy(current, nameOffsets[slot], compacted, size, nameLengths[slot]);
+            nameOffsets[slot] = size;
+            size += nameLengths[slot];
+        }
+        arenaSize = size;
+        arena = compacted;
+    }
+
+    /**
+     * Returns the given date and time in minutes since the epoch, as if it were in UTC
+     *
+     * @param dateTime The date and time
+     * @return The number of minutes
+     */
+    private static long toEpochMinutes(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Returns the date and time the given number of minutes since the epoch, as if it were in UTC
+     *
+     * @param epochMinutes The number of minutes
+     * @return The date and time
+     */
+    private static LocalDateTime fromEpochMinutes(long epochMinutes) {
+        return LocalDateTime.ofEpochSecond(epochMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,260 @@
+package notjippity.tasks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Indexes deadlines and events by the days they fall on, so the tasks on a given day can be found
+ * in O(log n + k) time rather than by scanning the whole list. Tasks are referred to by their IDs.
+ * <p>
+ * Deadlines are kept in a sorted map keyed by epoch day. Events are kept in an interval tree: a
+ * treap ordered by start day, where every node tracks the latest end day within its subtree, so
+ * subtrees ending before the queried day can be skipped.
+ */
+class DateIndex {
+
+    private final TreeMap<Long, Set<Long>> deadlines = new TreeMap<>();
+    private EventNode eventRoot;
+    private int seed = 0x2545F491;
+
+    /**
+     * Represents an event in the interval tree, covering the days from start to end inclusive
+     */
+    private static class EventNode {
+
+        private final long start;
+        private final long end;
+        private final long id;
+        private final int priority;
+
+        private long maxEnd;
+        private EventNode left;
+        private EventNode right;
+
+        private EventNode(long start, long end, long id, int priority) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.priority = priority;
+            maxEnd = end;
+        }
+
+    }
+
+    /**
+     * Adds the given task to the index if it is a deadline or an event
+     *
+     * @param id The ID of the task
+     * @param task The task
+     */
+    void add(long id, Task task) {
+        if (task instanceof Deadline deadline) {
+            long day = deadline.getByDateTime().toLocalDate().toEpochDay();
+            deadlines.computeIfAbsent(day, key -> new HashSet<>()).add(id);
+        } else if (task instanceof Event event) {
+            long from = event.getFromDateTime().toLocalDate().toEpochDay();
+            long to = event.getToDateTime().toLocalDate().toEpochDay();
+            if (from <= to) {
+                eventRoot = insert(eventRoot, new EventNode(from, to, id, nextPriority()));
+            } else {
+                // An event ending before it starts only falls on its two end days
+                eventRoot = insert(eventRoot, new EventNode(from, from, id, nextPriority()));
+                eventRoot = insert(eventRoot, new EventNode(to, to, id, nextPriority()));
+            }
+        }
+    }
+
+    /**
+     * Removes the given task from the index if it is a deadline or an event
+     *
+     * @param id The ID of the task
+     * @param task The task
+     */
+    void remove(long id, Task task) {
+        if (task instanceof Deadline deadline) {
+            long day = deadline.getByDateTime().toLocalDate().toEpochDay();
+            Set<Long> ids = deadlines.get(day);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                deadlines.remove(day);
+            }
+        } else if (task instanceof Event event) {
+            long from = event.getFromDateTime().toLocalDate().toEpochDay();
+            long to = event.getToDateTime().toLocalDate().toEpochDay();
+            eventRoot = remove(eventRoot, from, id);
+            if (to < from) {
+                eventRoot = remove(eventRoot, to, id);
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of all deadlines and events falling on the given day, in no particular order
+     *
+     * @param day The day, as an epoch day
+     * @return The task IDs
+     */
+    List<Long> getIds(long day) {
+        List<Long> ids = new ArrayList<>(deadlines.getOrDefault(day, Set.of()));
+        collectEvents(eventRoot, day, ids);
+        return ids;
+    }
+
+    /**
+     * Collects the IDs of the events in the given subtree which cover the given day
+     *
+     * @param node The root of the subtree
+     * @param day The day, as an epoch day
+     * @param ids The list to collect into
+     */
+    private static void collectEvents(EventNode node, long day, List<Long> ids) {
+        while (node != null && node.maxEnd >= day) {
+            collectEvents(node.left, day, ids);
+            if (node.start > day) {
+                // Every event further right starts later still
+                return;
+            }
+            if (node.end >= day) {
+                ids.add(node.id);
+            }
+            node = node.right;
+        }
+    }
+
+    /**
+     * Inserts the given node into the given subtree
+     *
+     * @param node The root of the subtree
+     * @param added The node to insert
+     * @return The new root of the subtree
+     */
+    private static EventNode insert(EventNode node, EventNode added) {
+        if (node == null) {
+            return added;
+        }
+
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Removes the node with the given key from the given subtree, if present
+     *
+     * @param node The root of the subtree
+     * @param start The start day of the node
+     * @param id The task ID of the node
+     * @return The new root of the subtree
+     */
+    private static EventNode remove(EventNode node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = compare(start, id, node);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        } else if (comparison < 0) {
+            node.left = remove(node.left, start, id);
+        } else {
+            node.right = remove(node.right, start, id);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Merges two subtrees, where every node of the first precedes every node of the second
+     *
+     * @param first The root of the first subtree
+     * @param second The root of the second subtree
+     * @return The root of the merged subtree
+     */
+    private static EventNode merge(EventNode first, EventNode second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            update(first);
+            return first;
+        }
+        second.left = merge(first, second.left);
+        update(second);
+        return second;
+    }
+
+    private static EventNode rotateRight(EventNode node) {
+        EventNode left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        return left;
+    }
+
+    private static EventNode rotateLeft(EventNode node) {
+        EventNode right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        return right;
+    }
+
+    /**
+     * Recomputes the latest end day within the subtree of the given node from its children
+     *
+     * @param node The node
+     */
+    private static void update(EventNode node) {
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    /**
+     * Compares the given key against the key of the given node, ordering by start day then task ID
+     *
+     * @param start The start day
+     * @param id The task ID
+     * @param node The node
+     * @return A negative number, zero or a positive number if the key precedes, equals or follows
+     */
+    private static int compare(long start, long id, EventNode node) {
+        int comparison = Long.compare(start, node.start);
+        return comparison != 0 ? comparison : Long.compare(id, node.id);
+    }
+
+    /**
+     * Returns a random priority for a new node, which keeps the tree balanced
+     *
+     * @return The priority
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+}
@@ -2,7 +2,6 @@ package notjippity.tasks;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.chrono.ChronoLocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
@@ -16,7 +15,7 @@ public class Deadline extends Task {
     public static final String DATE_FORMAT = "dd/MM/yyyy HHmm";
     public static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
 
-    private LocalDateTime byDateTime;
+    private final LocalDateTime byDateTime;
 
     /**
      * Returns a new Deadline instance
@@ -47,7 +46,16 @@ public class Deadline extends Task {
      * @return True if the deadline matches the given date
      */
     public boolean hasDate(LocalDate date) {
-        return date.isEqual(ChronoLocalDate.from(byDateTime));
+        return date.isEqual(byDateTime.toLocalDate());
+    }
+
+    /**
+     * Returns the deadline for this task
+     *
+     * @return The deadline
+     */
+    public LocalDateTime getByDateTime() {
+        return byDateTime;
     }
 
     @Override
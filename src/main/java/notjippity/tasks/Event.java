@@ -2,7 +2,6 @@ package notjippity.tasks;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.chrono.ChronoLocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
@@ -16,7 +15,7 @@ public class Event extends Task {
     public static final String FORMAT_DATE = "dd/MM/yyyy HHmm";
     public static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern(FORMAT_DATE);
 
-    private LocalDateTime fromDateTime, toDateTime;
+    private final LocalDateTime fromDateTime, toDateTime;
 
     /**
      * Returns a new Event instance
@@ -51,11 +50,29 @@ public class Event extends Task {
      * @return True if any date in the date range matches
      */
     public boolean hasDate(LocalDate date) {
-        ChronoLocalDate fromDate = ChronoLocalDate.from(fromDateTime),
-                toDate = ChronoLocalDate.from(toDateTime);
+        LocalDate fromDate = fromDateTime.toLocalDate(),
+                toDate = toDateTime.toLocalDate();
         return date.isEqual(fromDate) || date.isEqual(toDate) || (date.isAfter(fromDate) && date.isBefore(toDate));
     }
 
+    /**
+     * Returns the DateTime from which this event starts
+     *
+     * @return The start DateTime
+     */
+    public LocalDateTime getFromDateTime() {
+        return fromDateTime;
+    }
+
+    /**
+     * Returns the DateTime at which this event ends
+     *
+     * @return The end DateTime
+     */
+    public LocalDateTime getToDateTime() {
+        return toDateTime;
+    }
+
     @Override
     public String getTypeIcon() {
         return "E";
@@ -0,0 +1,130 @@
+package notjippity.tasks;
+
+/**
+ * Maps task IDs to their slots in the task tracker. Keys and values are kept in primitive arrays
+ * using open addressing with linear probing, so lookups neither box the ID nor allocate.
+ * Task IDs start from 1, which leaves 0 free to mark an empty entry.
+ */
+class IdIndex {
+
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Returns a new IdIndex instance
+     *
+     * @param expectedSize The number of IDs expected to be stored, to avoid resizing
+     */
+    IdIndex(int expectedSize) {
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) * 2));
+    }
+
+    /**
+     * Returns the slot mapped to the given ID
+     *
+     * @param id The task ID
+     * @return The slot of the task, or -1 if the ID is not mapped
+     */
+    int get(long id) {
+        for (int i = indexFor(id); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return values[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the given ID to the given slot, replacing any existing mapping
+     *
+     * @param id The task ID, which must be positive
+     * @param slot The slot of the task
+     */
+    void put(long id, int slot) {
+        int i = indexFor(id);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == id) {
+                values[i] = slot;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = id;
+        values[i] = slot;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Removes the mapping of the given ID, if any
+     *
+     * @param id The task ID
+     */
+    void remove(long id) {
+        int i = indexFor(id);
+        while (keys[i] != id) {
+            if (keys[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Shift back any following entry which would no longer be reachable past the gap
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int home = indexFor(keys[j]);
+            boolean isReachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!isReachable) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Returns the number of mapped IDs
+     *
+     * @return The number of mapped IDs
+     */
+    int size() {
+        return size;
+    }
+
+    private int indexFor(long id) {
+        // Fibonacci hashing spreads sequential IDs across the table
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+}
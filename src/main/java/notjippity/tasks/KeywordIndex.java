@@ -0,0 +1,145 @@
+package notjippity.tasks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Indexes task names by their trigrams, i.e. every run of three characters in the lower-cased
+ * name, so keyword searches only have to check the tasks containing every trigram of the keyword.
+ * Tasks are referred to by their IDs, and each trigram maps to a posting list of IDs in ascending
+ * order.
+ * <p>
+ * Removed tasks are left in the posting lists, since IDs are never given out again; callers skip
+ * IDs which no longer exist, and rebuild the index once it has become mostly stale.
+ */
+class KeywordIndex {
+
+    /** The number of characters in each indexed run */
+    static final int GRAM_LENGTH = 3;
+
+    private static final int MIN_STALE_COUNT = 64;
+    private static final long[] NO_IDS = new long[0];
+
+    private final HashMap<Long, Postings> postings = new HashMap<>();
+    private int staleCount;
+
+    /**
+     * Represents the IDs of the tasks whose names contain a trigram, in ascending order
+     */
+    private static class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+
+        /**
+         * Adds the given ID, unless it is already present
+         *
+         * @param id The task ID
+         */
+        private void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                // Only replayed tasks can arrive out of order
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, id);
+                return;
+            }
+            insert(size, id);
+        }
+
+        private void insert(int position, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+    }
+
+    /**
+     * Adds the name of the given task to the index
+     *
+     * @param id The ID of the task
+     * @param task The task
+     */
+    void add(long id, Task task) {
+        String name = task.getName().toLowerCase();
+        for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+            postings.computeIfAbsent(getGram(name, i), key -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Records that a task was removed, leaving its ID behind in the posting lists
+     */
+    void remove() {
+        staleCount++;
+    }
+
+    /**
+     * Checks if most IDs in the index belong to removed tasks, in which case it should be rebuilt
+     *
+     * @param size The number of tasks remaining
+     * @return True if the index should be rebuilt
+     */
+    boolean isStale(int size) {
+        return staleCount > Math.max(size, MIN_STALE_COUNT);
+    }
+
+    /**
+     * Returns the IDs of all tasks whose names contain every trigram of the given keyword, which
+     * includes every task whose name contains the keyword. The IDs may include removed tasks.
+     *
+     * @param keyword The lower-cased keyword, at least GRAM_LENGTH characters long
+     * @return The candidate task IDs, in ascending order
+     */
+    long[] getCandidateIds(String keyword) {
+        assert keyword.length() >= GRAM_LENGTH : "Keyword is too short to be looked up";
+
+        // Look up the posting list of every trigram, intersecting from the shortest list
+        Postings[] lists = new Postings[keyword.length() - GRAM_LENGTH + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(getGram(keyword, i));
+            if (lists[i] == null) {
+                return NO_IDS;
+            }
+        }
+        Arrays.sort(lists, (first, second) -> Integer.compare(first.size, second.size));
+
+        long[] ids = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int count = ids.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            if (lists[i] == lists[i - 1]) {
+                continue;
+            }
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                if (lists[i].contains(ids[j])) {
+                    ids[kept++] = ids[j];
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Packs the characters of the trigram starting at the given position into a key
+     *
+     * @param text The text
+     * @param start The position of the first character
+     * @return The key
+     */
+    private static long getGram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+}
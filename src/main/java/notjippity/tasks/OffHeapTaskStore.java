@@ -0,0 +1,556 @@
+package notjippity.tasks;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Stores tasks outside the heap, in two direct buffers: a fixed-width header per slot, and a name
+ * arena holding the names. The slots themselves are kept in primitive arrays as in every
+ * AbstractSlotTaskStore, so the heap holds no object per task and garbage collection takes as
+ * long with millions of tasks as with a few. As in ColumnarTaskStore, a Task is only created when
+ * an entry is accessed, and every access creates a new one.
+ * <p>
+ * Each header is 32 bytes, big-endian:
+ * <pre>
+ * 0  : u8 type (bits 0-1: undecoded, todo, deadline, event) and completion (bit 2) | 3 bytes reserved
+ * 4  : i32 name offset in the arena | i32 name length | 4 bytes reserved
+ * 16 : i64 deadline or event start | i64 event end  (minutes since the epoch, UTC)
+ * </pre>
+ * Names are stored as UTF-8 in blocks of 8 to 128 bytes in steps of 8, or a power of two beyond.
+ * The blocks of removed names are kept on a free list per block size and handed out again first,
+ * and the arena is compacted once more than half of it is free.
+ * <p>
+ * Both buffers are sized for the expected number of tasks when the store is created, and double
+ * when full by copying their content across in bulk. Each task costs 32 bytes plus its name block
+ * off the heap, and about 40 bytes of primitive arrays on the heap for its slot and ID. A buffer
+ * briefly exists twice while it grows or is compacted. A direct buffer holds at most 2GB, which
+ * caps a store at about 67 million tasks and 2GB of name blocks, and names at 16MB each. The JVM's
+ * direct memory limit, -XX:MaxDirectMemorySize, defaults to the maximum heap size and must cover
+ * both buffers.
+ * <p>
+ * Lazily loaded entries are decoded under the tracker's read lock, so decoding may write the
+ * header of one slot while other readers read those of other slots. A release fence orders the
+ * rest of a header before its type, which an acquire fence orders before the rest when read, and
+ * the name arena is only ever replaced through a volatile field, so readers never see a slot half
+ * written. Buffers are only accessed by absolute index, as their positions would be shared.
+ */
+class OffHeapTaskStore extends AbstractSlotTaskStore {
+
+    private static final int HEADER_BYTES = 32;
+    private static final int FLAGS_OFFSET = 0;
+    private static final int NAME_OFFSET_OFFSET = 4;
+    private static final int NAME_LENGTH_OFFSET = 8;
+    private static final int START_OFFSET = 16;
+    private static final int END_OFFSET = 24;
+
+    private static final int TYPE_UNDECODED = 0;
+    private static final int TYPE_TODO = 1;
+    private static final int TYPE_DEADLINE = 2;
+    private static final int TYPE_EVENT = 3;
+    private static final int TYPE_MASK = 0b11;
+    private static final int COMPLETED_FLAG = 0b100;
+
+    private static final int SMALL_BLOCK_STEP = 8;
+    private static final int SMALL_BLOCK_CLASSES = 16;
+    private static final int MAX_NAME_BYTES = 1 << 24;
+    private static final int BLOCK_CLASSES = SMALL_BLOCK_CLASSES + 24 - 7;
+    private static final int NO_BLOCK = -1;
+
+    private static final int EXPECTED_NAME_BYTES = 24;
+    private static final int MIN_ARENA_SIZE = 1024;
+    private static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE;
+
+    /** Precedes the IDs, headers and names of a dumped store: u32 task count | i64 next ID | u32 name bytes */
+    private static final int DUMP_HEADER_BYTES = 16;
+    private static final int STAGING_BYTES = 64 * 1024;
+
+    private ByteBuffer headers;
+    private volatile ByteBuffer arena;
+    private int arenaSize;
+    private int freeNameBytes;
+    private final int[] freeBlocks = new int[BLOCK_CLASSES];
+
+    /**
+     * Returns a new OffHeapTaskStore instance
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     */
+    OffHeapTaskStore(int expectedSize) {
+        this(expectedSize, (long) expectedSize * EXPECTED_NAME_BYTES);
+    }
+
+    /**
+     * Returns a new OffHeapTaskStore instance with room for the given number of name bytes
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     * @param expectedNameBytes The number of name bytes expected to be stored
+     * @throws IllegalStateException If the expected size is beyond the ceiling
+     */
+    private OffHeapTaskStore(int expectedSize, long expectedNameBytes) throws IllegalStateException {
+        super(expectedSize);
+        headers = allocate((long) getInitialCapacity(expectedSize) * HEADER_BYTES);
+        arena = allocate(Math.max(expectedNameBytes, MIN_ARENA_SIZE));
+        Arrays.fill(freeBlocks, NO_BLOCK);
+    }
+
+    @Override
+    public Task getTask(int slot) {
+        int base = slot * HEADER_BYTES;
+        if ((headers.get(base + FLAGS_OFFSET) & TYPE_MASK) == TYPE_UNDECODED) {
+            return null;
+        }
+        // The arena may have been replaced while decoding this slot, so it is read after its type
+        VarHandle.acquireFence();
+        return readTask(headers, base, arena, 0);
+    }
+
+    @Override
+    public void setTask(int slot, Task task) {
+        putTask(slot, task);
+    }
+
+    @Override
+    public void setCompleted(int slot, boolean isCompleted) {
+        int position = slot * HEADER_BYTES + FLAGS_OFFSET;
+        int flags = headers.get(position);
+        headers.put(position, (byte) (isCompleted ? flags | COMPLETED_FLAG : flags & ~COMPLETED_FLAG));
+    }
+
+    @Override
+    void putTask(int slot, Task task) {
+        if (task == null) {
+            return;
+        }
+        int base = slot * HEADER_BYTES;
+        if ((headers.get(base + FLAGS_OFFSET) & TYPE_MASK) != TYPE_UNDECODED) {
+            freeName(headers.getInt(base + NAME_OFFSET_OFFSET), headers.getInt(base + NAME_LENGTH_OFFSET));
+        }
+
+        int type;
+        if (task instanceof Deadline) {
+            type = TYPE_DEADLINE;
+            headers.putLong(base + START_OFFSET, toEpochMinutes(((Deadline) task).getByDateTime()));
+        } else if (task instanceof Event) {
+            type = TYPE_EVENT;
+            headers.putLong(base + START_OFFSET, toEpochMinutes(((Event) task).getFromDateTime()));
+            headers.putLong(base + END_OFFSET, toEpochMinutes(((Event) task).getToDateTime()));
+        } else {
+            type = TYPE_TODO;
+        }
+
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalStateException("Task names are limited to " + MAX_NAME_BYTES + " bytes");
+        }
+        int offset = allocateName(name.length);
+        arena.put(offset, name);
+        headers.putInt(base + NAME_OFFSET_OFFSET, offset);
+        headers.putInt(base + NAME_LENGTH_OFFSET, name.length);
+
+        VarHandle.releaseFence();
+        headers.put(base + FLAGS_OFFSET, (byte) (type | (task.isCompleted() ? COMPLETED_FLAG : 0)));
+    }
+
+    @Override
+    void moveTask(int from, int to) {
+        headers.put(to * HEADER_BYTES, headers, from * HEADER_BYTES, HEADER_BYTES);
+        // The name now belongs to the new slot, so clearing the old one must not free it
+        headers.put(from * HEADER_BYTES + FLAGS_OFFSET, (byte) TYPE_UNDECODED);
+    }
+
+    @Override
+    void clearTasks(int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            int base = slot * HEADER_BYTES;
+            if ((headers.get(base + FLAGS_OFFSET) & TYPE_MASK) != TYPE_UNDECODED) {
+                freeName(headers.getInt(base + NAME_OFFSET_OFFSET), headers.getInt(base + NAME_LENGTH_OFFSET));
+                headers.put(base + FLAGS_OFFSET, (byte) TYPE_UNDECODED);
+            }
+        }
+
+        if (arenaSize >= MIN_ARENA_SIZE && freeNameBytes > arenaSize / 2) {
+            compactArena();
+        }
+    }
+
+    @Override
+    void resizeTasks(int capacity) {
+        ByteBuffer resized = allocate((long) capacity * HEADER_BYTES);
+        resized.put(0, headers, 0, Math.min(headers.capacity(), resized.capacity()));
+        headers = resized;
+    }
+
+    /**
+     * Returns the number of bytes of the name arena in use, including free blocks
+     *
+     * @return The number of bytes
+     */
+    int getArenaSize() {
+        return arenaSize;
+    }
+
+    /**
+     * Writes every entry to the given channel, in list order: a header with the number of tasks,
+     * the given next task ID and the size of the name arena, followed by the IDs, the headers and
+     * the name arena itself. The headers are written in bulk while there are no removed entries
+     * between them, and the name arena always is, free blocks included, so that names keep their
+     * offsets. Every entry must have been decoded.
+     *
+     * @param channel The channel to write into
+     * @param nextId The ID which the next added task should be given
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void writeTo(WritableByteChannel channel, long nextId) throws IOException {
+        ByteBuffer staging = ByteBuffer.allocate(STAGING_BYTES);
+        staging.putInt(size()).putLong(nextId).putInt(arenaSize);
+        for (int slot = first(); slot != NONE; slot = next(slot)) {
+            if (staging.remaining() < Long.BYTES) {
+                drain(staging, channel);
+            }
+            staging.putLong(getId(slot));
+        }
+        drain(staging, channel);
+
+        if (size() == getSlotCount()) {
+            writeFully(headers.duplicate().position(0).limit(size() * HEADER_BYTES), channel);
+        } else {
+            for (int slot = first(); slot != NONE; slot = next(slot)) {
+                if (staging.remaining() < HEADER_BYTES) {
+                    drain(staging, channel);
+                }
+                staging.put(staging.position(), headers, slot * HEADER_BYTES, HEADER_BYTES);
+                staging.position(staging.position() + HEADER_BYTES);
+            }
+            drain(staging, channel);
+        }
+
+        writeFully(arena.duplicate().position(0).limit(arenaSize), channel);
+    }
+
+    /**
+     * Returns a new store holding the entries written by writeTo(), copying its headers and name
+     * arena across in bulk
+     *
+     * @param dump The written entries, starting at position 0
+     * @return The store
+     * @throws IllegalStateException If the entries are corrupted
+     */
+    static OffHeapTaskStore readFrom(ByteBuffer dump) throws IllegalStateException {
+        int count = getTaskCount(dump);
+        int nameBytes = dump.getInt(12);
+        int headersStart = DUMP_HEADER_BYTES + count * Long.BYTES;
+        int arenaStart = headersStart + count * HEADER_BYTES;
+
+        OffHeapTaskStore store = new OffHeapTaskStore(count, nameBytes);
+        store.headers.put(0, dump, headersStart, count * HEADER_BYTES);
+        store.arena.put(0, dump, arenaStart, nameBytes);
+        store.arenaSize = nameBytes;
+
+        long usedNameBytes = 0;
+        for (int i = 0; i < count; i++) {
+            long id = getTaskId(dump, i);
+            checkHeader(store.headers, i * HEADER_BYTES, nameBytes);
+            if (id <= 0 || store.getHandleById(id) != NONE) {
+                throw new IllegalStateException("Invalid arena; task ID " + id + " is invalid or repeated");
+            }
+            store.append(id, null, NONE);
+            usedNameBytes += getBlockSize(getBlockClass(store.headers.getInt(i * HEADER_BYTES + NAME_LENGTH_OFFSET)));
+        }
+        // Free blocks were written out as they were, but their free lists were not
+        store.freeNameBytes = (int) Math.max(nameBytes - usedNameBytes, 0);
+        return store;
+    }
+
+    /**
+     * Returns the number of tasks in entries written by writeTo(), checking that the entries are
+     * as long as their header says
+     *
+     * @param dump The written entries, starting at position 0
+     * @return The number of tasks
+     * @throws IllegalStateException If the entries are truncated or too long
+     */
+    static int getTaskCount(ByteBuffer dump) throws IllegalStateException {
+        if (dump.limit() < DUMP_HEADER_BYTES) {
+            throw new IllegalStateException("Invalid arena; the header is incomplete");
+        }
+        int count = dump.getInt(0);
+        int nameBytes = dump.getInt(12);
+        if (count < 0 || nameBytes < 0
+                || DUMP_HEADER_BYTES + (long) count * (Long.BYTES + HEADER_BYTES) + nameBytes != dump.limit()) {
+            throw new IllegalStateException("Invalid arena; the length does not match " + count + " tasks");
+        }
+        return count;
+    }
+
+    /**
+     * Returns the next task ID of entries written by writeTo()
+     *
+     * @param dump The written entries, starting at position 0
+     * @return The next task ID
+     */
+    static long getNextId(ByteBuffer dump) {
+        return dump.getLong(4);
+    }
+
+    /**
+     * Returns the ID of a task in entries written by writeTo()
+     *
+     * @param dump The written entries, starting at position 0
+     * @param index The index of the task, 0-indexed
+     * @return The task ID
+     */
+    static long getTaskId(ByteBuffer dump, int index) {
+        return dump.getLong(DUMP_HEADER_BYTES + index * Long.BYTES);
+    }
+
+    /**
+     * Creates a task from entries written by writeTo(), without copying them into a store
+     *
+     * @param dump The written entries, starting at position 0
+     * @param index The index of the task, 0-indexed
+     * @return The task
+     * @throws IllegalStateException If the task's header is corrupted
+     */
+    static Task readTask(ByteBuffer dump, int index) throws IllegalStateException {
+        int count = getTaskCount(dump);
+        int headersStart = DUMP_HEADER_BYTES + count * Long.BYTES;
+        int base = headersStart + index * HEADER_BYTES;
+        checkHeader(dump, base, dump.getInt(12));
+        return readTask(dump, base, dump, headersStart + count * HEADER_BYTES);
+    }
+
+    /**
+     * Creates the task described by the given header
+     *
+     * @param headers The buffer holding the header
+     * @param base The position of the header
+     * @param arena The buffer holding the name arena
+     * @param arenaStart The position of the name arena
+     * @return The task, or null if the entry has not been decoded yet
+     * @throws IllegalStateException If the name is longer than any stored name can be
+     */
+    private static Task readTask(ByteBuffer headers, int base, ByteBuffer arena, int arenaStart)
+            throws IllegalStateException {
+        int flags = headers.get(base + FLAGS_OFFSET);
+        VarHandle.acquireFence();
+        int type = flags & TYPE_MASK;
+        if (type == TYPE_UNDECODED) {
+            return null;
+        }
+
+        int nameLength = headers.getInt(base + NAME_LENGTH_OFFSET);
+        if (nameLength < 0 || nameLength > MAX_NAME_BYTES) {
+            throw new IllegalStateException("Invalid name length " + nameLength);
+        }
+        byte[] nameBytes = new byte[nameLength];
+        arena.get(arenaStart + headers.getInt(base + NAME_OFFSET_OFFSET), nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+        Task task;
+        switch (type) {
+        case TYPE_TODO:
+            task = new ToDo(name);
+            break;
+        case TYPE_DEADLINE:
+            task = new Deadline(name, fromEpochMinutes(headers.getLong(base + START_OFFSET)));
+            break;
+        default:
+            task = new Event(name, fromEpochMinutes(headers.getLong(base + START_OFFSET)),
+                    fromEpochMinutes(headers.getLong(base + END_OFFSET)));
+            break;
+        }
+        if ((flags & COMPLETED_FLAG) != 0) {
+            task.complete();
+        }
+        return task;
+    }
+
+    /**
+     * Checks that a header read back from a dump describes a decoded task whose name lies within
+     * the name arena
+     *
+     * @param headers The buffer holding the header
+     * @param base The position of the header
+     * @param nameBytes The size of the name arena
+     * @throws IllegalStateException If the header is corrupted
+     */
+    private static void checkHeader(ByteBuffer headers, int base, int nameBytes) throws IllegalStateException {
+        int type = headers.get(base + FLAGS_OFFSET) & TYPE_MASK;
+        int offset = headers.getInt(base + NAME_OFFSET_OFFSET);
+        int length = headers.getInt(base + NAME_LENGTH_OFFSET);
+        if (type == TYPE_UNDECODED || offset < 0 || length < 0 || length > MAX_NAME_BYTES
+                || (long) offset + length > nameBytes) {
+            throw new IllegalStateException("Invalid arena; a task header is corrupted");
+        }
+    }
+
+    /**
+     * Reserves a block for a name of the given length, reusing a free block of the right size if
+     * there is one, else growing the name arena if needed
+     *
+     * @param length The length of the name in bytes
+     * @return The offset of the block
+     * @throws IllegalStateException If the name arena cannot grow any further
+     */
+    private int allocateName(int length) throws IllegalStateException {
+        int blockClass = getBlockClass(length);
+        int blockSize = getBlockSize(blockClass);
+        int offset = freeBlocks[blockClass];
+        if (offset != NO_BLOCK) {
+            freeBlocks[blockClass] = arena.getInt(offset);
+            freeNameBytes -= blockSize;
+            return offset;
+        }
+
+        ByteBuffer current = arena;
+        if (blockSize > current.capacity() - arenaSize) {
+            if ((long) arenaSize + blockSize > MAX_BUFFER_SIZE) {
+                throw new IllegalStateException("The task names have outgrown the off-heap name arena");
+            }
+            long capacity = Math.max(current.capacity() * 2L, (long) arenaSize + blockSize);
+            ByteBuffer grown = allocate(Math.min(capacity, MAX_BUFFER_SIZE));
+            grown.put(0, current, 0, arenaSize);
+            arena = grown;
+        }
+        offset = arenaSize;
+        arenaSize += blockSize;
+        return offset;
+    }
+
+    /**
+     * Puts the block of a removed name onto the free list of its size, linking to the previous
+     * head of the list from the first bytes of the block
+     *
+     * @param offset The offset of the block
+     * @param length The length of the name in bytes
+     */
+    private void freeName(int offset, int length) {
+        int blockClass = getBlockClass(length);
+        arena.putInt(offset, freeBlocks[blockClass]);
+        freeBlocks[blockClass] = offset;
+        freeNameBytes += getBlockSize(blockClass);
+    }
+
+    /**
+     * Copies the names of all live tasks to a new name arena in slot order, leaving out the free
+     * blocks. Must be called while holding the write lock.
+     */
+    private void compactArena() {
+        ByteBuffer current = arena;
+        int usedBytes = arenaSize - freeNameBytes;
+        ByteBuffer compacted = allocate(Math.min(Math.max(usedBytes * 2L, MIN_ARENA_SIZE), MAX_BUFFER_SIZE));
+        int size = 0;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            int base = slot * HEADER_BYTES;
+            if ((headers.get(base + FLAGS_OFFSET) & TYPE_MASK) == TYPE_UNDECODED) {
+                continue;
+            }
+            int length = headers.getInt(base + NAME_LENGTH_OFFSET);
+            compacted.put(size, current, headers.getInt(base + NAME_OFFSET_OFFSET), length);
+            headers.putInt(base + NAME_OFFSET_OFFSET, size);
+            size += getBlockSize(getBlockClass(length));
+        }
+
+        Arrays.fill(freeBlocks, NO_BLOCK);
+        freeNameBytes = 0;
+        arenaSize = size;
+        arena = compacted;
+    }
+
+    /**
+     * Returns the size class of the block holding a name of the given length
+     *
+     * @param length The length of the name in bytes, at most MAX_NAME_BYTES
+     * @return The size class
+     */
+    private static int getBlockClass(int length) {
+        int smallLimit = SMALL_BLOCK_CLASSES * SMALL_BLOCK_STEP;
+        if (length <= smallLimit) {
+            return Math.max(length - 1, 0) / SMALL_BLOCK_STEP;
+        }
+        // 129 to 256 bytes take the first class beyond the small ones, each further class doubles
+        int log2 = Integer.SIZE - Integer.numberOfLeadingZeros(length - 1);
+        return SMALL_BLOCK_CLASSES + log2 - 8;
+    }
+
+    /**
+     * Returns the size of the blocks of the given size class
+     *
+     * @param blockClass The size class
+     * @return The block size in bytes
+     */
+    private static int getBlockSize(int blockClass) {
+        if (blockClass < SMALL_BLOCK_CLASSES) {
+            return (blockClass + 1) * SMALL_BLOCK_STEP;
+        }
+        return 1 << (blockClass - SMALL_BLOCK_CLASSES + 8);
+    }
+
+    /**
+     * Allocates a zeroed direct buffer of the given size
+     *
+     * @param size The size in bytes
+     * @return The buffer
+     * @throws IllegalStateException If the size is beyond what a single buffer can hold
+     */
+    private static ByteBuffer allocate(long size) throws IllegalStateException {
+        if (size > MAX_BUFFER_SIZE) {
+            throw new IllegalStateException("The off-heap task store is limited to " + MAX_BUFFER_SIZE
+                    + " bytes per buffer");
+        }
+        return ByteBuffer.allocateDirect((int) size);
+    }
+
+    /**
+     * Writes out the content of the given staging buffer, leaving it empty
+     *
+     * @param staging The staging buffer
+     * @param channel The channel to write into
+     * @throws IOException If an I/O error occurs while writing
+     */
+    private static void drain(ByteBuffer staging, WritableByteChannel channel) throws IOException {
+        staging.flip();
+        writeFully(staging, channel);
+        staging.clear();
+    }
+
+    /**
+     * Writes the remaining content of the given buffer
+     *
+     * @param buffer The buffer
+     * @param channel The channel to write into
+     * @throws IOException If an I/O error occurs while writing
+     */
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the given date and time in minutes since the epoch, as if it were in UTC
+     *
+     * @param dateTime The date and time
+     * @return The number of minutes
+     */
+    private static long toEpochMinutes(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Returns the date and time the given number of minutes since the epoch, as if it were in UTC
+     *
+     * @param epochMinutes The number of minutes
+     * @return The date and time
+     */
+    private static LocalDateTime fromEpochMinutes(long epochMinutes) {
+        return LocalDateTime.ofEpochSecond(epochMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,62 @@
+package notjippity.tasks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Stores tasks as objects in slots in list order; see AbstractSlotTaskStore for how the slots
+ * are kept
+ */
+class SlotTaskStore extends AbstractSlotTaskStore {
+
+    private static final VarHandle TASKS = MethodHandles.arrayElementVarHandle(Task[].class);
+
+    private Task[] tasks;
+
+    /**
+     * Returns a new SlotTaskStore instance
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     */
+    SlotTaskStore(int expectedSize) {
+        super(expectedSize);
+        tasks = new Task[getInitialCapacity(expectedSize)];
+    }
+
+    @Override
+    public Task getTask(int slot) {
+        return (Task) TASKS.getAcquire(tasks, slot);
+    }
+
+    @Override
+    public void setTask(int slot, Task task) {
+        TASKS.setRelease(tasks, slot, task);
+    }
+
+    @Override
+    public void setCompleted(int slot, boolean isCompleted) {
+        // The task was already changed in place
+    }
+
+    @Override
+    void putTask(int slot, Task task) {
+        tasks[slot] = task;
+    }
+
+    @Override
+    void moveTask(int from, int to) {
+        tasks[to] = tasks[from];
+    }
+
+    @Override
+    void clearTasks(int from, int to) {
+        Arrays.fill(tasks, from, to, null);
+    }
+
+    @Override
+    void resizeTasks(int capacity) {
+        tasks = Arrays.copyOf(tasks, capacity);
+    }
+
+}
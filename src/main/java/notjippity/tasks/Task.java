@@ -10,8 +10,8 @@ public abstract class Task {
     protected static final String DATA_SEPARATOR = "||";
     protected static final String DATA_SPLITTER = "\\|\\|";
 
-    protected String name;
-    protected boolean isCompleted;
+    protected final String name;
+    protected volatile boolean isCompleted;
 
     /**
      * Returns a new Task instance
@@ -61,6 +61,15 @@ public abstract class Task {
         return isCompleted() ? "X" : " ";
     }
 
+    /**
+     * Returns the name of the Task
+     *
+     * @return The task name
+     */
+    public String getName() {
+        return name;
+    }
+
     /**
      * Returns whether the Task is completed
      *
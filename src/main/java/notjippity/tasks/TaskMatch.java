@@ -0,0 +1,53 @@
+package notjippity.tasks;
+
+/**
+ * Represents a task returned by a query on the task tracker, along with the list index and ID it
+ * had when the query ran
+ */
+public class TaskMatch {
+
+    private final int index;
+    private final long id;
+    private final Task task;
+
+    /**
+     * Returns a new TaskMatch instance
+     *
+     * @param index The list index of the task, 0-indexed
+     * @param id The ID of the task
+     * @param task The task
+     */
+    TaskMatch(int index, long id, Task task) {
+        this.index = index;
+        this.id = id;
+        this.task = task;
+    }
+
+    /**
+     * Returns the list index the task had when the query ran
+     *
+     * @return The index, 0-indexed
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the ID of the task
+     *
+     * @return The ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the task
+     *
+     * @return The task
+     */
+    public Task getTask() {
+        return task;
+    }
+
+}
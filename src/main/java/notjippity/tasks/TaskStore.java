@@ -0,0 +1,119 @@
+package notjippity.tasks;
+
+/**
+ * Holds the tasks of a task tracker in list order, along with their IDs and the indices of
+ * their undecoded records. Entries are reached through handles, which stay valid until the
+ * next removal.
+ */
+interface TaskStore {
+
+    /** Returned in place of a handle when there is no such entry */
+    int NONE = -1;
+
+    /**
+     * Returns the number of entries
+     *
+     * @return The number of entries
+     */
+    int size();
+
+    /**
+     * Appends an entry to the end of the list
+     *
+     * @param id The task ID, which must not be in use
+     * @param task The task, or null if it has not been decoded yet
+     * @param recordIndex The index of the task's undecoded record, if any
+     * @return The handle of the new entry
+     */
+    int append(long id, Task task, int recordIndex);
+
+    /**
+     * Removes the given entry
+     *
+     * @param handle The handle of the entry
+     */
+    void remove(int handle);
+
+    /**
+     * Returns the handle of the entry at the given list index
+     *
+     * @param index The list index, 0-indexed, which must be within the list
+     * @return The handle of the entry
+     */
+    int getHandle(int index);
+
+    /**
+     * Returns the handle of the entry with the given task ID
+     *
+     * @param id The task ID
+     * @return The handle of the entry, or NONE if no entry has the ID
+     */
+    int getHandleById(long id);
+
+    /**
+     * Returns the list index of the given entry
+     *
+     * @param handle The handle of the entry
+     * @return The list index, 0-indexed
+     */
+    int indexOf(int handle);
+
+    /**
+     * Returns the handle of the first entry in list order
+     *
+     * @return The handle of the first entry, or NONE if there are no entries
+     */
+    int first();
+
+    /**
+     * Returns the handle of the entry following the given entry in list order
+     *
+     * @param handle The handle of the entry
+     * @return The handle of the next entry, or NONE if it is the last entry
+     */
+    int next(int handle);
+
+    /**
+     * Returns the task ID of the given entry
+     *
+     * @param handle The handle of the entry
+     * @return The task ID
+     */
+    long getId(int handle);
+
+    /**
+     * Returns the task of the given entry
+     *
+     * @param handle The handle of the entry
+     * @return The task, or null if it has not been decoded yet
+     */
+    Task getTask(int handle);
+
+    /**
+     * Sets the decoded task of the given entry. As tasks are decoded under the read lock, the
+     * task must be published so that readers calling getTask() see it fully constructed.
+     *
+     * @param handle The handle of the entry
+     * @param task The decoded task
+     */
+    void setTask(int handle, Task task);
+
+    /**
+     * Records that the task of the given entry was completed or set as incomplete. Stores which
+     * hand out copies of their tasks must apply the change to their own state, as the copy was
+     * changed in place of the task itself.
+     *
+     * @param handle The handle of the entry, whose task has been decoded
+     * @param isCompleted Whether the task is now completed
+     */
+    void setCompleted(int handle, boolean isCompleted);
+
+    /**
+     * Returns the index of the undecoded record of the given entry
+     *
+     * @param handle The handle of the entry
+     * @return The record index, only meaningful while the task has not been decoded
+     */
+    int getRecordIndex(int handle);
+
+}
@@ -0,0 +1,48 @@
+package notjippity.tasks;
+
+/**
+ * Represents the data structures which can back a task tracker
+ */
+public enum TaskStoreType {
+
+    /** Slots with tombstones, constant-time positional access until tasks are removed */
+    SLOTS {
+        @Override
+        TaskStore create(int expectedSize) {
+            return new SlotTaskStore(expectedSize);
+        }
+    },
+
+    /** An order-statistic tree, logarithmic-time positional access and removal throughout */
+    TREE {
+        @Override
+        TaskStore create(int expectedSize) {
+            return new TreeTaskStore(expectedSize);
+        }
+    },
+
+    /** Slots holding tasks as columns of primitives, several times smaller but creating a task on every access */
+    COLUMNS {
+        @Override
+        TaskStore create(int expectedSize) {
+            return new ColumnarTaskStore(expectedSize);
+        }
+    },
+
+    /** Slots holding tasks in off-heap memory, which the garbage collector never scans; see OffHeapTaskStore */
+    OFFHEAP {
+        @Override
+        TaskStore create(int expectedSize) {
+            return new OffHeapTaskStore(expectedSize);
+        }
+    };
+
+    /**
+     * Returns a new, empty store of this type
+     *
+     * @param expectedSize The number of tasks expected to be stored, to avoid resizing
+     * @return The store
+     */
+    abstract TaskStore create(int expectedSize);
+
+}
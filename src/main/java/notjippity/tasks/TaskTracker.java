@@ -1,40 +1,422 @@
 package notjippity.tasks;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import notjippity.io.Journal;
+import notjippity.io.TaskRecords;
 
 /**
- * Tracks all tasks and provides functions to maintain tasks
+ * Tracks all tasks and provides functions to maintain tasks.
+ * <p>
+ * Every task is given a persistent ID when added, which can be used to reach it in constant time.
+ * The tasks themselves are held in a TaskStore, which maps list positions to tasks; see
+ * TaskStoreType for the available data structures.
+ * <p>
+ * Tasks may be loaded lazily from undecoded records, in which case each task is only decoded
+ * when it is first accessed. Until then, the store holds null alongside the index of its record.
+ * <p>
+ * Deadlines and events are indexed by date once the tasks on a date are first looked up, and task
+ * names are indexed by trigram once a keyword is first searched for. Both indices are kept up to
+ * date as tasks are added and removed from then on.
+ * <p>
+ * A tracker may be shared between threads. Mutations are serialized by the write lock of a
+ * StampedLock. Reads of the size and of a single task first try an optimistic read, which takes no
+ * lock at all and is only retried under the read lock if a write got in the way; other reads hold
+ * the read lock, so they run in parallel with each other. Each mutation is atomic, e.g. two threads
+ * toggling the same task always leave it as it was.
  */
 public class TaskTracker {
 
-    private ArrayList<Task> tasks = new ArrayList<>();
+    /** Marks a task argument as an ID rather than a list position, e.g. "#42" */
+    public static final String ID_PREFIX = "#";
+
+    private static final int MATERIALIZED = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final TaskStoreType storeType;
+    private TaskStore store;
+    private long nextId = 1;
+    private int handleVersion;
+    private final TaskView taskView = new TaskView(this);
+    private DateIndex dateIndex;
+    private KeywordIndex keywordIndex;
+
+    private Journal journal;
+    private TaskRecords records;
+
+    private volatile boolean isLoading;
+
+    private final StampedLock lock = new StampedLock();
+    private final Object decodeLock = new Object();
+
+    /**
+     * Returns a new TaskTracker instance backed by slots
+     */
+    public TaskTracker() {
+        this(TaskStoreType.SLOTS);
+    }
+
+    /**
+     * Returns a new TaskTracker instance
+     *
+     * @param storeType The data structure to hold the tasks in
+     */
+    public TaskTracker(TaskStoreType storeType) {
+        this.storeType = storeType;
+        store = storeType.create(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Sets the journal which every subsequent mutation is recorded into
+     *
+     * @param journal The journal, or null to stop recording mutations
+     */
+    public void setJournal(Journal journal) {
+        long stamp = lock.writeLock();
+        try {
+            this.journal = journal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
     /**
-     * Adds a Task into the list
+     * Appends the given undecoded records to the list. Each record is only decoded into a Task
+     * when it is first accessed. Must be called before any other task is added.
+     *
+     * @param records The undecoded records
+     */
+    public void addRecords(TaskRecords records) {
+        long stamp = lock.writeLock();
+        try {
+            assert store.size() == 0 : "Records must be added into an empty tracker";
+
+            int count = records.size();
+            TaskStore filled = storeType.create(count);
+            for (int i = 0; i < count; i++) {
+                filled.append(records.getId(i), null, i);
+            }
+            this.records = records;
+            store = filled;
+            nextId = records.getNextId();
+            handleVersion++;
+            dateIndex = null;
+            keywordIndex = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Appends the tasks of an arena written by writeArena() to the list. An off-heap tracker
+     * takes the arena over with bulk copies, while other trackers decode every task from it. Must
+     * be called before any other task is added.
+     *
+     * @param arena The arena, starting at position 0
+     * @throws IllegalStateException If the arena is corrupted
+     */
+    public void addArena(ByteBuffer arena) throws IllegalStateException {
+        long stamp = lock.writeLock();
+        try {
+            assert store.size() == 0 : "An arena must be added into an empty tracker";
+
+            TaskStore filled;
+            if (storeType == TaskStoreType.OFFHEAP) {
+                filled = OffHeapTaskStore.readFrom(arena);
+            } else {
+                int count = OffHeapTaskStore.getTaskCount(arena);
+                filled = storeType.create(count);
+                for (int i = 0; i < count; i++) {
+                    long id = OffHeapTaskStore.getTaskId(arena, i);
+                    if (id <= 0 || filled.getHandleById(id) != TaskStore.NONE) {
+                        throw new IllegalStateException("Invalid arena; task ID " + id + " is invalid or repeated");
+                    }
+                    filled.append(id, OffHeapTaskStore.readTask(arena, i), MATERIALIZED);
+                }
+            }
+            records = null;
+            store = filled;
+            nextId = OffHeapTaskStore.getNextId(arena);
+            handleVersion++;
+            dateIndex = null;
+            keywordIndex = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the existing tasks as still being loaded. Tasks added in the meantime are placed
+     * after the existing tasks once they are handed over through addLoadedTasks().
+     */
+    public void startLoading() {
+        isLoading = true;
+    }
+
+    /**
+     * Checks if the existing tasks are still being loaded
+     *
+     * @return True if the existing tasks have not been handed over yet
+     */
+    public boolean isLoading() {
+        return isLoading;
+    }
+
+    /**
+     * Takes over the tasks of the given tracker, placing them before any task added while they
+     * were being loaded. The tasks added in the meantime are given new IDs following the loaded
+     * tasks, as they are when their journal records are replayed after the loaded state.
+     *
+     * @param loaded The tracker holding the loaded tasks, which must not be used afterwards
+     */
+    public void addLoadedTasks(TaskTracker loaded) {
+        long stamp = lock.writeLock();
+        try {
+            assert records == null : "Tasks must be loaded into an empty tracker";
+
+            List<Task> addedTasks = copyTasks();
+            store = loaded.store;
+            nextId = loaded.nextId;
+            records = loaded.records;
+            isLoading = false;
+            handleVersion++;
+            dateIndex = null;
+            keywordIndex = null;
+
+            // The added tasks were recorded into the journal when they were added
+            for (Task task : addedTasks) {
+                storeTask(task, nextId);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a Task into the list under a new ID
      *
      * @param task The task to be added
      */
     public void addTask(Task task) {
-        tasks.add(task);
+        long stamp = lock.writeLock();
+        try {
+            appendTask(task, nextId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a Task into the list under the given ID, which is used when replaying a previously
+     * added task. Any task added afterwards is given a greater ID.
+     *
+     * @param task The task to be added
+     * @param id The ID of the task
+     * @throws IllegalArgumentException If the ID is not positive or is already in use
+     */
+    public void addTask(Task task, long id) throws IllegalArgumentException {
+        long stamp = lock.writeLock();
+        try {
+            if (id <= 0 || store.getHandleById(id) != TaskStore.NONE) {
+                throw new IllegalArgumentException("Task ID " + id + " is invalid or already in use");
+            }
+            appendTask(task, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the Task specified by the given index, 0-indexed
+     *
+     * @param index The index of the task
+     * @return The removed task
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    public Task removeTask(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.writeLock();
+        try {
+            return removeHandle(getHandle(index));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the Task with the given ID
+     *
+     * @param id The ID of the task
+     * @return The removed task
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    public Task removeTaskById(long id) throws NoSuchElementException {
+        long stamp = lock.writeLock();
+        try {
+            return removeHandle(getHandleById(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     /**
-     * Removes a Task from the list
+     * Toggles the completed status of the Task specified by the given index, 0-indexed
      *
-     * @param task The task to remove
+     * @param index The index of the task
+     * @return The toggled task
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
      */
-    public void removeTask(Task task) {
-        tasks.remove(task);
+    public Task toggleTask(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.writeLock();
+        try {
+            return toggleHandle(getHandle(index));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     /**
-     * Returns the list of tasks
+     * Toggles the completed status of the Task with the given ID
+     *
+     * @param id The ID of the task
+     * @return The toggled task
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    public Task toggleTaskById(long id) throws NoSuchElementException {
+        long stamp = lock.writeLock();
+        try {
+            return toggleHandle(getHandleById(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the Task specified by the given index as completed, 0-indexed
+     *
+     * @param index The index of the task
+     * @return The completed task
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    public Task completeTask(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.writeLock();
+        try {
+            return completeHandle(getHandle(index));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the Task with the given ID as completed
+     *
+     * @param id The ID of the task
+     * @return The completed task
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    public Task completeTaskById(long id) throws NoSuchElementException {
+        long stamp = lock.writeLock();
+        try {
+            return completeHandle(getHandleById(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the Task specified by the given index as incomplete, 0-indexed
+     *
+     * @param index The index of the task
+     * @return The task which was set as incomplete
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    public Task undoTask(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.writeLock();
+        try {
+            return undoHandle(getHandle(index));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the Task with the given ID as incomplete
+     *
+     * @param id The ID of the task
+     * @return The task which was set as incomplete
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    public Task undoTaskById(long id) throws NoSuchElementException {
+        long stamp = lock.writeLock();
+        try {
+            return undoHandle(getHandleById(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns a read-only view over the tasks in list order, which reflects later modifications.
+     * Unlike getTasks(), no tasks are copied.
+     *
+     * @return The view over the tasks
+     */
+    public TaskView getTaskView() {
+        return taskView;
+    }
+
+    /**
+     * Returns a copy of the list of tasks
      *
      * @return The list of tasks
      */
     public List<Task> getTasks() {
-        return (List<Task>) tasks.clone();
+        long stamp = lock.readLock();
+        try {
+            return copyTasks();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a copy of the list of tasks, while a lock is held
+     *
+     * @return The list of tasks
+     */
+    private List<Task> copyTasks() {
+        List<Task> tasks = new ArrayList<>(store.size());
+        for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+            tasks.add(getHandleTask(handle));
+        }
+        return tasks;
+    }
+
+    /**
+     * Returns the IDs of all tasks, in the same order as the list of tasks
+     *
+     * @return The task IDs
+     */
+    public long[] getTaskIds() {
+        long stamp = lock.readLock();
+        try {
+            long[] ids = new long[store.size()];
+            int index = 0;
+            for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                ids[index++] = store.getId(handle);
+            }
+            return ids;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -43,7 +425,38 @@ public class TaskTracker {
      * @return The size of the task list
      */
     public int getSize() {
-        return tasks.size();
+        long stamp = lock.tryOptimisticRead();
+        int size = store.size();
+        if (lock.validate(stamp)) {
+            return size;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return store.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the ID which the next added task will be given
+     *
+     * @return The next task ID
+     */
+    public long getNextId() {
+        long stamp = lock.tryOptimisticRead();
+        long id = nextId;
+        if (lock.validate(stamp)) {
+            return id;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return nextId;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -54,21 +467,555 @@ public class TaskTracker {
      */
     public List<String> getAllDataStrings() {
         List<String> data = new ArrayList<>();
-        for (Task task : tasks) {
+        for (Task task : getTasks()) {
             data.add(task.getDataString());
         }
         return data;
     }
 
     /**
-     * Returns the task specified by the given index, 0-indexed
+     * Returns the task specified by the given index, 0-indexed. Decodes the task if it was
+     * loaded lazily and has not been accessed yet.
      *
      * @param index The index of the task
      * @return The task specified by the given index
      * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
      */
     public Task getTask(int index) throws IndexOutOfBoundsException {
-        return tasks.get(index);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Task task = peekTask(store, index);
+            if (task != null && lock.validate(stamp)) {
+                return task;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return getHandleTask(getHandle(index));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the ID of the task specified by the given index, 0-indexed
+     *
+     * @param index The index of the task
+     * @return The ID of the task
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    public long getTaskId(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long id = peekTaskId(store, index);
+            if (id > 0 && lock.validate(stamp)) {
+                return id;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return store.getId(getHandle(index));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the current list index of the task with the given ID, 0-indexed
+     *
+     * @param id The ID of the task
+     * @return The index of the task
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    public int indexOf(long id) throws NoSuchElementException {
+        long stamp = lock.readLock();
+        try {
+            return store.indexOf(getHandleById(id));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the list indices of all deadlines and events falling on the given date, 0-indexed
+     * and in ascending order. The first lookup decodes and indexes every task.
+     *
+     * @param date The date
+     * @return The indices of the tasks
+     * @throws IllegalStateException If the date index has to be built and any record is corrupted
+     */
+    public int[] getIndicesOnDate(LocalDate date) throws IllegalStateException {
+        return queryOnDate(date, indices -> indices);
+    }
+
+    /**
+     * Returns all deadlines and events falling on the given date in list order, along with their
+     * indices and IDs, all taken under the same lock so that they agree with each other
+     *
+     * @param date The date
+     * @return The tasks
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    public List<TaskMatch> getTasksOnDate(LocalDate date) throws IllegalStateException {
+        return queryOnDate(date, this::toMatches);
+    }
+
+    /**
+     * Returns the list indices of all tasks matching the given keyword, 0-indexed and in ascending
+     * order, as Task.matchesKeyword() would. Keywords long enough are looked up in the keyword
+     * index, which the first such search builds by decoding and indexing every task; shorter
+     * keywords are checked against every task.
+     *
+     * @param keyword The keyword
+     * @return The indices of the tasks
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    public int[] getIndicesMatching(String keyword) throws IllegalStateException {
+        return queryMatching(keyword, indices -> indices);
+    }
+
+    /**
+     * Returns all tasks matching the given keyword in list order, along with their indices and
+     * IDs, all taken under the same lock so that they agree with each other
+     *
+     * @param keyword The keyword
+     * @return The tasks
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    public List<TaskMatch> getTasksMatching(String keyword) throws IllegalStateException {
+        return queryMatching(keyword, this::toMatches);
+    }
+
+    /**
+     * Looks up the list indices of all deadlines and events falling on the given date, and
+     * converts them while still holding the lock
+     *
+     * @param date The date
+     * @param converter Converts the indices, 0-indexed and in ascending order
+     * @param <T> The type of the result
+     * @return The converted indices
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    private <T> T queryOnDate(LocalDate date, Function<int[], T> converter) throws IllegalStateException {
+        long stamp = lock.readLock();
+        try {
+            if (dateIndex == null) {
+                stamp = toWriteLock(stamp);
+            }
+            if (dateIndex == null) {
+                DateIndex index = new DateIndex();
+                for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                    index.add(store.getId(handle), getHandleTask(handle));
+                }
+                dateIndex = index;
+            }
+
+            List<Long> ids = dateIndex.getIds(date.toEpochDay());
+            int[] indices = new int[ids.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = store.indexOf(store.getHandleById(ids.get(i)));
+            }
+            Arrays.sort(indices);
+            return converter.apply(indices);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Looks up the list indices of all tasks matching the given keyword, and converts them while
+     * still holding the lock
+     *
+     * @param keyword The keyword
+     * @param converter Converts the indices, 0-indexed and in ascending order
+     * @param <T> The type of the result
+     * @return The converted indices
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    private <T> T queryMatching(String keyword, Function<int[], T> converter) throws IllegalStateException {
+        long stamp = lock.readLock();
+        try {
+            String lowerKeyword = keyword.toLowerCase();
+            int[] indices = new int[16];
+            int count = 0;
+
+            if (lowerKeyword.length() < KeywordIndex.GRAM_LENGTH) {
+                int index = 0;
+                for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                    if (getHandleTask(handle).matchesKeyword(keyword)) {
+                        indices = count == indices.length ? Arrays.copyOf(indices, count * 2) : indices;
+                        indices[count++] = index;
+                    }
+                    index++;
+                }
+                return converter.apply(Arrays.copyOf(indices, count));
+            }
+
+            if (keywordIndex == null || keywordIndex.isStale(store.size())) {
+                stamp = toWriteLock(stamp);
+            }
+            if (keywordIndex == null || keywordIndex.isStale(store.size())) {
+                KeywordIndex index = new KeywordIndex();
+                for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                    index.add(store.getId(handle), getHandleTask(handle));
+                }
+                keywordIndex = index;
+            }
+
+            // Every candidate still has to be checked, as containing each trigram does not imply a match
+            for (long id : keywordIndex.getCandidateIds(lowerKeyword)) {
+                int handle = store.getHandleById(id);
+                if (handle != TaskStore.NONE && getHandleTask(handle).matchesKeyword(keyword)) {
+                    indices = count == indices.length ? Arrays.copyOf(indices, count * 2) : indices;
+                    indices[count++] = store.indexOf(handle);
+                }
+            }
+            indices = Arrays.copyOf(indices, count);
+            Arrays.sort(indices);
+            return converter.apply(indices);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Collects the tasks at the given list indices. Must be called while holding the lock.
+     *
+     * @param indices The indices, 0-indexed
+     * @return The tasks along with their indices and IDs
+     * @throws IllegalStateException If any record which has to be decoded is corrupted
+     */
+    private List<TaskMatch> toMatches(int[] indices) throws IllegalStateException {
+        List<TaskMatch> matches = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            int handle = store.getHandle(index);
+            matches.add(new TaskMatch(index, store.getId(handle), getHandleTask(handle)));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the encoded record of the task specified by the given index if it was loaded
+     * lazily and has not been accessed since, so it can be saved without being decoded
+     *
+     * @param index The index of the task, 0-indexed
+     * @return The encoded record, or null if the task has been decoded or its record is outdated
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    public ByteBuffer getUntouchedRecord(int index) throws IndexOutOfBoundsException {
+        long stamp = lock.readLock();
+        try {
+            int handle = getHandle(index);
+            if (store.getTask(handle) != null || !records.isCurrentVersion()) {
+                return null;
+            }
+            // The records are not thread-safe, so readers take turns as they do when decoding
+            synchronized (decodeLock) {
+                return records.getRecord(store.getRecordIndex(handle));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Decodes every task which was loaded lazily and has not been accessed yet
+     *
+     * @throws IllegalStateException If any record is corrupted
+     */
+    public void decodeAll() throws IllegalStateException {
+        long stamp = lock.readLock();
+        try {
+            if (records == null) {
+                return;
+            }
+            for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                getHandleTask(handle);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks if the tasks are held off the heap, so that they are saved by writeArena()
+     *
+     * @return True if the tracker is backed by an off-heap store
+     */
+    public boolean isOffHeap() {
+        return storeType == TaskStoreType.OFFHEAP;
+    }
+
+    /**
+     * Writes every task of an off-heap tracker to the given channel as an arena, copying the
+     * off-heap memory across in bulk. Tasks which were loaded lazily are decoded first.
+     *
+     * @param channel The channel to write into
+     * @throws IOException If an I/O error occurs while writing
+     * @throws IllegalStateException If the tracker is not off-heap, or any record is corrupted
+     */
+    public void writeArena(WritableByteChannel channel) throws IOException, IllegalStateException {
+        long stamp = lock.readLock();
+        try {
+            if (!(store instanceof OffHeapTaskStore)) {
+                throw new IllegalStateException("Only an off-heap tracker can be written as an arena");
+            }
+            if (records != null) {
+                for (int handle = store.first(); handle != TaskStore.NONE; handle = store.next(handle)) {
+                    getHandleTask(handle);
+                }
+            }
+            ((OffHeapTaskStore) store).writeTo(channel, nextId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds a Task into the list under the given ID, which must not be in use
+     *
+     * @param task The task to be added
+     * @param id The ID of the task
+     */
+    private void appendTask(Task task, long id) {
+        storeTask(task, id);
+        if (journal != null) {
+            // Tasks added while loading are only given their final IDs once the loaded tasks are
+            // handed over, which replaying an add without an ID reproduces
+            if (isLoading) {
+                journal.logAdd(task);
+            } else {
+                journal.logAdd(id, task);
+            }
+        }
+    }
+
+    /**
+     * Adds a Task into the store and indexes under the given ID, which must not be in use,
+     * without recording it into the journal
+     *
+     * @param task The task to be added
+     * @param id The ID of the task
+     */
+    private void storeTask(Task task, long id) {
+        store.append(id, task, MATERIALIZED);
+        nextId = Math.max(nextId, id + 1);
+        if (dateIndex != null) {
+            dateIndex.add(id, task);
+        }
+        if (keywordIndex != null) {
+            keywordIndex.add(id, task);
+        }
+    }
+
+    /**
+     * Removes the given task from the store
+     *
+     * @param handle The handle of the task
+     * @return The removed task
+     */
+    private Task removeHandle(int handle) {
+        Task task = getHandleTask(handle);
+        long id = store.getId(handle);
+        store.remove(handle);
+        handleVersion++;
+        if (dateIndex != null) {
+            dateIndex.remove(id, task);
+        }
+        if (keywordIndex != null) {
+            keywordIndex.remove();
+        }
+        if (journal != null) {
+            journal.logRemove(id);
+        }
+        return task;
+    }
+
+    /**
+     * Toggles the completed status of the given task
+     *
+     * @param handle The handle of the task
+     * @return The toggled task
+     */
+    private Task toggleHandle(int handle) {
+        Task task = getHandleTask(handle);
+        task.toggleComplete();
+        store.setCompleted(handle, task.isCompleted());
+        if (journal != null) {
+            journal.logToggle(store.getId(handle));
+        }
+        return task;
+    }
+
+    /**
+     * Sets the given task as completed
+     *
+     * @param handle The handle of the task
+     * @return The completed task
+     */
+    private Task completeHandle(int handle) {
+        Task task = getHandleTask(handle);
+        task.complete();
+        store.setCompleted(handle, task.isCompleted());
+        if (journal != null) {
+            journal.logComplete(store.getId(handle));
+        }
+        return task;
+    }
+
+    /**
+     * Sets the given task as incomplete
+     *
+     * @param handle The handle of the task
+     * @return The task which was set as incomplete
+     */
+    private Task undoHandle(int handle) {
+        Task task = getHandleTask(handle);
+        task.undo();
+        store.setCompleted(handle, task.isCompleted());
+        if (journal != null) {
+            journal.logUndo(store.getId(handle));
+        }
+        return task;
+    }
+
+    /**
+     * Returns the lock guarding the tasks, which the view holds while walking the store
+     *
+     * @return The lock
+     */
+    StampedLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns the store holding the tasks
+     *
+     * @return The store
+     */
+    TaskStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns a counter which changes whenever existing handles may have been invalidated
+     *
+     * @return The handle version
+     */
+    int getHandleVersion() {
+        return handleVersion;
+    }
+
+    /**
+     * Returns the given task, decoding it first if needed. Must be called while holding a lock;
+     * readers decoding at the same time take turns, so each task is only decoded once.
+     *
+     * @param handle The handle of the task
+     * @return The task
+     */
+    Task getHandleTask(int handle) {
+        Task task = store.getTask(handle);
+        if (task != null) {
+            return task;
+        }
+
+        synchronized (decodeLock) {
+            task = store.getTask(handle);
+            if (task == null) {
+                task = records.decode(store.getRecordIndex(handle));
+                store.setTask(handle, task);
+            }
+            return task;
+        }
+    }
+
+    /**
+     * Switches from the read lock to the write lock, which may briefly let other writers in
+     *
+     * @param stamp The stamp of the read lock
+     * @return The stamp of the write lock
+     */
+    private long toWriteLock(long stamp) {
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp != 0) {
+            return writeStamp;
+        }
+        lock.unlockRead(stamp);
+        return lock.writeLock();
+    }
+
+    /**
+     * Reads the task at the given list index without holding any lock, as part of an optimistic
+     * read. A concurrent write may leave the store inconsistent for the duration of the read, in
+     * which case the result is meaningless, so it must only be used once the read is validated.
+     *
+     * @param store The store, as read under the optimistic read
+     * @param index The index of the task, 0-indexed
+     * @return The task, or null if it has not been decoded yet or the read was torn
+     */
+    private static Task peekTask(TaskStore store, int index) {
+        try {
+            if (index < 0 || index >= store.size()) {
+                return null;
+            }
+            int handle = store.getHandle(index);
+            return handle == TaskStore.NONE ? null : store.getTask(handle);
+        } catch (RuntimeException exception) {
+            // A writer moved the arrays underneath the read, the caller retries under the read lock
+            return null;
+        }
+    }
+
+    /**
+     * Reads the ID of the task at the given list index without holding any lock, as part of an
+     * optimistic read. The result must only be used once the read is validated.
+     *
+     * @param store The store, as read under the optimistic read
+     * @param index The index of the task, 0-indexed
+     * @return The ID of the task, or 0 if the read was torn
+     */
+    private static long peekTaskId(TaskStore store, int index) {
+        try {
+            if (index < 0 || index >= store.size()) {
+                return 0;
+            }
+            int handle = store.getHandle(index);
+            return handle == TaskStore.NONE ? 0 : store.getId(handle);
+        } catch (RuntimeException exception) {
+            // A writer moved the arrays underneath the read, the caller retries under the read lock
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the handle of the task at the given list index
+     *
+     * @param index The index of the task, 0-indexed
+     * @return The handle of the task
+     * @throws IndexOutOfBoundsException If the provided index is outside the range of the list
+     */
+    private int getHandle(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= store.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + store.size());
+        }
+        return store.getHandle(index);
+    }
+
+    /**
+     * Returns the handle of the task with the given ID
+     *
+     * @param id The ID of the task
+     * @return The handle of the task
+     * @throws NoSuchElementException If no task has the given ID
+     */
+    private int getHandleById(long id) throws NoSuchElementException {
+        int handle = store.getHandleById(id);
+        if (handle == TaskStore.NONE) {
+            throw new NoSuchElementException("No task has the ID " + id);
+        }
+        return handle;
     }
 
 }
@@ -0,0 +1,180 @@
+package notjippity.tasks;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Represents a read-only view over the tasks of a task tracker, in list order. The view does
+ * not copy the tasks: iterating it walks the tracker's store directly.
+ * <p>
+ * Iteration is weakly consistent. If the tracker is modified while a view is being iterated,
+ * the iterator never fails; it carries on after the last task it returned, seeing any task added
+ * since and none removed since. Only if both that task and the one after it are removed may it skip
+ * ahead by position.
+ * <p>
+ * The same holds when the tracker is modified by other threads. Each step of the iteration holds
+ * the tracker's read lock, and hasNext() already takes the task out of the store, so next() never
+ * fails after hasNext() returned true.
+ */
+public class TaskView implements Iterable<Task> {
+
+    private final TaskTracker taskTracker;
+
+    /**
+     * Returns a new TaskView instance
+     *
+     * @param taskTracker The task tracker to view
+     */
+    TaskView(TaskTracker taskTracker) {
+        this.taskTracker = taskTracker;
+    }
+
+    /**
+     * Returns the number of tasks currently in the tracker
+     *
+     * @return The number of tasks
+     */
+    public int size() {
+        return taskTracker.getSize();
+    }
+
+    /**
+     * Returns a cursor over the tasks, starting before the first task
+     *
+     * @return The cursor
+     */
+    @Override
+    public Cursor iterator() {
+        return new Cursor();
+    }
+
+    /**
+     * Represents a position within the view. Besides the tasks themselves, it exposes the ID
+     * and list index of the task it last returned.
+     */
+    public class Cursor implements Iterator<Task> {
+
+        private final StampedLock lock = taskTracker.getLock();
+
+        private int nextHandle;
+        private long nextId;
+        private int version;
+
+        // The task last taken out of the store, which hasNext() may have taken ahead of next()
+        private long id;
+        private int index = -1;
+        private Task pending;
+
+        private long returnedId;
+        private int returnedIndex = -1;
+
+        private Cursor() {
+            long stamp = lock.readLock();
+            try {
+                version = taskTracker.getHandleVersion();
+                setNextHandle(taskTracker.getStore().first());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending != null) {
+                return true;
+            }
+
+            long stamp = lock.readLock();
+            try {
+                resync();
+                if (nextHandle == TaskStore.NONE) {
+                    return false;
+                }
+
+                int handle = nextHandle;
+                setNextHandle(taskTracker.getStore().next(handle));
+                id = taskTracker.getStore().getId(handle);
+                index++;
+                pending = taskTracker.getHandleTask(handle);
+                return true;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Task task = pending;
+            pending = null;
+            returnedId = id;
+            returnedIndex = index;
+            return task;
+        }
+
+        /**
+         * Returns the ID of the task last returned by next()
+         *
+         * @return The task ID
+         */
+        public long getId() {
+            return returnedId;
+        }
+
+        /**
+         * Returns the list index of the task last returned by next(), as of when it was returned
+         *
+         * @return The index of the task, 0-indexed
+         */
+        public int getIndex() {
+            return returnedIndex;
+        }
+
+        /**
+         * Finds the next task again if the tracker's handles were invalidated since the last call.
+         * Must be called while holding the read lock.
+         */
+        private void resync() {
+            if (version == taskTracker.getHandleVersion()) {
+                return;
+            }
+            version = taskTracker.getHandleVersion();
+            TaskStore store = taskTracker.getStore();
+
+            if (index < 0) {
+                setNextHandle(store.first());
+                return;
+            }
+
+            // Continue from the task which was up next, else after the last returned task, else
+            // from the old position if both were removed
+            int handle = nextId == 0 ? TaskStore.NONE : store.getHandleById(nextId);
+            if (handle != TaskStore.NONE) {
+                index = store.indexOf(handle) - 1;
+                nextHandle = handle;
+            } else if ((handle = store.getHandleById(id)) != TaskStore.NONE) {
+                index = store.indexOf(handle);
+                setNextHandle(store.next(handle));
+            } else {
+                index = Math.min(index, store.size()) - 1;
+                setNextHandle(index + 1 < store.size() ? store.getHandle(index + 1) : TaskStore.NONE);
+            }
+        }
+
+        /**
+         * Sets the handle of the task up next, remembering its ID in case the handle is invalidated
+         *
+         * @param handle The handle, or TaskStore.NONE at the end of the list
+         */
+        private void setNextHandle(int handle) {
+            nextHandle = handle;
+            nextId = handle == TaskStore.NONE ? 0 : taskTracker.getStore().getId(handle);
+        }
+
+    }
+
+}
@@ -0,0 +1,267 @@
+package notjippity.tasks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Stores tasks in an order-statistic tree: a treap keyed implicitly by list position, where every
+ * node tracks the size of its subtree. Reaching, appending and removing the entry at any list
+ * index takes O(log n) expected time, and removals never move other entries, so handles to the
+ * remaining entries stay valid.
+ * <p>
+ * Nodes live in parallel arrays rather than as objects, and are addressed by their array index.
+ * Index 0 is a sentinel standing in for a missing child or parent.
+ */
+class TreeTaskStore implements TaskStore {
+
+    private static final int NIL = 0;
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle TASKS = MethodHandles.arrayElementVarHandle(Task[].class);
+
+    private int[] lefts;
+    private int[] rights;
+    private int[] parents;
+    private int[] sizes;
+    private int[] priorities;
+    private Task[] tasks;
+    private long[] ids;
+    private int[] recordIndices;
+    private final IdIndex idIndex;
+
+    private int root = NIL;
+    private int nodeCount = 1;
+    private int[] freeNodes = new int[MIN_CAPACITY];
+    private int freeCount;
+    private int seed = 0x2545F491;
+
+    /**
+     * Returns a new TreeTaskStore instance
+     *
+     * @param expectedSize The number of entries expected to be stored, to avoid resizing
+     */
+    TreeTaskStore(int expectedSize) {
+        allocate(Math.max(expectedSize, MIN_CAPACITY) + 1);
+        idIndex = new IdIndex(expectedSize);
+    }
+
+    @Override
+    public int size() {
+        return sizes[root];
+    }
+
+    @Override
+    public int append(long id, Task task, int recordIndex) {
+        int node = createNode();
+        tasks[node] = task;
+        ids[node] = id;
+        recordIndices[node] = recordIndex;
+        idIndex.put(id, node);
+
+        root = merge(root, node);
+        parents[root] = NIL;
+        return node;
+    }
+
+    @Override
+    public void remove(int node) {
+        idIndex.remove(ids[node]);
+
+        // Replace the node with the merge of its children, then shrink the sizes of its ancestors
+        int replacement = merge(lefts[node], rights[node]);
+        int parent = parents[node];
+        parents[replacement] = parent;
+        if (parent == NIL) {
+            root = replacement;
+        } else if (lefts[parent] == node) {
+            lefts[parent] = replacement;
+        } else {
+            rights[parent] = replacement;
+        }
+        for (int ancestor = parent; ancestor != NIL; ancestor = parents[ancestor]) {
+            sizes[ancestor]--;
+        }
+        parents[NIL] = NIL;
+
+        tasks[node] = null;
+        freeNode(node);
+    }
+
+    @Override
+    public int getHandle(int index) {
+        // Stopping at the sentinel lets an optimistic reader racing with a writer always finish
+        int node = root;
+        while (node != NIL) {
+            int leftSize = sizes[lefts[node]];
+            if (index < leftSize) {
+                node = lefts[node];
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = rights[node];
+            }
+        }
+        return NONE;
+    }
+
+    @Override
+    public int getHandleById(long id) {
+        int node = idIndex.get(id);
+        return node < 0 ? NONE : node;
+    }
+
+    @Override
+    public int indexOf(int node) {
+        int index = sizes[lefts[node]];
+        for (int child = node, parent = parents[node]; parent != NIL; child = parent, parent = parents[parent]) {
+            if (rights[parent] == child) {
+                index += sizes[lefts[parent]] + 1;
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public int first() {
+        return root == NIL ? NONE : leftmost(root);
+    }
+
+    @Override
+    public int next(int node) {
+        if (rights[node] != NIL) {
+            return leftmost(rights[node]);
+        }
+
+        // Climb until the node is reached from a left child
+        int child = node, parent = parents[node];
+        while (parent != NIL && rights[parent] == child) {
+            child = parent;
+            parent = parents[parent];
+        }
+        return parent == NIL ? NONE : parent;
+    }
+
+    @Override
+    public long getId(int node) {
+        return ids[node];
+    }
+
+    @Override
+    public Task getTask(int node) {
+        return (Task) TASKS.getAcquire(tasks, node);
+    }
+
+    @Override
+    public void setTask(int node, Task task) {
+        TASKS.setRelease(tasks, node, task);
+    }
+
+    @Override
+    public void setCompleted(int node, boolean isCompleted) {
+        // The task was already changed in place
+    }
+
+    @Override
+    public int getRecordIndex(int node) {
+        return recordIndices[node];
+    }
+
+    /**
+     * Merges two treaps, where every node of the first precedes every node of the second
+     *
+     * @param first The root of the first treap
+     * @param second The root of the second treap
+     * @return The root of the merged treap
+     */
+    private int merge(int first, int second) {
+        if (first == NIL) {
+            return second;
+        }
+        if (second == NIL) {
+            return first;
+        }
+
+        if (priorities[first] > priorities[second]) {
+            rights[first] = merge(rights[first], second);
+            parents[rights[first]] = first;
+            sizes[first] = 1 + sizes[lefts[first]] + sizes[rights[first]];
+            return first;
+        }
+        lefts[second] = merge(first, lefts[second]);
+        parents[lefts[second]] = second;
+        sizes[second] = 1 + sizes[lefts[second]] + sizes[rights[second]];
+        return second;
+    }
+
+    private int leftmost(int node) {
+        while (lefts[node] != NIL) {
+            node = lefts[node];
+        }
+        return node;
+    }
+
+    /**
+     * Takes a free node, or a new one if there are none, and resets it as a single-node treap
+     *
+     * @return The node
+     */
+    private int createNode() {
+        int node;
+        if (freeCount > 0) {
+            node = freeNodes[--freeCount];
+        } else {
+            if (nodeCount == ids.length) {
+                allocate(ids.length * 2);
+            }
+            node = nodeCount++;
+        }
+
+        lefts[node] = NIL;
+        rights[node] = NIL;
+        parents[node] = NIL;
+        sizes[node] = 1;
+        // Xorshift gives every node an independent random priority, which keeps the tree balanced
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        priorities[node] = seed;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        if (freeCount == freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, freeCount * 2);
+        }
+        freeNodes[freeCount++] = node;
+    }
+
+    /**
+     * Grows the node arrays to the given capacity, keeping all existing nodes
+     *
+     * @param capacity The number of nodes, including the sentinel
+     */
+    private void allocate(int capacity) {
+        if (ids == null) {
+            lefts = new int[capacity];
+            rights = new int[capacity];
+            parents = new int[capacity];
+            sizes = new int[capacity];
+            priorities = new int[capacity];
+            tasks = new Task[capacity];
+            ids = new long[capacity];
+            recordIndices = new int[capacity];
+            return;
+        }
+
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        tasks = Arrays.copyOf(tasks, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        recordIndices = Arrays.copyOf(recordIndices, capacity);
+    }
+
+}
@@ -0,0 +1,138 @@
+package notjippity.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects where the bot spends its time: the latency of every command by name, and the duration
+ * and size of every load and save of the data file. Shared by all sessions.
+ * <p>
+ * Recording never allocates once a command has been seen, so it can stay on for every command.
+ */
+public class Metrics {
+
+    private final Map<String, LatencyHistogram> commandLatencies = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final AtomicLong loadedTasks = new AtomicLong();
+    private final AtomicLong loadedRecords = new AtomicLong();
+    private final AtomicLong loadedBytes = new AtomicLong();
+
+    private final LatencyHistogram saveLatency = new LatencyHistogram();
+    private final AtomicLong savedTasks = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * Records how long a single command took to execute
+     *
+     * @param cmdName The name of the command
+     * @param nanos The duration in nanoseconds
+     */
+    public void recordCommand(String cmdName, long nanos) {
+        // Only allocates the first time a command is seen
+        commandLatencies.computeIfAbsent(cmdName, name -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Records a load of the data file
+     *
+     * @param nanos The duration in nanoseconds
+     * @param taskCount The number of tasks read from the data file
+     * @param recordCount The number of journal records replayed onto them
+     * @param byteCount The size of the data file in bytes
+     */
+    public void recordLoad(long nanos, long taskCount, long recordCount, long byteCount) {
+        loadLatency.record(nanos);
+        loadedTasks.addAndGet(taskCount);
+        loadedRecords.addAndGet(recordCount);
+        loadedBytes.addAndGet(byteCount);
+    }
+
+    /**
+     * Records a save of the data file, whether on exit or by a checkpoint
+     *
+     * @param nanos The duration in nanoseconds
+     * @param taskCount The number of tasks written
+     * @param byteCount The size of the written data file in bytes
+     */
+    public void recordSave(long nanos, long taskCount, long byteCount) {
+        saveLatency.record(nanos);
+        savedTasks.addAndGet(taskCount);
+        savedBytes.addAndGet(byteCount);
+    }
+
+    /**
+     * Returns the latencies of every command executed so far
+     *
+     * @return The latencies by command name, in alphabetical order
+     */
+    public Map<String, LatencyHistogram> getCommandLatencies() {
+        return new TreeMap<>(commandLatencies);
+    }
+
+    /**
+     * Returns the durations of the loads so far
+     *
+     * @return The load latencies
+     */
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * Returns the number of tasks read by all loads so far
+     *
+     * @return The number of tasks
+     */
+    public long getLoadedTasks() {
+        return loadedTasks.get();
+    }
+
+    /**
+     * Returns the number of journal records replayed by all loads so far
+     *
+     * @return The number of records
+     */
+    public long getLoadedRecords() {
+        return loadedRecords.get();
+    }
+
+    /**
+     * Returns the number of data file bytes read by all loads so far
+     *
+     * @return The number of bytes
+     */
+    public long getLoadedBytes() {
+        return loadedBytes.get();
+    }
+
+    /**
+     * Returns the durations of the saves so far
+     *
+     * @return The save latencies
+     */
+    public LatencyHistogram getSaveLatency() {
+        return saveLatency;
+    }
+
+    /**
+     * Returns the number of tasks written by all saves so far
+     *
+     * @return The number of tasks
+     */
+    public long getSavedTasks() {
+        return savedTasks.get();
+    }
+
+    /**
+     * Returns the number of data file bytes written by all saves so far
+     *
+     * @return The number of bytes
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+}
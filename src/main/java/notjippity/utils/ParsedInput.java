@@ -0,0 +1,164 @@
+package notjippity.utils;
+
+import java.util.Arrays;
+
+/**
+ * Represents a user input split into its command, positional argument and flags, as produced by
+ * Parser.parse(). An input such as "event Party --from 01/01/2024 1800 --to 02/01/2024 0200" has
+ * the command "event", the positional argument "Party", and the flags "from" and "to" with the
+ * text up to the next flag as their values.
+ * <p>
+ * Only offsets into the input are kept, so that parsing allocates nothing beyond the command
+ * string; the other parts are only copied out when asked for. An instance can be reused for
+ * every input, which also reuses its flag arrays.
+ */
+public class ParsedInput {
+
+    private static final int INITIAL_FLAG_CAPACITY = 4;
+
+    private String source;
+    private String command;
+    private int argStart;
+    private int argEnd;
+    private int positionalEnd;
+
+    private int flagCount;
+    private int[] nameStarts = new int[INITIAL_FLAG_CAPACITY];
+    private int[] nameEnds = new int[INITIAL_FLAG_CAPACITY];
+    private int[] valueStarts = new int[INITIAL_FLAG_CAPACITY];
+    private int[] valueEnds = new int[INITIAL_FLAG_CAPACITY];
+
+    /**
+     * Returns the command portion of the input
+     *
+     * @return The command, or null if the input was empty
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the full argument string, i.e. everything after the command
+     *
+     * @return The string of arguments, or null if there are none
+     */
+    public String getArgString() {
+        return argStart == argEnd ? null : source.substring(argStart, argEnd);
+    }
+
+    /**
+     * Returns the length of the argument string, without copying it out
+     *
+     * @return The number of characters after the command, or 0 if there are no arguments
+     */
+    public int getArgLength() {
+        return argEnd - argStart;
+    }
+
+    /**
+     * Returns the positional argument, i.e. everything after the command and before the first flag
+     *
+     * @return The positional argument, which is empty if there is none
+     */
+    public String getPositional() {
+        return source.substring(argStart, positionalEnd);
+    }
+
+    /**
+     * Returns the number of flags
+     *
+     * @return The number of flags
+     */
+    public int getFlagCount() {
+        return flagCount;
+    }
+
+    /**
+     * Returns the position of the first flag with the given name among all flags. Flag names are
+     * matched ignoring case, and without the leading "--".
+     *
+     * @param name The flag name
+     * @return The position of the flag, or -1 if there is no such flag
+     */
+    public int indexOfFlag(String name) {
+        for (int i = 0; i < flagCount; i++) {
+            int length = nameEnds[i] - nameStarts[i];
+            if (length == name.length() && source.regionMatches(true, nameStarts[i], name, 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of the flag at the given position, i.e. everything up to the next flag
+     *
+     * @param index The position of the flag
+     * @return The value, which is empty if the flag has none
+     * @throws IndexOutOfBoundsException If there is no flag at the given position
+     */
+    public String getFlagValue(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= flagCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + flagCount);
+        }
+        return source.substring(valueStarts[index], valueEnds[index]);
+    }
+
+    /**
+     * Clears the parts of the previous input and sets the new one
+     *
+     * @param source The new input
+     * @param command The command portion of the input
+     * @param argStart The start of the argument string
+     * @param argEnd The end of the argument string
+     */
+    void reset(String source, String command, int argStart, int argEnd) {
+        this.source = source;
+        this.command = command;
+        this.argStart = argStart;
+        this.argEnd = argEnd;
+        positionalEnd = argEnd;
+        flagCount = 0;
+    }
+
+    /**
+     * Sets where the positional argument ends
+     *
+     * @param positionalEnd The end of the positional argument
+     */
+    void setPositionalEnd(int positionalEnd) {
+        this.positionalEnd = positionalEnd;
+    }
+
+    /**
+     * Appends a flag, whose value runs until the end of the arguments unless set otherwise
+     *
+     * @param nameStart The start of the flag name, after the leading "--"
+     * @param nameEnd The end of the flag name
+     * @param valueStart The start of the flag value
+     */
+    void addFlag(int nameStart, int nameEnd, int valueStart) {
+        if (flagCount == nameStarts.length) {
+            int capacity = flagCount * 2;
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+        }
+        nameStarts[flagCount] = nameStart;
+        nameEnds[flagCount] = nameEnd;
+        valueStarts[flagCount] = valueStart;
+        valueEnds[flagCount] = argEnd;
+        flagCount++;
+    }
+
+    /**
+     * Sets where the value of the last added flag ends
+     *
+     * @param valueEnd The end of the value
+     */
+    void setLastValueEnd(int valueEnd) {
+        valueEnds[flagCount - 1] = Math.max(valueEnd, valueStarts[flagCount - 1]);
+    }
+
+}
@@ -1,25 +1,105 @@
 package notjippity.utils;
 
+import java.util.Map;
+
 /**
  * Contains helper functions for parsing user inputs
  */
 public class Parser {
 
+    private static final String FLAG_PREFIX = "--";
+
     /**
-     * Returns only the command portion of the user input
+     * Splits the user input into its command, positional argument and flags in a single pass,
+     * storing the parts into the given ParsedInput. A flag is any whitespace-separated token
+     * starting with "--", and its value is the text up to the next flag. Surrounding whitespace
+     * is dropped from every part.
      *
      * @param input The full user input
-     * @return The command, or null if an empty input is provided
+     * @param parsed The ParsedInput to store the parts into, replacing its previous parts
      */
-    public static String getCommand(String input) {
+    public static void parse(String input, ParsedInput parsed) {
         if (input == null) {
-            return null;
+            parsed.reset("", null, 0, 0);
+            return;
         }
-        input = input.trim();
-        if (input.isEmpty()) {
-            return null;
+
+        int start = skipWhitespace(input, 0, input.length());
+        int end = trimEnd(input, start, input.length());
+        if (start == end) {
+            parsed.reset(input, null, start, end);
+            return;
         }
-        return input.split(" ")[0];
+
+        int commandEnd = start;
+        while (commandEnd < end && !isWhitespace(input.charAt(commandEnd))) {
+            commandEnd++;
+        }
+        parseArgs(input, input.substring(start, commandEnd), skipWhitespace(input, commandEnd, end), end, parsed);
+    }
+
+    /**
+     * Splits an argument string into its positional argument and flags, for a command which has
+     * already been separated from the rest of the input
+     *
+     * @param cmdStr The command string
+     * @param argStr The string of arguments, which may be null
+     * @return The parsed input
+     */
+    public static ParsedInput parse(String cmdStr, String argStr) {
+        ParsedInput parsed = new ParsedInput();
+        String source = argStr == null ? "" : argStr;
+        int start = skipWhitespace(source, 0, source.length());
+        parseArgs(source, cmdStr, start, trimEnd(source, start, source.length()), parsed);
+        return parsed;
+    }
+
+    /**
+     * Assembles a ParsedInput from parts which were already separated, e.g. the fields of a form,
+     * so that no part is split into flags again, even if it contains "--". Surrounding whitespace
+     * is dropped from every part, as when parsing.
+     *
+     * @param cmdStr The command string
+     * @param positional The positional argument
+     * @param flags The flag values by flag name, in the order the flags should appear
+     * @return The assembled input
+     */
+    public static ParsedInput compose(String cmdStr, String positional, Map<String, String> flags) {
+        StringBuilder source = new StringBuilder(positional.strip());
+        int positionalEnd = source.length();
+        int[] bounds = new int[flags.size() * 3];
+        int flagCount = 0;
+        for (Map.Entry<String, String> flag : flags.entrySet()) {
+            source.append(source.length() == 0 ? "" : " ").append(FLAG_PREFIX);
+            bounds[flagCount * 3] = source.length();
+            source.append(flag.getKey());
+            bounds[flagCount * 3 + 1] = source.length();
+            source.append(' ').append(flag.getValue().strip());
+            bounds[flagCount * 3 + 2] = source.length();
+            flagCount++;
+        }
+
+        ParsedInput parsed = new ParsedInput();
+        parsed.reset(source.toString(), cmdStr, 0, source.length());
+        parsed.setPositionalEnd(positionalEnd);
+        for (int i = 0; i < flagCount; i++) {
+            // Each value follows its name and a single space
+            parsed.addFlag(bounds[i * 3], bounds[i * 3 + 1], bounds[i * 3 + 1] + 1);
+            parsed.setLastValueEnd(bounds[i * 3 + 2]);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns only the command portion of the user input
+     *
+     * @param input The full user input
+     * @return The command, or null if an empty input is provided
+     */
+    public static String getCommand(String input) {
+        ParsedInput parsed = new ParsedInput();
+        parse(input, parsed);
+        return parsed.getCommand();
     }
 
     /**
@@ -29,18 +109,80 @@ public class Parser {
      * @return The string of arguments, or null if an empty string of arguments is provided
      */
     public static String getArgString(String input) {
-        if (input == null) {
-            return null;
+        ParsedInput parsed = new ParsedInput();
+        parse(input, parsed);
+        return parsed.getArgString();
+    }
+
+    /**
+     * Scans the arguments once, marking where the positional argument and every flag start and end
+     *
+     * @param source The string containing the arguments
+     * @param command The command string
+     * @param start The start of the arguments, without leading whitespace
+     * @param end The end of the arguments, without trailing whitespace
+     * @param parsed The ParsedInput to store the parts into
+     */
+    private static void parseArgs(String source, String command, int start, int end, ParsedInput parsed) {
+        parsed.reset(source, command, start, end);
+
+        boolean isTokenStart = true;
+        int i = start;
+        while (i < end) {
+            if (isWhitespace(source.charAt(i))) {
+                isTokenStart = true;
+                i++;
+                continue;
+            }
+
+            int nameStart = i + FLAG_PREFIX.length();
+            if (!isTokenStart || !source.startsWith(FLAG_PREFIX, i) || nameStart >= end
+                    || isWhitespace(source.charAt(nameStart))) {
+                isTokenStart = false;
+                i++;
+                continue;
+            }
+
+            // A flag ends the positional argument, or the value of the previous flag
+            int previousEnd = trimEnd(source, start, i);
+            if (parsed.getFlagCount() == 0) {
+                parsed.setPositionalEnd(previousEnd);
+            } else {
+                parsed.setLastValueEnd(previousEnd);
+            }
+
+            int nameEnd = nameStart;
+            while (nameEnd < end && !isWhitespace(source.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            parsed.addFlag(nameStart, nameEnd, skipWhitespace(source, nameEnd, end));
+            isTokenStart = false;
+            i = nameEnd;
         }
-        input = input.trim();
-        if (input.isEmpty()) {
-            return null;
+    }
+
+    private static int skipWhitespace(String source, int start, int end) {
+        while (start < end && isWhitespace(source.charAt(start))) {
+            start++;
         }
-        String argString = input.replaceFirst(getCommand(input), "").trim();
-        if (argString.isEmpty()) {
-            return null;
+        return start;
+    }
+
+    private static int trimEnd(String source, int start, int end) {
+        while (end > start && isWhitespace(source.charAt(end - 1))) {
+            end--;
         }
-        return argString;
+        return end;
+    }
+
+    /**
+     * Checks if the given character is whitespace, by the same definition as String.trim()
+     *
+     * @param character The character
+     * @return True if the character is whitespace
+     */
+    private static boolean isWhitespace(char character) {
+        return character <= ' ';
     }
 
 }
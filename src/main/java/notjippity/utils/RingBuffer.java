@@ -0,0 +1,107 @@
+package notjippity.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Represents a bounded queue which any number of threads may add to and a single thread takes
+ * from, without locking. Elements live in a fixed array of slots, each stamped with a sequence
+ * number saying whether it is free for the producer claiming that position or holds an element
+ * for the consumer.
+ * <p>
+ * A producer claims a position by advancing the shared tail with a compare-and-set, writes the
+ * element into the slot, then publishes it by advancing the slot's sequence. The consumer only
+ * reads slots whose sequence shows they were published, so it never sees a half-written slot.
+ *
+ * @param <T> The type of elements
+ */
+public class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * Returns a new RingBuffer instance
+     *
+     * @param capacity The maximum number of elements, which must be a power of two
+     * @throws IllegalArgumentException If the capacity is not a positive power of two
+     */
+    public RingBuffer(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is not a power of two");
+        }
+
+        mask = capacity - 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the given element unless the buffer is full. May be called from any thread.
+     *
+     * @param element The element, which must not be null
+     * @return True if the element was added
+     */
+    public boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The consumer has not freed this slot since the last lap, so the buffer is full
+                return false;
+            } else {
+                // Another producer claimed the position first
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes up to the given number of elements, oldest first. Must only be called from the
+     * consumer thread.
+     *
+     * @param batch The array to take the elements into, from its start
+     * @return The number of elements taken, which is 0 if the buffer is empty
+     */
+    public int drainTo(T[] batch) {
+        int count = 0;
+        while (count < batch.length) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                // Not published yet, so the buffer is empty up to here
+                break;
+            }
+
+            batch[count++] = elements.get(slot);
+            elements.lazySet(slot, null);
+            sequences.set(slot, head + mask + 1);
+            head++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if there are no published elements left. Must only be called from the consumer thread.
+     *
+     * @return True if the buffer is empty
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+}
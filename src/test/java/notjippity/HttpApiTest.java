@@ -0,0 +1,210 @@
+package notjippity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import notjippity.io.Ui;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpApiTest {
+
+    // The bot keeps its files in data/ under the working directory, which the build points at a scratch directory
+    private static final Path DATA_DIR = Path.of("data");
+    private static final String FORM_TYPE = "application/x-www-form-urlencoded";
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    public void testTaskLifecycle() throws IOException, InterruptedException {
+        NotJippity bot = startBot();
+        try {
+            URI tasks = getTasksUri(bot);
+            HttpResponse<String> added = send(post(tasks, "type=todo&name=read+book"));
+            assertEquals(201, added.statusCode());
+            assertEquals("application/json; charset=utf-8", added.headers().firstValue("Content-Type").orElse(""));
+            assertEquals("{\"index\":1,\"id\":1,\"type\":\"T\",\"name\":\"read book\",\"completed\":false}",
+                    added.body());
+
+            added = send(post(tasks, "type=deadline&name=essay&by=01%2F02%2F2030+1200"));
+            assertEquals(201, added.statusCode());
+            assertEquals("{\"index\":2,\"id\":2,\"type\":\"D\",\"name\":\"essay\",\"completed\":false,"
+                    + "\"by\":\"2030-02-01T12:00\"}", added.body());
+
+            HttpResponse<String> toggled = send(post(URI.create(tasks + "/1/toggle"), ""));
+            assertEquals(200, toggled.statusCode());
+            assertTrue(toggled.body().contains("\"completed\":true"), toggled.body());
+
+            HttpResponse<String> found = send(HttpRequest.newBuilder(URI.create(tasks + "?find=essay")).build());
+            assertEquals(200, found.statusCode());
+            assertTrue(found.body().startsWith("[{\"index\":2,\"id\":2,"), found.body());
+
+            HttpResponse<String> deleted = send(HttpRequest.newBuilder(URI.create(tasks + "/%231"))
+                    .header("X-Requested-With", "HttpApiTest")
+                    .DELETE()
+                    .build());
+            assertEquals(200, deleted.statusCode());
+            assertTrue(deleted.body().contains("\"name\":\"read book\""), deleted.body());
+
+            HttpResponse<String> listed = send(HttpRequest.newBuilder(tasks).build());
+            assertEquals(200, listed.statusCode());
+            assertEquals("[{\"index\":1,\"id\":2,\"type\":\"D\",\"name\":\"essay\",\"completed\":false,"
+                    + "\"by\":\"2030-02-01T12:00\"}]", listed.body());
+        } finally {
+            stopBot(bot);
+        }
+    }
+
+    @Test
+    public void testFieldsNotParsedAsFlags() throws IOException, InterruptedException {
+        NotJippity bot = startBot();
+        try {
+            URI tasks = getTasksUri(bot);
+            HttpResponse<String> todo = send(post(tasks, "type=todo&name=read+--by+01%2F02%2F2030+1200"));
+            assertEquals(201, todo.statusCode());
+            assertTrue(todo.body().contains("\"name\":\"read --by 01/02/2030 1200\""), todo.body());
+
+            HttpResponse<String> deadline = send(post(tasks,
+                    "type=deadline&name=essay+--by+01%2F01%2F2020+0000&by=01%2F02%2F2030+1200"));
+            assertEquals(201, deadline.statusCode());
+            assertTrue(deadline.body().contains("\"name\":\"essay --by 01/01/2020 0000\""), deadline.body());
+            assertTrue(deadline.body().contains("\"by\":\"2030-02-01T12:00\""), deadline.body());
+        } finally {
+            stopBot(bot);
+        }
+    }
+
+    @Test
+    public void testInvalidRequests() throws IOException, InterruptedException {
+        NotJippity bot = startBot();
+        try {
+            URI tasks = getTasksUri(bot);
+            HttpResponse<String> badType = send(post(tasks, "type=chore&name=x"));
+            assertEquals(400, badType.statusCode());
+            assertTrue(badType.body().startsWith("{\"error\":\""), badType.body());
+            assertEquals(400, send(post(tasks, "type=deadline&name=essay")).statusCode());
+            assertEquals(400, send(post(URI.create(tasks + "/1/toggle"), "")).statusCode());
+            assertEquals(404, send(HttpRequest.newBuilder(URI.create(tasks + "/1/nothing")).build()).statusCode());
+            assertEquals(405, send(HttpRequest.newBuilder(URI.create(tasks + "/1"))
+                    .header("X-Requested-With", "HttpApiTest")
+                    .PUT(HttpRequest.BodyPublishers.noBody())
+                    .build()).statusCode());
+        } finally {
+            stopBot(bot);
+        }
+    }
+
+    @Test
+    public void testForeignRequestsRejected() throws IOException, InterruptedException {
+        NotJippity bot = startBot();
+        try {
+            URI tasks = getTasksUri(bot);
+            // A plain form post, as any web page can send
+            HttpResponse<String> formPost = send(HttpRequest.newBuilder(tasks)
+                    .header("Content-Type", FORM_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofString("type=todo&name=csrf"))
+                    .build());
+            assertEquals(403, formPost.statusCode());
+            assertEquals(403, send(HttpRequest.newBuilder(URI.create(tasks + "/1"))
+                    .DELETE()
+                    .build()).statusCode());
+
+            HttpResponse<String> foreignPost = send(HttpRequest.newBuilder(tasks)
+                    .header("Content-Type", FORM_TYPE)
+                    .header("X-Requested-With", "HttpApiTest")
+                    .header("Origin", "http://evil.example")
+                    .POST(HttpRequest.BodyPublishers.ofString("type=todo&name=csrf"))
+                    .build());
+            assertEquals(403, foreignPost.statusCode());
+            assertEquals(403, send(HttpRequest.newBuilder(tasks)
+                    .header("Origin", "http://evil.example")
+                    .build()).statusCode());
+            assertEquals(200, send(HttpRequest.newBuilder(tasks)
+                    .header("Origin", "http://localhost:" + bot.getHttpPort())
+                    .build()).statusCode());
+
+            // A page on a rebound domain reaches the port under its own host name
+            assertTrue(sendRaw(bot, "GET /tasks HTTP/1.1\r\nHost: evil.example:" + bot.getHttpPort()
+                    + "\r\nConnection: close\r\n\r\n").startsWith("HTTP/1.1 403"));
+            assertTrue(sendRaw(bot, "GET /tasks HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .startsWith("HTTP/1.1 200"));
+
+            assertEquals("[]", send(HttpRequest.newBuilder(tasks).build()).body());
+        } finally {
+            stopBot(bot);
+        }
+    }
+
+    /**
+     * Starts a bot with no tasks, serving them on a free port
+     *
+     * @return The bot
+     */
+    private static NotJippity startBot() {
+        assertFalse(Files.exists(DATA_DIR), "data/ must not exist before the test");
+        NotJippity bot = new NotJippity();
+        bot.init(List.of("--http=0"), new Ui(InputStream.nullInputStream(), OutputStream.nullOutputStream()));
+        return bot;
+    }
+
+    /**
+     * Stops the bot and deletes the data it saved
+     *
+     * @param bot The bot
+     * @throws IOException If the data cannot be deleted
+     */
+    private static void stopBot(NotJippity bot) throws IOException {
+        bot.shutdown();
+        try (Stream<Path> paths = Files.walk(DATA_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static URI getTasksUri(NotJippity bot) {
+        return URI.create("http://127.0.0.1:" + bot.getHttpPort() + "/tasks");
+    }
+
+    private static HttpRequest post(URI uri, String form) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", FORM_TYPE)
+                .header("X-Requested-With", "HttpApiTest")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sends the given request as-is, for headers the HTTP client does not let through
+     *
+     * @param bot The bot serving the request
+     * @param request The whole request
+     * @return The whole response
+     * @throws IOException If the connection fails
+     */
+    private static String sendRaw(NotJippity bot, String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), bot.getHttpPort())) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package notjippity.commands;
+
+import notjippity.exceptions.UnknownCmdException;
+import notjippity.io.Ui;
+import notjippity.tasks.TaskTracker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class CommandDispatcherTest {
+
+    @Test
+    public void testGet() throws UnknownCmdException {
+        Ui ui = new Ui();
+        TaskTracker taskTracker = new TaskTracker();
+        CommandDispatcher dispatcher = new CommandDispatcher();
+        Command deadline = new DeadlineCmd(ui, taskTracker);
+        Command delete = new DeleteCmd(ui, taskTracker);
+        Command done = new DoneCmd(ui, taskTracker);
+        dispatcher.register(deadline, "dl");
+        dispatcher.register(delete);
+        dispatcher.register(done);
+
+        // Full names and aliases, ignoring case
+        assertSame(delete, dispatcher.get("DeLeTe"));
+        assertSame(deadline, dispatcher.get("dl"));
+        // Unique abbreviations
+        assertSame(delete, dispatcher.get("del"));
+        assertSame(deadline, dispatcher.get("dea"));
+        assertSame(done, dispatcher.get("do"));
+
+        // Ambiguous abbreviation
+        try {
+            dispatcher.get("de");
+            fail();
+        } catch (UnknownCmdException exception) {
+            assertEquals("\"de\" could be deadline or delete, which one?", exception.getMessage());
+        }
+        // Unknown command, including one extending a known command
+        try {
+            dispatcher.get("deletes");
+            fail();
+        } catch (UnknownCmdException exception) {
+            assertEquals("Idk what's \"deletes\". Typo maybe?", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testRegisterConflict() {
+        Ui ui = new Ui();
+        TaskTracker taskTracker = new TaskTracker();
+        CommandDispatcher dispatcher = new CommandDispatcher();
+        dispatcher.register(new DeadlineCmd(ui, taskTracker), "dl");
+
+        try {
+            dispatcher.register(new DeleteCmd(ui, taskTracker), "DL");
+            fail();
+        } catch (IllegalArgumentException exception) {
+            assertEquals("Command \"dl\" is already registered", exception.getMessage());
+        }
+    }
+
+}
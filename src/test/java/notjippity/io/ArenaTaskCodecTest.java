@@ -0,0 +1,94 @@
+package notjippity.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskStoreType;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.ToDo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ArenaTaskCodecTest {
+
+    @Test
+    public void testRoundTrip() throws IOException, StorageException {
+        Task toDo = new ToDo("read book");
+        Task deadline = new Deadline("return b\u00f6\u00f6k", LocalDateTime.of(2023, 12, 2, 18, 0));
+        Task event = new Event("project meeting", LocalDateTime.of(1969, 12, 31, 23, 59),
+                LocalDateTime.of(2023, 12, 4, 16, 0));
+        deadline.complete();
+
+        TaskTracker taskTracker = new TaskTracker(TaskStoreType.OFFHEAP);
+        taskTracker.addTask(new ToDo("join sports club"));
+        for (Task task : List.of(toDo, deadline, event)) {
+            taskTracker.addTask(task);
+        }
+        taskTracker.removeTask(0);
+
+        ByteBuffer buffer = ByteBuffer.wrap(encode(taskTracker));
+        assertTrue(ArenaTaskCodec.isArena(buffer));
+        assertFalse(BinaryTaskCodec.isBinary(buffer));
+
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker loaded = new TaskTracker(storeType);
+            loaded.addArena(ArenaTaskCodec.verify(buffer));
+            assertEquals(taskTracker.getAllDataStrings(), loaded.getAllDataStrings(), storeType.name());
+            assertEquals(2, loaded.getTaskId(0));
+            assertEquals(5, loaded.getNextId());
+
+            loaded.addTask(new ToDo("water plants"));
+            assertEquals(5, loaded.getTaskId(3));
+        }
+    }
+
+    @Test
+    public void testCorruptionDetected() throws IOException {
+        TaskTracker taskTracker = new TaskTracker(TaskStoreType.OFFHEAP);
+        taskTracker.addTask(new ToDo("read book"));
+        byte[] bytes = encode(taskTracker);
+        bytes[bytes.length - 6] ^= 1;
+
+        try {
+            ArenaTaskCodec.verify(ByteBuffer.wrap(bytes));
+            fail();
+        } catch (StorageException exception) {
+            assertEquals("Invalid data file; the checksum does not match, the file may be corrupted",
+                    exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testCorruptArenaRejected() {
+        // A valid count and next ID, but one task whose name lies beyond the name arena
+        ByteBuffer arena = ByteBuffer.allocate(16 + 8 + 32 + 8);
+        arena.putInt(1).putLong(2).putInt(8).putLong(1);
+        arena.put((byte) 1).position(arena.position() + 3).putInt(4).putInt(16);
+
+        try {
+            new TaskTracker(TaskStoreType.OFFHEAP).addArena(arena.clear());
+            fail();
+        } catch (IllegalStateException exception) {
+            assertEquals("Invalid arena; a task header is corrupted", exception.getMessage());
+        }
+    }
+
+    private static byte[] encode(TaskTracker taskTracker) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArenaTaskCodec.encode(taskTracker, Channels.newChannel(outputStream));
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,138 @@
+package notjippity.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Deadline;
+import notjippity.tasks.Event;
+import notjippity.tasks.Task;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.ToDo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class BinaryTaskCodecTest {
+
+    @Test
+    public void testRoundTrip() throws IOException, StorageException {
+        Task toDo = new ToDo("read book");
+        Task deadline = new Deadline("return b\u00f6\u00f6k", LocalDateTime.of(2023, 12, 2, 18, 0));
+        Task event = new Event("project meeting", LocalDateTime.of(1969, 12, 31, 23, 59),
+                LocalDateTime.of(2023, 12, 4, 16, 0));
+        deadline.complete();
+        List<Task> tasks = List.of(toDo, deadline, event);
+
+        ByteBuffer buffer = ByteBuffer.wrap(encode(tasks));
+        assertTrue(BinaryTaskCodec.isBinary(buffer));
+
+        TaskRecords records = BinaryTaskCodec.index(buffer);
+        assertEquals(tasks.size(), records.size());
+        assertEquals(tasks.size() + 1, records.getNextId());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(i + 1, records.getId(i));
+            assertEquals(tasks.get(i).getDataString(), records.decode(i).getDataString());
+        }
+    }
+
+    @Test
+    public void testTextIsNotBinary() {
+        assertFalse(BinaryTaskCodec.isBinary(ByteBuffer.wrap("T||read book||N".getBytes())));
+        assertFalse(BinaryTaskCodec.isBinary(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void testCorruptionDetected() throws IOException {
+        byte[] bytes = encode(List.of(new ToDo("read book")));
+        bytes[bytes.length - 6] ^= 1;
+
+        try {
+            BinaryTaskCodec.index(ByteBuffer.wrap(bytes));
+            fail();
+        } catch (StorageException exception) {
+            assertEquals("Invalid data file; the checksum does not match, the file may be corrupted",
+                    exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testLazyRecordsCopiedThrough() throws IOException, StorageException {
+        Task deadline = new Deadline("return book", LocalDateTime.of(2023, 12, 2, 18, 0));
+        byte[] bytes = encode(List.of(new ToDo("read book"), deadline, new ToDo("join sports club")));
+
+        TaskTracker taskTracker = new TaskTracker();
+        taskTracker.addRecords(BinaryTaskCodec.index(ByteBuffer.wrap(bytes)));
+        assertEquals(3, taskTracker.getSize());
+        assertTrue(taskTracker.getUntouchedRecord(1) != null);
+
+        taskTracker.completeTask(1);
+        assertTrue(taskTracker.getUntouchedRecord(1) == null);
+        deadline.complete();
+        taskTracker.removeTask(0);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryTaskCodec.encode(taskTracker, outputStream);
+        TaskRecords records = BinaryTaskCodec.index(ByteBuffer.wrap(outputStream.toByteArray()));
+        assertEquals(2, records.size());
+        assertEquals(4, records.getNextId());
+        assertEquals(2, records.getId(0));
+        assertEquals(deadline.getDataString(), records.decode(0).getDataString());
+        assertEquals(3, records.getId(1));
+        assertEquals("T||join sports club||N", records.decode(1).getDataString());
+    }
+
+    @Test
+    public void testVersionOneFileLoads() throws IOException, StorageException {
+        List<Task> tasks = List.of(new ToDo("read book"), new ToDo("join sports club"));
+
+        // A version 1 file has neither the next ID, the record IDs nor the record index
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeBytes("NJTB");
+        output.writeShort(1);
+        output.writeShort(0);
+        output.writeInt(tasks.size());
+        for (Task task : tasks) {
+            byte[] nameBytes = task.getName().getBytes(StandardCharsets.UTF_8);
+            output.writeByte(0);
+            output.writeInt(nameBytes.length);
+            output.write(nameBytes);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(outputStream.toByteArray());
+        output.writeInt((int) checksum.getValue());
+
+        TaskTracker taskTracker = new TaskTracker();
+        taskTracker.addRecords(BinaryTaskCodec.index(ByteBuffer.wrap(outputStream.toByteArray())));
+        assertEquals(2, taskTracker.getTaskId(1));
+        assertEquals("T||join sports club||N", taskTracker.getTask(1).getDataString());
+
+        // Saving rewrites the file in the current version, with the tasks numbered in file order
+        outputStream.reset();
+        BinaryTaskCodec.encode(taskTracker, outputStream);
+        assertArrayEquals(encode(tasks), outputStream.toByteArray());
+    }
+
+    private static byte[] encode(List<Task> tasks) throws IOException {
+        TaskTracker taskTracker = new TaskTracker();
+        for (Task task : tasks) {
+            taskTracker.addTask(task);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryTaskCodec.encode(taskTracker, outputStream);
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,226 @@
+package notjippity.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.ToDo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class JournalTest {
+
+    @Test
+    public void testRecordsReplayed() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            assertTrue(journal.open(1, 10).isEmpty());
+            journal.logAdd(1, new ToDo("first"));
+            journal.logAdd(2, new ToDo("second"));
+            journal.logToggle(1);
+            journal.logRemove(2);
+            journal.close();
+
+            Journal reopened = new Journal(file, ui);
+            List<String> records = reopened.open(1, 10);
+            assertEquals(List.of("A||#1||T||first||N", "A||#2||T||second||N", "X||#1", "R||#2"), records);
+            assertEquals(4, reopened.getRecordCount());
+
+            // Records appended after a restart follow the replayed ones
+            reopened.logComplete(1);
+            reopened.close();
+            Journal restarted = new Journal(file, ui);
+            assertEquals(5, restarted.open(1, 10).size());
+            restarted.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testTornRecordDropped() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            journal.open(1, 10);
+            journal.logAdd(1, new ToDo("complete"));
+            journal.close();
+            // The process stopped halfway through appending the next record
+            Files.write(file.toPath(), "A||#2||T||tor".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            Journal reopened = new Journal(file, ui);
+            assertEquals(List.of("A||#1||T||complete||N"), reopened.open(1, 10));
+            reopened.logAdd(2, new ToDo("after"));
+            reopened.close();
+
+            // The torn record was cut off, so the next record starts on its own line
+            Journal restarted = new Journal(file, ui);
+            assertEquals(List.of("A||#1||T||complete||N", "A||#2||T||after||N"), restarted.open(1, 10));
+            restarted.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testMismatchedHeaderDiscardsRecords() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            journal.open(1, 10);
+            journal.logAdd(1, new ToDo("already saved"));
+            journal.close();
+
+            // The data file was replaced since, so its checksum no longer matches the header
+            Journal reopened = new Journal(file, ui);
+            assertTrue(reopened.open(2, 10).isEmpty());
+            assertEquals(0, reopened.getRecordCount());
+            reopened.logAdd(2, new ToDo("new"));
+            reopened.close();
+
+            Journal restarted = new Journal(file, ui);
+            assertEquals(List.of("A||#2||T||new||N"), restarted.open(2, 10));
+            restarted.close();
+
+            // A corrupted header matches no data file
+            byte[] content = Files.readAllBytes(file.toPath());
+            content[6] ^= 1;
+            Files.write(file.toPath(), content);
+            Journal corrupted = new Journal(file, ui);
+            assertTrue(corrupted.open(2, 10).isEmpty());
+            corrupted.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testRecordsAppendedBeforeLoadKept() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            journal.open(1, 10);
+            journal.logAdd(1, new ToDo("already saved"));
+            journal.close();
+
+            // Opened before the data file is loaded, which turns out to no longer match the header
+            Journal reopened = new Journal(file, ui);
+            reopened.open();
+            reopened.logAdd(new ToDo("added while loading"));
+            assertTrue(reopened.getOpenedRecords(2, 20).isEmpty());
+            reopened.attach(2, 20);
+            assertEquals(1, reopened.getRecordCount());
+            reopened.close();
+
+            Journal restarted = new Journal(file, ui);
+            assertEquals(List.of("A||T||added while loading||N"), restarted.open(2, 20));
+            restarted.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testFailedHeaderCommitStopsJournal() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        File rotatedFile = directory.resolve("tasks.journal.old").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            journal.open(1, 10);
+            journal.logAdd(1, new ToDo("before the checkpoint"));
+            journal.rotate(rotatedFile);
+            journal.logAdd(2, new ToDo("during the checkpoint"));
+            assertFalse(journal.isFailed());
+
+            // An interrupted thread cannot write to a file channel, so the header update fails
+            Thread.currentThread().interrupt();
+            try {
+                journal.commitHeader(2, 20);
+                fail();
+            } catch (StorageException exception) {
+                assertTrue(journal.isFailed());
+            } finally {
+                Thread.interrupted();
+            }
+            journal.logAdd(3, new ToDo("after the failure"));
+            journal.close();
+
+            // The record acknowledged before the failure is still replayed from the pending journal
+            Journal reopened = new Journal(file, ui);
+            List<String> records = reopened.open(2, 20);
+            reopened.close();
+            assertEquals(1, records.size());
+            assertTrue(records.get(0).contains("during the checkpoint"), records.get(0));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(rotatedFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testResetResumesAfterFailure() throws IOException, StorageException {
+        Path directory = Files.createTempDirectory("journal");
+        File file = directory.resolve("tasks.journal").toFile();
+        File rotatedFile = directory.resolve("tasks.journal.old").toFile();
+        Ui ui = new Ui();
+
+        try {
+            Journal journal = new Journal(file, ui);
+            journal.open(1, 10);
+            journal.rotate(rotatedFile);
+            Thread.currentThread().interrupt();
+            try {
+                journal.commitHeader(2, 20);
+                fail();
+            } catch (StorageException exception) {
+                assertTrue(journal.isFailed());
+            } finally {
+                Thread.interrupted();
+            }
+
+            // Once everything is saved into a new data file, recording resumes
+            journal.reset(3, 30);
+            assertFalse(journal.isFailed());
+            journal.logAdd(4, new ToDo("after the save"));
+            journal.close();
+            Journal reopened = new Journal(file, ui);
+            assertEquals(List.of("A||#4||T||after the save||N"), reopened.open(3, 30));
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(rotatedFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+}
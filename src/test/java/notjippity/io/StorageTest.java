@@ -0,0 +1,196 @@
+package notjippity.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.TaskTracker;
+import notjippity.tasks.ToDo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class StorageTest {
+
+    // Storage keeps its files in data/ under the working directory, which the build points at a scratch directory
+    private static final Path DATA_DIR = Path.of("data");
+    private static final File ROTATED_JOURNAL = DATA_DIR.resolve("tasks.journal.old").toFile();
+
+    @Test
+    public void testCrashDuringCheckpointRecovered() throws IOException, StorageException {
+        assertFalse(Files.exists(DATA_DIR), "data/ must not exist before the test");
+        Ui ui = new Ui();
+
+        try {
+            Storage storage = new Storage(ui);
+            storage.init();
+            TaskTracker tasks = new TaskTracker();
+            storage.loadData(tasks);
+            tasks.setJournal(storage.getJournal());
+            tasks.addTask(new ToDo("saved"));
+            storage.saveData(tasks);
+            tasks.addTask(new ToDo("rotated"));
+            tasks.toggleTask(0);
+
+            // A checkpoint moves the records aside, then the process stops before the new data file is swapped in
+            storage.getJournal().rotate(ROTATED_JOURNAL);
+            tasks.addTask(new ToDo("pending"));
+            tasks.removeTask(1);
+            storage.close();
+
+            assertEquals(tasks.getAllDataStrings(), load(ui));
+            assertFalse(ROTATED_JOURNAL.exists());
+            // Recovery saved everything into the data file, so loading again gives the same tasks
+            assertEquals(tasks.getAllDataStrings(), load(ui));
+        } finally {
+            deleteData();
+        }
+    }
+
+    @Test
+    public void testAddsWhileLoadingSurviveCrash() throws IOException, StorageException {
+        assertFalse(Files.exists(DATA_DIR), "data/ must not exist before the test");
+        Ui ui = new Ui();
+
+        try {
+            saveExisting(ui);
+            Storage storage = new Storage(ui);
+            storage.init();
+            storage.openJournal();
+            TaskTracker tasks = new TaskTracker();
+            tasks.startLoading();
+            tasks.setJournal(storage.getJournal());
+            tasks.addTask(new ToDo("added while loading"));
+            storage.loadData(new TaskTracker());
+            // The process stops before the loaded tasks are handed over
+            storage.close();
+
+            assertEquals(List.of("T||saved||N", "T||journaled||N", "T||added while loading||N"), load(ui));
+        } finally {
+            deleteData();
+        }
+    }
+
+    @Test
+    public void testAddsWhileLoadingMergedOnce() throws IOException, StorageException {
+        assertFalse(Files.exists(DATA_DIR), "data/ must not exist before the test");
+        Ui ui = new Ui();
+
+        try {
+            saveExisting(ui);
+            Storage storage = new Storage(ui);
+            storage.init();
+            storage.openJournal();
+            TaskTracker tasks = new TaskTracker();
+            tasks.startLoading();
+            tasks.setJournal(storage.getJournal());
+            tasks.addTask(new ToDo("added while loading"));
+            TaskTracker loaded = new TaskTracker();
+            storage.loadData(loaded);
+            tasks.addLoadedTasks(loaded);
+            storage.finishLoad(tasks);
+            tasks.toggleTask(2);
+            storage.close();
+
+            assertEquals(List.of("T||saved||N", "T||journaled||N", "T||added while loading||Y"),
+                    tasks.getAllDataStrings());
+            Storage restarted = new Storage(ui);
+            restarted.init();
+            TaskTracker reloaded = new TaskTracker();
+            restarted.loadData(reloaded);
+            restarted.close();
+            assertEquals(tasks.getAllDataStrings(), reloaded.getAllDataStrings());
+            assertArrayEquals(tasks.getTaskIds(), reloaded.getTaskIds());
+        } finally {
+            deleteData();
+        }
+    }
+
+    @Test
+    public void testExportsConfinedToDirectory() throws IOException, StorageException {
+        Path root = Files.createTempDirectory("storage");
+        File exports = root.resolve("exports").toFile();
+        exports.mkdirs();
+        Files.createFile(root.resolve("tasks.dat"));
+        Files.createSymbolicLink(root.resolve("exports/link.txt"), root.resolve("tasks.dat"));
+
+        try {
+            assertEquals(new File(exports, "mine.txt"), Storage.resolveExportTarget(exports, "mine.txt"));
+            assertEquals(new File(exports, "old/mine.txt"),
+                    Storage.resolveExportTarget(exports, "old/../old/mine.txt"));
+
+            String[] rejected = {"", " ", ".", "../tasks.dat", root.resolve("tasks.dat").toString(), "link.txt",
+                "mine.txt.tmp"};
+            for (String name : rejected) {
+                try {
+                    Storage.resolveExportTarget(exports, name);
+                    fail(name);
+                } catch (StorageException exception) {
+                    // Expected
+                }
+            }
+        } finally {
+            Files.delete(root.resolve("exports/link.txt"));
+            Files.delete(root.resolve("tasks.dat"));
+            Files.delete(exports.toPath());
+            Files.delete(root);
+        }
+    }
+
+    /**
+     * Saves a task into the data file, and records another only into the journal
+     *
+     * @param ui The UI to report to
+     * @throws StorageException If the tasks cannot be saved
+     */
+    private static void saveExisting(Ui ui) throws StorageException {
+        Storage storage = new Storage(ui);
+        storage.init();
+        TaskTracker tasks = new TaskTracker();
+        storage.loadData(tasks);
+        tasks.setJournal(storage.getJournal());
+        tasks.addTask(new ToDo("saved"));
+        storage.saveData(tasks);
+        tasks.addTask(new ToDo("journaled"));
+        storage.close();
+    }
+
+    /**
+     * Loads the tasks from data/ as the bot does on startup
+     *
+     * @param ui The UI to report to
+     * @return The data strings of the loaded tasks
+     * @throws StorageException If the tasks cannot be loaded
+     */
+    private static List<String> load(Ui ui) throws StorageException {
+        Storage storage = new Storage(ui);
+        storage.init();
+        TaskTracker tasks = new TaskTracker();
+        storage.loadData(tasks);
+        storage.close();
+        return tasks.getAllDataStrings();
+    }
+
+    /**
+     * Deletes data/ along with everything in it
+     *
+     * @throws IOException If the directory cannot be listed
+     */
+    private static void deleteData() throws IOException {
+        if (!Files.exists(DATA_DIR)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(DATA_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package notjippity.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import notjippity.exceptions.StorageException;
+import notjippity.tasks.Task;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TaskFileLoaderTest {
+
+    // Enough lines to span several chunks
+    private static final int LINE_COUNT = 200_000;
+    private static final String[] LINE_ENDINGS = {"\n", "\r\n", "\r"};
+
+    @Test
+    public void testParallelMatchesSequential() throws IOException, StorageException {
+        File file = File.createTempFile("tasks", ".txt");
+        try {
+            List<String> lines = writeTextFile(file, -1);
+            assertTrue(file.length() > 3 * 1024 * 1024);
+
+            TaskFileLoader.Result parallel = TaskFileLoader.load(file, false, true);
+            TaskFileLoader.Result sequential = TaskFileLoader.load(file, false, false);
+            assertEquals(lines, getDataStrings(parallel.tasks));
+            assertEquals(lines, getDataStrings(sequential.tasks));
+            assertEquals(sequential.checksum, parallel.checksum);
+            assertEquals(file.length(), parallel.length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testInvalidLineNumbered() throws IOException {
+        File file = File.createTempFile("tasks", ".txt");
+        try {
+            // Well past the first chunk, so the lines of the chunks before it must be counted
+            int invalidLine = LINE_COUNT - 10;
+            writeTextFile(file, invalidLine);
+
+            for (boolean canParallelize : new boolean[] {true, false}) {
+                try {
+                    TaskFileLoader.load(file, false, canParallelize);
+                    fail();
+                } catch (StorageException exception) {
+                    assertTrue(exception.getMessage().startsWith("Invalid file format on line " + invalidLine + ":"),
+                            exception.getMessage());
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLazyLoadsLargeTextFile() throws IOException, StorageException {
+        File file = File.createTempFile("tasks", ".txt");
+        try {
+            List<String> lines = writeTextFile(file, -1);
+            // Text files are never decoded lazily, so they are parsed as usual, on this thread
+            TaskFileLoader.Result result = TaskFileLoader.load(file, true, false);
+            assertEquals(lines, getDataStrings(result.tasks));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes a text data file cycling through every line ending, followed by trailing whitespace
+     *
+     * @param file The file to write
+     * @param invalidLine The 1-indexed line to make invalid, or -1 for none
+     * @return The data strings of the tasks written, in file order
+     * @throws IOException If the file cannot be written
+     */
+    private static List<String> writeTextFile(File file, int invalidLine) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= LINE_COUNT; i++) {
+            String line = i == invalidLine ? "Q||unknown task type" : "T||task " + i + "||" + (i % 3 == 0 ? "Y" : "N");
+            lines.add(line);
+            content.append(line).append(LINE_ENDINGS[i % LINE_ENDINGS.length]);
+        }
+        content.append(" \r\n\t \n");
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        return lines;
+    }
+
+    private static List<String> getDataStrings(List<Task> tasks) {
+        List<String> dataStrings = new ArrayList<>();
+        for (Task task : tasks) {
+            dataStrings.add(task.getDataString());
+        }
+        return dataStrings;
+    }
+
+}
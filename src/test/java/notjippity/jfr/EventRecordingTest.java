@@ -0,0 +1,69 @@
+package notjippity.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventRecordingTest {
+
+    @Test
+    public void testRecording() throws IOException {
+        // Nothing is created while no recording is running
+        assertFalse(EventRecording.isEnabled());
+        assertNull(CommandExecutionEvent.begin("todo", "read book".length()));
+        CommandExecutionEvent.end(null, CommandExecutionEvent.OUTCOME_OK);
+
+        Path file = Files.createTempFile("events", ".jfr");
+        try {
+            EventRecording recording = EventRecording.start(file);
+            assertTrue(EventRecording.isEnabled());
+            CommandExecutionEvent.end(CommandExecutionEvent.begin("todo", "read book".length()),
+                    CommandExecutionEvent.OUTCOME_REJECTED);
+            StorageEvent.end(StorageEvent.begin(StorageEvent.OPERATION_SAVE), 120, 3, 0);
+            ParseFailureEvent.report(ParseFailureEvent.SOURCE_JOURNAL_RECORD, 7, "Unknown record type");
+            recording.stop();
+            assertFalse(EventRecording.isEnabled());
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent command = findEvent(events, "notjippity.CommandExecution");
+            assertEquals("todo", command.getString("command"));
+            assertEquals(9, command.getInt("argLength"));
+            assertEquals("rejected", command.getString("outcome"));
+
+            RecordedEvent save = findEvent(events, "notjippity.Storage");
+            assertEquals("save", save.getString("operation"));
+            assertEquals(120, save.getLong("bytes"));
+            assertEquals(3, save.getLong("records"));
+
+            RecordedEvent failure = findEvent(events, "notjippity.ParseFailure");
+            assertEquals("journal record", failure.getString("source"));
+            assertEquals(7, failure.getLong("position"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent findEvent(List<RecordedEvent> events, String name) {
+        RecordedEvent found = null;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                assertNull(found);
+                found = event;
+            }
+        }
+        assertTrue(found != null, "No " + name + " event was recorded");
+        return found;
+    }
+
+}
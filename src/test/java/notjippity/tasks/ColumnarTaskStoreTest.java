@@ -0,0 +1,21 @@
+package notjippity.tasks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ColumnarTaskStoreTest {
+
+    @Test
+    public void testUndecodedEntries() {
+        ColumnarTaskStore store = new ColumnarTaskStore(4);
+        int handle = store.append(7, null, 3);
+        assertNull(store.getTask(handle));
+        assertEquals(3, store.getRecordIndex(handle));
+
+        store.setTask(handle, new ToDo("decoded"));
+        assertEquals("decoded", store.getTask(handle).getName());
+    }
+
+}
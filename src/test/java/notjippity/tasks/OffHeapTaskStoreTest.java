@@ -0,0 +1,85 @@
+package notjippity.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class OffHeapTaskStoreTest {
+
+    @Test
+    public void testLongNameSurvives() {
+        OffHeapTaskStore store = new OffHeapTaskStore(0);
+        Task toDo = new ToDo("x".repeat(5_000) + " caf\u00e9 \u2615");
+        int handle = store.append(1, toDo, -1);
+        store.append(2, new ToDo("short"), -1);
+
+        assertEquals(toDo.getName(), store.getTask(handle).getName());
+        assertEquals("short", store.getTask(store.getHandleById(2)).getName());
+    }
+
+    @Test
+    public void testFreeBlocksReused() {
+        OffHeapTaskStore store = new OffHeapTaskStore(4);
+        store.append(1, new ToDo("a name of twenty-two."), -1);
+        int handle = store.append(2, new ToDo("another name, 24 bytes."), -1);
+        int arenaSize = store.getArenaSize();
+
+        store.remove(handle);
+        store.append(3, new ToDo("a third of 17 or so"), -1);
+        assertEquals(arenaSize, store.getArenaSize());
+        assertEquals("a third of 17 or so", store.getTask(store.getHandleById(3)).getName());
+    }
+
+    @Test
+    public void testDumpSurvivesRemovals() throws IOException {
+        OffHeapTaskStore store = new OffHeapTaskStore(4);
+        for (int i = 1; i <= 4; i++) {
+            store.append(i, new ToDo("task " + i), -1);
+        }
+        store.remove(store.getHandleById(2));
+
+        OffHeapTaskStore copy = OffHeapTaskStore.readFrom(dump(store, 5));
+        assertEquals(3, copy.size());
+        for (long id : new long[] {1, 3, 4}) {
+            assertEquals("task " + id, copy.getTask(copy.getHandleById(id)).getName());
+        }
+    }
+
+    @Test
+    public void testCorruptDumpRejected() throws IOException {
+        OffHeapTaskStore store = new OffHeapTaskStore(2);
+        store.append(1, new ToDo("task 1"), -1);
+        store.append(2, new ToDo("task 2"), -1);
+        ByteBuffer dump = dump(store, 3);
+
+        try {
+            OffHeapTaskStore.readFrom(dump.duplicate().limit(dump.limit() - 1).slice());
+            fail();
+        } catch (IllegalStateException exception) {
+            assertEquals("Invalid arena; the length does not match 2 tasks", exception.getMessage());
+        }
+
+        // The IDs follow the 16-byte header; give the second task the ID of the first
+        dump.putLong(16 + 8, 1);
+        try {
+            OffHeapTaskStore.readFrom(dump);
+            fail();
+        } catch (IllegalStateException exception) {
+            assertTrue(exception.getMessage().contains("task ID 1 is invalid or repeated"));
+        }
+    }
+
+    private static ByteBuffer dump(OffHeapTaskStore store, long nextId) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        store.writeTo(Channels.newChannel(outputStream), nextId);
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
+
+}
@@ -0,0 +1,205 @@
+package notjippity.tasks;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TaskTrackerConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * Represents the work of one thread in a stress run
+     */
+    private interface Worker {
+
+        void run(int thread) throws Exception;
+
+    }
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            runConcurrently(thread -> {
+                for (int i = 0; i < 2000; i++) {
+                    taskTracker.addTask(new ToDo(thread + " " + i));
+                }
+            });
+
+            // Every add took effect exactly once, under its own ID, and in list order of IDs
+            int count = THREADS * 2000;
+            assertEquals(count, taskTracker.getSize());
+            assertEquals(count + 1, taskTracker.getNextId());
+            long[] ids = taskTracker.getTaskIds();
+            for (int i = 0; i < count; i++) {
+                assertEquals(i + 1, ids[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentToggles() throws InterruptedException {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            taskTracker.addTask(new ToDo("even"));
+            taskTracker.addTask(new ToDo("odd"));
+
+            // Toggling is a read-modify-write, so a lost update would leave the wrong status behind
+            runConcurrently(thread -> {
+                for (int i = 0; i < 5000; i++) {
+                    taskTracker.toggleTask(0);
+                    taskTracker.toggleTaskById(2);
+                }
+                if (thread == 0) {
+                    taskTracker.toggleTaskById(2);
+                }
+            });
+
+            assertFalse(taskTracker.getTask(0).isCompleted());
+            assertTrue(taskTracker.getTask(1).isCompleted());
+        }
+    }
+
+    @Test
+    public void testConcurrentDeletes() throws InterruptedException {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            int count = THREADS * 1000;
+            for (int i = 0; i < count; i++) {
+                taskTracker.addTask(new ToDo("task " + i));
+            }
+
+            // Half the threads race for the head of the list, the rest delete their own tasks by ID
+            Queue<Task> removed = new ConcurrentLinkedQueue<>();
+            runConcurrently(thread -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (thread % 2 == 0) {
+                        try {
+                            removed.add(taskTracker.removeTask(0));
+                        } catch (IndexOutOfBoundsException exception) {
+                            // The list ran empty
+                        }
+                    } else {
+                        try {
+                            removed.add(taskTracker.removeTaskById(count - (long) (thread / 2) * 1000 - i));
+                        } catch (NoSuchElementException exception) {
+                            // Already taken from the head of the list
+                        }
+                    }
+                }
+            });
+
+            Set<Task> unique = new HashSet<>(removed);
+            assertEquals(removed.size(), unique.size());
+            assertEquals(count, unique.size() + taskTracker.getSize());
+            for (Task task : taskTracker.getTasks()) {
+                assertFalse(unique.contains(task));
+            }
+        }
+    }
+
+    @Test
+    public void testReadsDuringWrites() throws InterruptedException {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            for (int i = 0; i < 1000; i++) {
+                taskTracker.addTask(new ToDo("task " + i));
+            }
+
+            // One writer churns the list while the other threads read it in every way
+            AtomicBoolean isWriting = new AtomicBoolean(true);
+            runConcurrently(thread -> {
+                if (thread == 0) {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            taskTracker.addTask(new ToDo("new " + i));
+                            taskTracker.removeTask(i % taskTracker.getSize());
+                            taskTracker.toggleTask(i % taskTracker.getSize());
+                        }
+                    } finally {
+                        isWriting.set(false);
+                    }
+                    return;
+                }
+
+                // Readers may keep a writer out for as long as they overlap, so they stop eventually
+                for (int round = 0; round < 500 && isWriting.get(); round++) {
+                    int size = taskTracker.getSize();
+                    assertTrue(size >= 999 && size <= 1001);
+                    try {
+                        int index = size - 1;
+                        assertNotNull(taskTracker.getTask(index));
+                        assertTrue(taskTracker.getTaskId(index) > 0);
+                    } catch (IndexOutOfBoundsException exception) {
+                        // A removal got in first
+                    }
+
+                    // Tasks are only ever appended, so the view must see IDs in ascending order
+                    TaskView.Cursor cursor = taskTracker.getTaskView().iterator();
+                    long lastId = 0;
+                    while (cursor.hasNext()) {
+                        assertNotNull(cursor.next());
+                        assertTrue(cursor.getId() > lastId);
+                        lastId = cursor.getId();
+                    }
+
+                    List<Task> tasks = taskTracker.getTasks();
+                    assertEquals(tasks.size(), new HashSet<>(tasks).size());
+
+                    // Each match must be the task it was matched as, even if removals shift the list
+                    for (TaskMatch match : taskTracker.getTasksMatching("task")) {
+                        assertTrue(match.getTask().getName().startsWith("task "), match.getTask().getName());
+                    }
+                }
+            });
+            assertEquals(1000, taskTracker.getSize());
+        }
+    }
+
+    /**
+     * Runs the given work on every thread at once, failing if any thread fails
+     *
+     * @param worker The work, given the number of the thread
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    private static void runConcurrently(Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(thread);
+                } catch (Throwable throwable) {
+                    failures.add(throwable);
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            fail("A worker thread failed", failures.peek());
+        }
+    }
+
+}
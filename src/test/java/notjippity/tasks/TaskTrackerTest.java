@@ -0,0 +1,296 @@
+package notjippity.tasks;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TaskTrackerTest {
+
+    @Test
+    public void testIdsSurviveRemoval() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            testIdsSurviveRemoval(new TaskTracker(storeType));
+        }
+    }
+
+    @Test
+    public void testManyRemovals() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            testRemovals(new TaskTracker(storeType));
+        }
+    }
+
+    @Test
+    public void testTasksSurviveStore() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            Deadline deadline = new Deadline("submit the report", LocalDateTime.of(2025, 3, 14, 23, 59));
+            deadline.complete();
+            Task[] tasks = {
+                new ToDo("buy caf\u00e9 cr\u00e8me \u2615"),
+                deadline,
+                new Event("team offsite", LocalDateTime.of(1969, 7, 20, 20, 17), LocalDateTime.of(2038, 1, 19, 3, 14)),
+            };
+
+            for (Task task : tasks) {
+                taskTracker.addTask(task);
+            }
+            for (int i = 0; i < tasks.length; i++) {
+                assertEquals(tasks[i].getDataString(), taskTracker.getTask(i).getDataString());
+            }
+
+            assertFalse(taskTracker.toggleTask(1).isCompleted());
+            assertFalse(taskTracker.getTask(1).isCompleted());
+            assertTrue(taskTracker.completeTask(0).isCompleted());
+            assertTrue(taskTracker.getTask(0).isCompleted());
+        }
+    }
+
+    @Test
+    public void testCompactionAfterRemovals() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            for (int i = 0; i < 10_000; i++) {
+                taskTracker.addTask(new ToDo("task number " + i));
+            }
+            int fullSize = getArenaSize(taskTracker.getStore());
+
+            // Keep every tenth task, toggling those along the way
+            for (int i = 9_999; i >= 0; i--) {
+                if (i % 10 != 0) {
+                    taskTracker.removeTask(i);
+                } else if (i % 20 == 0) {
+                    taskTracker.toggleTask(i);
+                }
+            }
+
+            assertEquals(1_000, taskTracker.getSize());
+            int arenaSize = getArenaSize(taskTracker.getStore());
+            assertTrue(arenaSize <= fullSize / 2, storeType + " kept " + arenaSize + " bytes of names");
+            for (int i = 0; i < 1_000; i++) {
+                Task task = taskTracker.getTask(i);
+                assertEquals("task number " + i * 10, task.getName());
+                assertEquals(i % 2 == 0, task.isCompleted());
+            }
+        }
+    }
+
+    @Test
+    public void testRandomOperationsMatchList() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            List<Task> expected = new ArrayList<>();
+            Random random = new Random(42);
+
+            for (int i = 0; i < 5000; i++) {
+                int index = expected.isEmpty() ? 0 : random.nextInt(expected.size());
+                if (expected.isEmpty() || random.nextInt(3) > 0) {
+                    Task task = new ToDo("task " + i);
+                    expected.add(task);
+                    taskTracker.addTask(task);
+                } else if (random.nextBoolean()) {
+                    assertEquals(expected.remove(index).getDataString(), taskTracker.removeTask(index).getDataString());
+                } else {
+                    assertEquals(expected.get(index).getDataString(), taskTracker.getTask(index).getDataString());
+                    assertEquals(index, taskTracker.indexOf(taskTracker.getTaskId(index)));
+                }
+            }
+            assertEquals(getDataStrings(expected), getDataStrings(taskTracker.getTasks()));
+        }
+    }
+
+    @Test
+    public void testViewSurvivesModification() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            for (int i = 1; i <= 200; i++) {
+                taskTracker.addTask(new ToDo("task " + i));
+            }
+
+            // Remove the task just returned and the one before it, and add a task at the end
+            List<String> names = new ArrayList<>();
+            TaskView.Cursor cursor = taskTracker.getTaskView().iterator();
+            while (cursor.hasNext()) {
+                names.add(cursor.next().getName());
+                if (cursor.getId() % 10 == 0 && cursor.getId() <= 200) {
+                    taskTracker.removeTaskById(cursor.getId());
+                    taskTracker.removeTaskById(cursor.getId() - 1);
+                    taskTracker.addTask(new ToDo("added " + cursor.getId()));
+                }
+            }
+
+            assertEquals(220, names.size());
+            assertEquals("task 11", names.get(10));
+            assertEquals("added 200", names.get(names.size() - 1));
+            assertEquals(180, taskTracker.getSize());
+        }
+    }
+
+    @Test
+    public void testDateIndexMatchesScan() {
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+            Random random = new Random(42);
+
+            for (int i = 0; i < 3000; i++) {
+                if (taskTracker.getSize() > 0 && random.nextInt(4) == 0) {
+                    taskTracker.removeTask(random.nextInt(taskTracker.getSize()));
+                } else if (random.nextBoolean()) {
+                    taskTracker.addTask(new Deadline("task " + i, start.plusDays(random.nextInt(60))));
+                } else {
+                    // Some events end before they start
+                    LocalDateTime from = start.plusDays(random.nextInt(60));
+                    taskTracker.addTask(new Event("task " + i, from, from.plusDays(random.nextInt(10) - 2)));
+                }
+
+                // Build the index partway through, so later additions and removals update it
+                if (i % 500 == 250) {
+                    for (int day = -1; day < 72; day++) {
+                        LocalDate date = start.toLocalDate().plusDays(day);
+                        assertArrayEquals(scanDate(taskTracker, date), taskTracker.getIndicesOnDate(date));
+                        assertMatches(taskTracker, scanDate(taskTracker, date), taskTracker.getTasksOnDate(date));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKeywordIndexMatchesScan() {
+        String[] words = {"Read", "book", "BOOKS", "return", "bookmark", "ok", "a", "Essay"};
+        String[] keywords = {"", "o", "ok", "boo", "BOOK", "ook r", "essay", "kmar", "zzz", "books ok"};
+        for (TaskStoreType storeType : TaskStoreType.values()) {
+            TaskTracker taskTracker = new TaskTracker(storeType);
+            Random random = new Random(42);
+
+            for (int i = 0; i < 3000; i++) {
+                if (taskTracker.getSize() > 0 && random.nextInt(3) == 0) {
+                    taskTracker.removeTask(random.nextInt(taskTracker.getSize()));
+                } else {
+                    taskTracker.addTask(new ToDo(words[random.nextInt(words.length)] + " "
+                            + words[random.nextInt(words.length)]));
+                }
+
+                // Search partway through, so later additions and removals update the index
+                if (i % 500 == 250) {
+                    for (String keyword : keywords) {
+                        assertArrayEquals(scanKeyword(taskTracker, keyword), taskTracker.getIndicesMatching(keyword));
+                        assertMatches(taskTracker, scanKeyword(taskTracker, keyword),
+                                taskTracker.getTasksMatching(keyword));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertMatches(TaskTracker taskTracker, int[] indices, List<TaskMatch> matches) {
+        assertEquals(indices.length, matches.size());
+        for (int i = 0; i < indices.length; i++) {
+            TaskMatch match = matches.get(i);
+            assertEquals(indices[i], match.getIndex());
+            assertEquals(taskTracker.getTaskId(indices[i]), match.getId());
+            assertEquals(taskTracker.getTask(indices[i]).getDataString(), match.getTask().getDataString());
+        }
+    }
+
+    private static int getArenaSize(TaskStore store) {
+        if (store instanceof ColumnarTaskStore) {
+            return ((ColumnarTaskStore) store).getArenaSize();
+        }
+        if (store instanceof OffHeapTaskStore) {
+            return ((OffHeapTaskStore) store).getArenaSize();
+        }
+        return 0;
+    }
+
+    private static int[] scanKeyword(TaskTracker taskTracker, String keyword) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < taskTracker.getSize(); i++) {
+            if (taskTracker.getTask(i).matchesKeyword(keyword)) {
+                indices.add(i);
+            }
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] scanDate(TaskTracker taskTracker, LocalDate date) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < taskTracker.getSize(); i++) {
+            Task task = taskTracker.getTask(i);
+            if ((task instanceof Deadline deadline && deadline.hasDate(date))
+                    || (task instanceof Event event && event.hasDate(date))) {
+                indices.add(i);
+            }
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void testIdsSurviveRemoval(TaskTracker taskTracker) {
+        for (int i = 1; i <= 5; i++) {
+            taskTracker.addTask(new ToDo("task " + i));
+        }
+
+        assertEquals("task 2", taskTracker.removeTaskById(2).getName());
+        assertEquals("task 4", taskTracker.removeTask(2).getName());
+
+        // Positions shift after removals, IDs do not
+        assertEquals(3, taskTracker.getSize());
+        assertEquals("task 5", taskTracker.getTask(2).getName());
+        assertEquals(5, taskTracker.getTaskId(2));
+        assertEquals(2, taskTracker.indexOf(5));
+        assertTrue(taskTracker.completeTaskById(3).isCompleted());
+
+        // Removed IDs are never given out again
+        taskTracker.addTask(new ToDo("task 6"));
+        assertEquals(6, taskTracker.getTaskId(3));
+
+        try {
+            taskTracker.removeTaskById(2);
+            fail();
+        } catch (NoSuchElementException exception) {
+            assertEquals("No task has the ID 2", exception.getMessage());
+        }
+    }
+
+    private static void testRemovals(TaskTracker taskTracker) {
+        for (int i = 1; i <= 1000; i++) {
+            taskTracker.addTask(new ToDo("task " + i));
+        }
+
+        // Remove every task with an even ID, then most of the rest from the front
+        for (int id = 2; id <= 1000; id += 2) {
+            taskTracker.removeTaskById(id);
+        }
+        for (int i = 0; i < 400; i++) {
+            taskTracker.removeTask(0);
+        }
+
+        assertEquals(100, taskTracker.getSize());
+        long[] ids = taskTracker.getTaskIds();
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(801 + 2 * i, ids[i]);
+            assertEquals(i, taskTracker.indexOf(ids[i]));
+            assertEquals("task " + ids[i], taskTracker.getTask(i).getName());
+        }
+    }
+
+    private static List<String> getDataStrings(List<Task> tasks) {
+        List<String> dataStrings = new ArrayList<>();
+        for (Task task : tasks) {
+            dataStrings.add(task.getDataString());
+        }
+        return dataStrings;
+    }
+}
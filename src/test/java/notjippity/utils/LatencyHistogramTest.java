@@ -0,0 +1,59 @@
+package notjippity.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        // Small values are exact, larger ones share a bucket with values within 1/16th
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.getBucketEnd(LatencyHistogram.getBucket(value)));
+        }
+        int lastBucket = -1;
+        for (long value : new long[] {16, 17, 100, 1_000, 123_456, 98_765_432_100L, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.getBucket(value);
+            long end = LatencyHistogram.getBucketEnd(bucket);
+            assertTrue(bucket > lastBucket);
+            assertTrue(end >= value);
+            assertTrue(end - value <= value / 16);
+            lastBucket = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketEnd(LatencyHistogram.getBucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500_000, histogram.getTotal());
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(1_000_000, histogram.getPercentile(1));
+
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 + 500_000 / 16, "p50 was " + p50);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 was " + p99);
+
+        LatencyHistogram combined = new LatencyHistogram();
+        combined.record(2_000_000);
+        combined.add(histogram);
+        assertEquals(1002, combined.getCount());
+        assertEquals(2_000_000, combined.getMax());
+        assertEquals(502_500_000, combined.getTotal());
+        assertEquals(p50, combined.getPercentile(0.5));
+    }
+
+}
@@ -1,5 +1,8 @@
 package notjippity.utils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -20,4 +23,48 @@ public class ParserTest {
         assertNull(null, Parser.getCommand(null));
     }
 
+    @Test
+    public void testParse() {
+        ParsedInput parsed = new ParsedInput();
+        Parser.parse("  event   Spaced   Out --FROM  This Day  --to --by x--y  ", parsed);
+        assertEquals("event", parsed.getCommand());
+        assertEquals("Spaced   Out --FROM  This Day  --to --by x--y", parsed.getArgString());
+        assertEquals(parsed.getArgString().length(), parsed.getArgLength());
+        assertEquals("Spaced   Out", parsed.getPositional());
+        assertEquals(3, parsed.getFlagCount());
+        assertEquals(0, parsed.indexOfFlag("from"));
+        assertEquals("This Day", parsed.getFlagValue(0));
+        assertEquals("", parsed.getFlagValue(parsed.indexOfFlag("to")));
+        assertEquals("x--y", parsed.getFlagValue(parsed.indexOfFlag("by")));
+        assertEquals(-1, parsed.indexOfFlag("date"));
+
+        // Reusing the same instance drops the previous flags
+        Parser.parse("todo -- not a flag", parsed);
+        assertEquals("-- not a flag", parsed.getPositional());
+        assertEquals(0, parsed.getFlagCount());
+
+        Parser.parse("   ", parsed);
+        assertNull(parsed.getCommand());
+        assertNull(parsed.getArgString());
+        assertEquals(0, parsed.getArgLength());
+    }
+
+    @Test
+    public void testCompose() {
+        Map<String, String> flags = new LinkedHashMap<>();
+        flags.put("from", " 01/01/2024 1800 --to now ");
+        flags.put("to", "");
+        ParsedInput parsed = Parser.compose("event", " Party --by tomorrow", flags);
+        assertEquals("event", parsed.getCommand());
+        assertEquals("Party --by tomorrow", parsed.getPositional());
+        assertEquals(2, parsed.getFlagCount());
+        assertEquals("01/01/2024 1800 --to now", parsed.getFlagValue(parsed.indexOfFlag("from")));
+        assertEquals("", parsed.getFlagValue(parsed.indexOfFlag("to")));
+        assertEquals(-1, parsed.indexOfFlag("by"));
+
+        ParsedInput todo = Parser.compose("todo", "read --by tomorrow", Map.of());
+        assertEquals("read --by tomorrow", todo.getArgString());
+        assertNull(Parser.compose("todo", "  ", Map.of()).getArgString());
+    }
+
 }
@@ -0,0 +1,79 @@
+package notjippity.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void testBounded() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<Integer>(12));
+
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        Integer[] batch = new Integer[3];
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.drainTo(batch));
+
+        // Wraps around the slots several times, never holding more than the capacity
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 5; round++) {
+            while (buffer.offer(next)) {
+                next++;
+            }
+            assertFalse(buffer.isEmpty());
+            int count = buffer.drainTo(batch);
+            assertEquals(3, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected++, (int) batch[i]);
+            }
+        }
+        assertEquals(next - 1, expected);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producerCount = 4;
+        int perProducer = 50000;
+        RingBuffer<Long> buffer = new RingBuffer<>(64);
+
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            long producer = p;
+            producers[p] = new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(producer << 32 | i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        // Every element arrives exactly once, and each producer's elements arrive in order
+        long[] nextExpected = new long[producerCount];
+        Long[] batch = new Long[16];
+        int received = 0;
+        while (received < producerCount * perProducer) {
+            int count = buffer.drainTo(batch);
+            if (count == 0) {
+                Thread.yield();
+            }
+            for (int i = 0; i < count; i++) {
+                int producer = (int) (batch[i] >>> 32);
+                assertEquals(nextExpected[producer]++, batch[i] & 0xFFFFFFFFL);
+            }
+            received += count;
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+}